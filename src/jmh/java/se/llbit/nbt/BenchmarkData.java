@@ -0,0 +1,218 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Input data for the benchmarks.
+ *
+ * <p>An input is either the name of a gzipped NBT file in the testfiles
+ * directory, or a generated tree given as {@code kind:size} where kind is one of
+ * {@code deep}, {@code wide}, or {@code blockstates}.
+ */
+final class BenchmarkData {
+  private BenchmarkData() { }
+
+  /**
+   * Loads the uncompressed NBT data for the given input.
+   */
+  static byte[] load(String input) throws IOException {
+    int colon = input.indexOf(':');
+    if (colon == -1) {
+      return readGzipped(new File("testfiles", input));
+    }
+    String kind = input.substring(0, colon);
+    int size = Integer.parseInt(input.substring(colon + 1));
+    switch (kind) {
+      case "deep":
+        return serialize(new NamedTag("", deepTree(size)));
+      case "wide":
+        return serialize(new NamedTag("", wideTree(size)));
+      case "blockstates":
+        return serialize(new NamedTag("", blockStateChunk(size)));
+      default:
+        throw new IllegalArgumentException("Unknown benchmark input: " + input);
+    }
+  }
+
+  /**
+   * Tag paths for the quickParse benchmark, one leaf near the end of each input.
+   */
+  static Set<String> quickParseRequest(String input) {
+    Set<String> request = new HashSet<>();
+    if (input.equals("level.dat")) {
+      request.add(".Data.Version.Name");
+      request.add(".Data.Player.Attributes.3.Name");
+    } else if (input.equals("chunk.dat")) {
+      request.add(".Level.xPos");
+      request.add(".Level.Sections.0.Blocks");
+    } else if (input.startsWith("deep:")) {
+      int depth = Integer.parseInt(input.substring(5));
+      StringBuilder path = new StringBuilder();
+      for (int i = 0; i < depth; ++i) {
+        path.append(".child");
+      }
+      request.add(path.append(".value").toString());
+    } else if (input.startsWith("wide:")) {
+      int width = Integer.parseInt(input.substring(5));
+      request.add(".key" + (width - 1));
+    } else if (input.startsWith("blockstates:")) {
+      int sections = Integer.parseInt(input.substring(12));
+      request.add(".Level.Sections." + (sections - 1) + ".BlockStates");
+    }
+    return request;
+  }
+
+  static byte[] serialize(Tag tag) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      tag.write(out);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static byte[] readGzipped(File file) throws IOException {
+    try (InputStream in = new GZIPInputStream(new FileInputStream(file))) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int len;
+      while ((len = in.read(buffer)) != -1) {
+        bytes.write(buffer, 0, len);
+      }
+      return bytes.toByteArray();
+    }
+  }
+
+  /**
+   * Compound tags nested to the given depth, each level holding a few leaf values.
+   */
+  static CompoundTag deepTree(int depth) {
+    CompoundTag tag = new CompoundTag();
+    tag.add("value", new IntTag(depth));
+    for (int i = 0; i < depth; ++i) {
+      CompoundTag parent = new CompoundTag();
+      parent.add("level", new IntTag(depth - i - 1));
+      parent.add("name", new StringTag("level " + (depth - i - 1)));
+      parent.add("child", tag);
+      tag = parent;
+    }
+    return tag;
+  }
+
+  /**
+   * A single compound tag with the given number of entries of mixed types.
+   */
+  static CompoundTag wideTree(int width) {
+    Random random = new Random(width);
+    CompoundTag tag = new CompoundTag();
+    for (int i = 0; i < width; ++i) {
+      String name = "key" + i;
+      switch (i % 4) {
+        case 0:
+          tag.add(name, new ByteTag(random.nextInt(2)));
+          break;
+        case 1:
+          tag.add(name, new IntTag(random.nextInt()));
+          break;
+        case 2:
+          tag.add(name, new DoubleTag(random.nextDouble()));
+          break;
+        default:
+          tag.add(name, new StringTag("minecraft:block_" + random.nextInt(100)));
+          break;
+      }
+    }
+    return tag;
+  }
+
+  /**
+   * A chunk in the Minecraft 1.13 format with the given number of sections.
+   * Each section has a block palette and a packed 4096 entry BlockStates array.
+   */
+  static CompoundTag blockStateChunk(int sections) {
+    Random random = new Random(sections);
+    List<SpecificTag> sectionList = new ArrayList<>();
+    for (int y = 0; y < sections; ++y) {
+      List<SpecificTag> palette = new ArrayList<>();
+      for (int i = 0; i < 16; ++i) {
+        CompoundTag block = new CompoundTag();
+        block.add("Name", new StringTag("minecraft:block_" + i));
+        CompoundTag properties = new CompoundTag();
+        properties.add("facing", new StringTag("north"));
+        properties.add("waterlogged", new StringTag("false"));
+        block.add("Properties", properties);
+        palette.add(block);
+      }
+      long[] blockStates = new long[4096 * 4 / 64];
+      for (int i = 0; i < blockStates.length; ++i) {
+        blockStates[i] = random.nextLong();
+      }
+      CompoundTag section = new CompoundTag();
+      section.add("Y", new ByteTag(y));
+      section.add("Palette", new ListTag(Tag.TAG_COMPOUND, palette));
+      section.add("BlockStates", new LongArrayTag(blockStates));
+      section.add("BlockLight", new ByteArrayTag(new byte[2048]));
+      section.add("SkyLight", new ByteArrayTag(new byte[2048]));
+      sectionList.add(section);
+    }
+    long[] heightmap = new long[37];
+    for (int i = 0; i < heightmap.length; ++i) {
+      heightmap[i] = random.nextLong();
+    }
+    CompoundTag heightmaps = new CompoundTag();
+    heightmaps.add("MOTION_BLOCKING", new LongArrayTag(heightmap));
+    heightmaps.add("WORLD_SURFACE", new LongArrayTag(heightmap.clone()));
+    CompoundTag level = new CompoundTag();
+    level.add("xPos", new IntTag(0));
+    level.add("zPos", new IntTag(0));
+    level.add("Status", new StringTag("full"));
+    level.add("Heightmaps", heightmaps);
+    level.add("Entities", new ListTag(Tag.TAG_COMPOUND, Collections.<SpecificTag>emptyList()));
+    level.add("Sections", new ListTag(Tag.TAG_COMPOUND, sectionList));
+    CompoundTag root = new CompoundTag();
+    root.add("DataVersion", new IntTag(1631));
+    root.add("Level", level);
+    return root;
+  }
+}
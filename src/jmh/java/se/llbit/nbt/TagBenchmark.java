@@ -0,0 +1,144 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of the main parsing and serialization paths.
+ *
+ * <p>All inputs are held uncompressed in memory so that decompression does not
+ * dominate the measurements. Run with the GC profiler (the default for the jmh
+ * Gradle task) to get allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagBenchmark {
+  @Param({
+      "level.dat",
+      "chunk.dat",
+      "deep:16",
+      "deep:256",
+      "wide:16",
+      "wide:4096",
+      "blockstates:4",
+      "blockstates:24",
+  })
+  public String input;
+
+  private byte[] data;
+  private Tag tree;
+  private Set<String> request;
+  private NbtQuery query;
+  private ByteArrayOutputStream output;
+  private NbtWriter writer;
+
+  @Setup public void setup() throws IOException {
+    data = BenchmarkData.load(input);
+    tree = NamedTag.read(newInputStream());
+    if (tree.isError()) {
+      throw new IOException("Failed to parse benchmark input: " + tree.error());
+    }
+    request = BenchmarkData.quickParseRequest(input);
+    query = NbtQuery.compile(request);
+    output = new ByteArrayOutputStream(data.length);
+    writer = new NbtWriter(data.length);
+  }
+
+  private DataInputStream newInputStream() {
+    return new DataInputStream(new ByteArrayInputStream(data));
+  }
+
+  @Benchmark public Tag read() {
+    return NamedTag.read(newInputStream());
+  }
+
+  @Benchmark public Tag readBuffer() {
+    return NamedTag.read(data, 0, data.length);
+  }
+
+  @Benchmark public Tag readLazy() {
+    return NamedTag.readLazy(ByteBuffer.wrap(data));
+  }
+
+  @Benchmark public DataInputStream skip() throws IOException {
+    DataInputStream in = newInputStream();
+    byte type = in.readByte();
+    StringTag.skip(in);
+    SpecificTag.skip(type, in);
+    return in;
+  }
+
+  @Benchmark public Map<String, Tag> quickParse() {
+    return NamedTag.quickParse(newInputStream(), request);
+  }
+
+  @Benchmark public Map<String, Tag> query() throws IOException {
+    return query.parse(newInputStream());
+  }
+
+  @Benchmark public int write() throws IOException {
+    output.reset();
+    DataOutputStream out = new DataOutputStream(output);
+    tree.write(out);
+    out.flush();
+    return output.size();
+  }
+
+  @Benchmark public int writeBuffered() throws IOException {
+    writer.reset();
+    writer.write(tree);
+    return writer.size();
+  }
+}
@@ -32,14 +32,27 @@ package se.llbit.nbt;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 public class ByteArrayTag extends SpecificTag {
   public final byte[] value;
 
   public static SpecificTag read(DataInputStream in) {
+    return read(in, null);
+  }
+
+  /**
+   * Reads the tag payload. The array length is checked against the budget,
+   * if there is one, before the array is allocated.
+   */
+  static SpecificTag read(DataInputStream in, TagParser.Budget budget) {
     try {
-      int length = in.readInt();
+      int length = arrayLength(in);
+      if (budget != null && !budget.allowArray(Tag.TAG_BYTE_ARRAY, length)) {
+        return budget.error();
+      }
       byte[] data = new byte[length];
       in.readFully(data, 0, length);
       return new ByteArrayTag(data);
@@ -48,17 +61,55 @@ public class ByteArrayTag extends SpecificTag {
     }
   }
 
+  static SpecificTag read(ByteBuffer in, TagParser.Budget budget) {
+    try {
+      int length = in.getInt();
+      if (length < 0 || length > in.remaining()) {
+        return new ErrorTag("Unexpected end of data while reading TAG_Byte_Array");
+      }
+      if (budget != null && !budget.allowArray(Tag.TAG_BYTE_ARRAY, length)) {
+        return budget.error();
+      }
+      byte[] data = new byte[length];
+      in.get(data);
+      return new ByteArrayTag(data);
+    } catch (BufferUnderflowException e) {
+      return new ErrorTag("Unexpected end of data while reading TAG_Byte_Array");
+    }
+  }
+
   @Override public void write(DataOutputStream out) throws IOException {
     out.writeInt(getData().length);
     out.write(getData());
   }
 
-  static void skip(DataInputStream in) {
-    try {
-      int length = in.readInt();
-      in.skipBytes(length);
-    } catch (IOException e) {
+  @Override public long serializedSize() {
+    return 4 + (long) value.length;
+  }
+
+  @Override public long estimatedHeapBytes() {
+    return HeapSize.object(HeapSize.REFERENCE) + HeapSize.array(value.length, 1);
+  }
+
+  static void skip(DataInputStream in) throws IOException {
+    SpecificTag.skipFully(in, arrayLength(in));
+  }
+
+  /**
+   * Reads an array length.
+   *
+   * @throws IOException if the length is negative
+   */
+  static int arrayLength(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      throw new IOException("Negative array length: " + length);
     }
+    return length;
+  }
+
+  static void skip(ByteBuffer in) {
+    SpecificTag.skipBytes(in, in.getInt());
   }
 
   public ByteArrayTag(byte[] value) {
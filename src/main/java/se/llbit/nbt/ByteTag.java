@@ -32,22 +32,59 @@ package se.llbit.nbt;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 
 public class ByteTag extends SpecificTag {
+  private static final ByteTag[] CACHE = new ByteTag[256];
+
+  static {
+    for (int i = 0; i < CACHE.length; ++i) {
+      CACHE[i] = new ByteTag(i - 128);
+    }
+  }
+
   public final int value;
 
+  /**
+   * Returns a tag with the given value. Shared instances are returned for
+   * all values in the byte range.
+   */
+  public static ByteTag valueOf(int value) {
+    if (value >= -128 && value <= 127) {
+      return CACHE[value + 128];
+    }
+    return new ByteTag(value);
+  }
+
   public static SpecificTag read(DataInputStream in) {
     try {
-      return new ByteTag(in.readByte());
+      return valueOf(in.readByte());
     } catch (IOException e) {
       return new ErrorTag("IOException while reading TAG_Byte:\n" + e.getMessage());
     }
   }
 
+  static SpecificTag read(ByteBuffer in) {
+    try {
+      return valueOf(in.get());
+    } catch (BufferUnderflowException e) {
+      return new ErrorTag("Unexpected end of data while reading TAG_Byte");
+    }
+  }
+
   @Override public void write(DataOutputStream out) throws IOException {
     out.writeByte(getData());
   }
 
+  @Override public long serializedSize() {
+    return 1;
+  }
+
+  @Override public long estimatedHeapBytes() {
+    return HeapSize.object(4);
+  }
+
   public ByteTag(int value) {
     this.value = value;
   }
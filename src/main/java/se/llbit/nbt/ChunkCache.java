@@ -0,0 +1,276 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of parsed chunks, bounded by the estimated size of the cached
+ * tag trees.
+ *
+ * <p>Chunks are cached by region file and chunk coordinates, together with
+ * the chunk timestamp and a checksum of the stored chunk data (see
+ * {@link RegionFile#getChecksum(int, int)}). The timestamp only has a
+ * resolution of one second, and a rewritten chunk can be stored in the same
+ * sectors as before, so the checksum is what tells rewrites within the same
+ * second apart. When a chunk is looked up through a region file with a newer
+ * timestamp or a different checksum for the chunk, the chunk is parsed again
+ * and replaces the cached tree. A chunk that changes while it is parsed is
+ * not cached. A parsed chunk never replaces a cached chunk with a newer
+ * timestamp. The least
+ * recently used chunks are evicted when the total weight of the cached
+ * chunks exceeds the maximum weight. The weight of a chunk is the estimated
+ * heap size of the tree, see {@link Tag#estimatedHeapBytes()}.
+ *
+ * <p>Cached chunks are frozen (see {@link Tag#freeze()}) so that they can be
+ * shared by multiple threads. Use {@link Tag#copy()} to modify a chunk.
+ *
+ * <p>The cache can be used by multiple threads concurrently. Chunks are
+ * parsed outside the cache lock, so two threads that request the same
+ * missing chunk may both parse it.
+ */
+public class ChunkCache {
+  private final long maxWeight;
+
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+  private long weight = 0;
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+
+  /**
+   * @param maxWeight the maximum total weight of the cached chunks, in bytes
+   */
+  public ChunkCache(long maxWeight) {
+    if (maxWeight < 0) {
+      throw new IllegalArgumentException("Negative maximum weight: " + maxWeight);
+    }
+    this.maxWeight = maxWeight;
+  }
+
+  /**
+   * Gives the parsed chunk at the given coordinates, from the cache if it
+   * is cached with the current timestamp of the chunk, and otherwise by
+   * reading it from the region file.
+   *
+   * @return the frozen root tag of the chunk, or {@code null} if the chunk
+   * does not exist
+   * @throws IOException if the chunk data is corrupt or can not be decompressed
+   */
+  public Tag getChunk(RegionFile region, int x, int z) throws IOException {
+    Key key = new Key(region.getFile(), x & 31, z & 31);
+    int timestamp = region.getTimestamp(x, z);
+    long checksum = region.getChecksum(x, z);
+    synchronized (this) {
+      Entry entry = entries.get(key);
+      if (entry != null) {
+        if (entry.timestamp == timestamp && entry.checksum == checksum) {
+          hits += 1;
+          return entry.chunk;
+        }
+        if (entry.timestamp < timestamp) {
+          // The chunk was changed.
+          remove(key);
+        }
+      }
+      misses += 1;
+    }
+    Tag chunk = region.readChunk(x, z);
+    if (chunk == null) {
+      return null;
+    }
+    chunk = chunk.freeze();
+    if (region.getChecksum(x, z) != checksum) {
+      // The chunk was rewritten while it was parsed.
+      return chunk;
+    }
+    long chunkWeight = weigh(chunk);
+    synchronized (this) {
+      // Another thread may have cached the chunk while it was parsed.
+      Entry entry = entries.get(key);
+      if (entry != null && entry.timestamp == timestamp && entry.checksum == checksum) {
+        return entry.chunk;
+      }
+      if (entry != null && entry.timestamp >= timestamp) {
+        if (entry.timestamp == timestamp) {
+          // Two versions from the same second; it is unknown which one is
+          // newer, so neither is cached.
+          remove(key);
+        }
+        return chunk;
+      }
+      if (chunkWeight <= maxWeight) {
+        remove(key);
+        entries.put(key, new Entry(timestamp, checksum, chunk, chunkWeight));
+        weight += chunkWeight;
+        evict();
+      }
+    }
+    return chunk;
+  }
+
+  /**
+   * Gives the weight of a chunk.
+   */
+  private static long weigh(Tag chunk) {
+    return chunk.estimatedHeapBytes();
+  }
+
+  private void evict() {
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (weight > maxWeight && iterator.hasNext()) {
+      weight -= iterator.next().weight;
+      iterator.remove();
+      evictions += 1;
+    }
+  }
+
+  private void remove(Key key) {
+    Entry entry = entries.remove(key);
+    if (entry != null) {
+      weight -= entry.weight;
+    }
+  }
+
+  /**
+   * Removes a chunk from the cache.
+   */
+  public synchronized void invalidate(File regionFile, int x, int z) {
+    remove(new Key(regionFile, x & 31, z & 31));
+  }
+
+  /**
+   * Removes all chunks of a region file from the cache.
+   */
+  public synchronized void invalidate(File regionFile) {
+    Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Key, Entry> entry = iterator.next();
+      if (entry.getKey().file.equals(regionFile)) {
+        weight -= entry.getValue().weight;
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Removes all chunks from the cache. The statistics are not reset.
+   */
+  public synchronized void invalidateAll() {
+    entries.clear();
+    weight = 0;
+  }
+
+  /**
+   * @return the number of cached chunks
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return the total weight of the cached chunks
+   */
+  public synchronized long weight() {
+    return weight;
+  }
+
+  /**
+   * @return the maximum total weight of the cached chunks
+   */
+  public long maxWeight() {
+    return maxWeight;
+  }
+
+  /**
+   * @return the number of lookups that found a cached chunk
+   */
+  public synchronized long hitCount() {
+    return hits;
+  }
+
+  /**
+   * @return the number of lookups that did not find a cached chunk
+   */
+  public synchronized long missCount() {
+    return misses;
+  }
+
+  /**
+   * @return the number of chunks that were evicted to stay below the
+   * maximum weight
+   */
+  public synchronized long evictionCount() {
+    return evictions;
+  }
+
+  private static final class Key {
+    final File file;
+    final int x;
+    final int z;
+
+    Key(File file, int x, int z) {
+      this.file = file.getAbsoluteFile();
+      this.x = x;
+      this.z = z;
+    }
+
+    @Override public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return x == other.x && z == other.z && file.equals(other.file);
+    }
+
+    @Override public int hashCode() {
+      return (file.hashCode() * 31 + x) * 31 + z;
+    }
+  }
+
+  private static final class Entry {
+    final int timestamp;
+    final long checksum;
+    final Tag chunk;
+    final long weight;
+
+    Entry(int timestamp, long checksum, Tag chunk, long weight) {
+      this.timestamp = timestamp;
+      this.checksum = checksum;
+      this.chunk = chunk;
+      this.weight = weight;
+    }
+  }
+}
@@ -32,11 +32,16 @@ package se.llbit.nbt;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
@@ -45,99 +50,214 @@ import java.util.Set;
  * <p>The items of a compound tag can be indexed by name.
  */
 public class CompoundTag extends SpecificTag implements Iterable<NamedTag> {
-  final Map<String, NamedTag> items = new LinkedHashMap<>();
+  final ItemMap items;
+
+  /**
+   * Cached serialized size of this tag, excluding the payloads of compound
+   * and list items. Negative when not computed. Not used for frozen tags.
+   */
+  private long leafSize = -1;
+
+  /** Modification count of the item map when the leaf size was computed. */
+  private int leafSizeModCount;
+
+  /**
+   * Cached estimated heap size of this tag, excluding compound and list
+   * items. Negative when not computed. Not used for frozen tags.
+   */
+  private long leafHeap = -1;
+
+  /** Modification count of the item map when the leaf heap size was computed. */
+  private int leafHeapModCount;
 
   public void add(String name, SpecificTag tag) {
-    items.put(name, new NamedTag(name, tag));
+    items().put(name, new NamedTag(name, tag));
+    leafSize = -1;
+    leafHeap = -1;
   }
 
   public static SpecificTag read(DataInputStream in) {
-    CompoundTag tagThis = new CompoundTag();
-    while (true) {
-      Tag last = NamedTag.read(in);
-      if (last.isEnd()) {
-        break;
-      }
-      tagThis.add((NamedTag) last);
-    }
-    return tagThis;
+    return TagParser.read((byte) Tag.TAG_COMPOUND, in, DEFAULT_MAX_DEPTH);
   }
 
+  static SpecificTag read(ByteBuffer in) {
+    return TagParser.read((byte) Tag.TAG_COMPOUND, in, DEFAULT_MAX_DEPTH);
+  }
+
+
   @Override public void write(DataOutputStream out) throws IOException {
-    for (NamedTag tag : items.values()) {
+    for (NamedTag tag : items().values()) {
       tag.write(out);
     }
     out.writeByte(Tag.TAG_END);
   }
 
-  static Map<String, Tag> partialParse(DataInputStream in, String prefix,
-      Map<String, Tag> result, Set<String> request, Set<String> prefixes) {
-    try {
-      while (true) {
-        byte type = in.readByte();
-        if (type == Tag.TAG_END) {
-          break;
-        }
-        SpecificTag name = StringTag.read(in);
-        String tag = prefix + "." + name.stringValue();
-        boolean parsed = NamedTag.partiallyParseTag(in, result, request, prefixes, type, tag);
-        if (parsed) {
-          if (request.isEmpty()) {
-            return result;
-          }
-        } else {
-          SpecificTag.skip(type, in);
+  @Override public long serializedSize() {
+    ItemMap items = items();
+    long size = leafSize;
+    if (size < 0 || leafSizeModCount != items.modCount) {
+      size = 1; // TAG_End.
+      for (NamedTag item : items.values()) {
+        size += 1 + StringTag.serializedSize(item.name);
+        if (!isContainer(item.tag)) {
+          size += item.tag.serializedSize();
         }
       }
-    } catch (IOException e) {
+      if (!items.frozen) {
+        // Frozen tags do not cache the size, so that they can be shared
+        // between threads.
+        leafSize = size;
+        leafSizeModCount = items.modCount;
+      }
     }
-    return result;
+    for (NamedTag item : items.values()) {
+      if (isContainer(item.tag)) {
+        size += item.tag.serializedSize();
+      }
+    }
+    return size;
   }
 
-  static void skip(DataInputStream in) {
-    try {
-      while (true) {
-        byte itemType = in.readByte();
-        if (itemType == 0) {
-          break;
+  @Override public long estimatedHeapBytes() {
+    ItemMap items = items();
+    long size = leafHeap;
+    if (size < 0 || leafHeapModCount != items.modCount) {
+      // Fields: items, leafSize, leafSizeModCount, leafHeap, leafHeapModCount.
+      size = HeapSize.object(HeapSize.REFERENCE + 24) + items.heapBytes();
+      for (NamedTag item : items.values()) {
+        size += HeapSize.object(2 * HeapSize.REFERENCE) + HeapSize.string(item.name);
+        if (!isContainer(item.tag)) {
+          size += item.tag.estimatedHeapBytes();
         }
-
-        StringTag.skip(in);
-        SpecificTag.skip(itemType, in);
       }
-    } catch (IOException e) {
+      if (!items.frozen) {
+        leafHeap = size;
+        leafHeapModCount = items.modCount;
+      }
+    }
+    for (NamedTag item : items.values()) {
+      if (isContainer(item.tag)) {
+        size += item.tag.estimatedHeapBytes();
+      }
     }
+    return size;
+  }
+
+  static void skip(DataInputStream in) throws IOException {
+    TagParser.skip((byte) Tag.TAG_COMPOUND, in, DEFAULT_MAX_DEPTH);
   }
 
+  static void skip(ByteBuffer in) throws IOException {
+    TagParser.skip((byte) Tag.TAG_COMPOUND, in, DEFAULT_MAX_DEPTH);
+  }
+
+
   @Override public void printTag(StringBuilder buff, String indent) {
     buff.append(indent);
     printTagInfo(buff);
-    for (NamedTag tag : items.values()) {
+    for (NamedTag tag : items().values()) {
       buff.append(String.format("%s  %s:\n", indent, tag.name()));
       tag.tag.printTag(buff, indent + "    ");
     }
   }
 
-  public CompoundTag() { }
+  public CompoundTag() {
+    items = new ItemMap();
+  }
 
   public CompoundTag(List<? extends NamedTag> items) {
+    this.items = new ItemMap();
     for (NamedTag tag : items) {
       this.items.put(tag.name, tag);
     }
   }
 
+  private CompoundTag(ItemMap items) {
+    this.items = items;
+  }
+
+  /**
+   * Gives the items of this compound tag, mapped by name.
+   */
+  ItemMap items() {
+    return items;
+  }
+
   /**
    * The number of items in this compound tag.
    */
   public int size() {
-    return items.size();
+    return items().size();
   }
 
   /**
    * Append an item to this compound tag.
+   *
+   * @throws UnsupportedOperationException if this compound tag is frozen
    */
   public void add(NamedTag node) {
-    items.put(node.name, node);
+    items().put(node.name, node);
+    leafSize = -1;
+    leafHeap = -1;
+  }
+
+  /**
+   * Gives an immutable copy of this compound tag, with all items frozen.
+   * Items can not be added to the frozen compound tag, and it can be read
+   * from multiple threads without synchronization.
+   *
+   * <p>The arrays of array tags are shared with this tag and are not
+   * protected from modification.
+   */
+  @Override public CompoundTag freeze() {
+    if (items.frozen) {
+      return this;
+    }
+    ItemMap items = items();
+    NamedTag[] frozen = new NamedTag[items.size()];
+    for (int i = 0; i < frozen.length; ++i) {
+      frozen[i] = items.entry(i).freeze();
+    }
+    // The item map is fully built before it is assigned to the final field,
+    // which makes the frozen tree safe to publish to other threads.
+    return new CompoundTag(new ItemMap(frozen, true));
+  }
+
+  /**
+   * Gives a copy of this compound tag that shares its items with this tag
+   * until one of the tags is modified.
+   *
+   * <p>Copying takes constant time. The items of the copy are copied when
+   * they are modified, or when a compound or list item of the copy is
+   * accessed. Compound items are copied in the same way, so only the compound
+   * tags on the path to a modification are copied. List tags are copied in
+   * the same way, and array tags share their arrays.
+   *
+   * <p>Reading this tag never modifies it, so this tag can be read by other
+   * threads while the copy is modified. Modifying the items of this tag
+   * itself is copy-on-write as well, but compound and list items of this tag
+   * stay shared with the copy until the copy accesses them. Modify the copy,
+   * not nested tags of the original.
+   *
+   * <p>The copy of a frozen tag is not frozen.
+   */
+  @Override public CompoundTag copy() {
+    ItemMap items = items();
+    CompoundTag copy = new CompoundTag(items.share());
+    if (leafSizeModCount == items.modCount) {
+      copy.leafSize = leafSize;
+    }
+    if (leafHeapModCount == items.modCount) {
+      copy.leafHeap = leafHeap;
+    }
+    return copy;
+  }
+
+  /**
+   * @return {@code true} if this compound tag is immutable
+   */
+  public boolean isFrozen() {
+    return items.frozen;
   }
 
   public String toString() {
@@ -161,13 +281,23 @@ public class CompoundTag extends SpecificTag implements Iterable<NamedTag> {
   }
 
   @Override public Tag get(String name) {
-    if (items.containsKey(name)) {
-      return items.get(name).unpack();
+    ItemMap items = items();
+    NamedTag item = items.get(name);
+    if (item != null && items.sharedItems && isContainer(item.tag)) {
+      items.unshare();
+      item = items.get(name);
+    }
+    if (item != null) {
+      return item.unpack();
     }
     return new ErrorTag("No item named \"" + name + "\" in this compound tag.");
   }
 
   @Override public Iterator<NamedTag> iterator() {
+    ItemMap items = items();
+    if (items.sharedItems) {
+      items.unshare();
+    }
     return items.values().iterator();
   }
 
@@ -176,7 +306,7 @@ public class CompoundTag extends SpecificTag implements Iterable<NamedTag> {
   }
 
   public boolean isEmpty() {
-    return items.isEmpty();
+    return items().isEmpty();
   }
 
   @Override public boolean equals(Object obj) {
@@ -186,14 +316,16 @@ public class CompoundTag extends SpecificTag implements Iterable<NamedTag> {
     if (!(obj instanceof CompoundTag)) {
       return false;
     }
-    CompoundTag other = (CompoundTag) obj;
-    for (NamedTag tag : items.values()) {
-      if (!other.get(tag.name()).equals(tag.tag)) {
-        return false;
-      }
-    }
-    for (NamedTag tag : other.items.values()) {
-      if (!get(tag.name()).equals(tag.tag)) {
+    // Items are compared without copying shared items.
+    ItemMap items = items();
+    ItemMap otherItems = ((CompoundTag) obj).items();
+    return containsAll(items, otherItems) && containsAll(otherItems, items);
+  }
+
+  private static boolean containsAll(ItemMap items, ItemMap other) {
+    for (NamedTag tag : other.values()) {
+      NamedTag item = items.get(tag.name);
+      if (item == null || !item.tag.equals(tag.tag)) {
         return false;
       }
     }
@@ -201,6 +333,333 @@ public class CompoundTag extends SpecificTag implements Iterable<NamedTag> {
   }
 
   @Override public int hashCode() {
-    return items.hashCode();
+    return items().hashCode();
+  }
+
+  /**
+   * Compact item storage for compound tags.
+   *
+   * <p>The items are kept in insertion order in an array. Small compounds,
+   * which are the most common in NBT data, are searched linearly by name.
+   * Above {@link #INDEX_THRESHOLD} items, lookups use an open addressing hash
+   * index into the item array. Compared to a {@code LinkedHashMap} this
+   * avoids one map entry object per item.
+   */
+  static final class ItemMap extends AbstractMap<String, NamedTag> {
+    /** Maps with more items than this have a hash index. */
+    static final int INDEX_THRESHOLD = 8;
+
+    private static final NamedTag[] EMPTY = new NamedTag[0];
+
+    /** Frozen maps throw {@code UnsupportedOperationException} when modified. */
+    final boolean frozen;
+
+    /**
+     * Set when the entries array is shared with another map, see
+     * {@link CompoundTag#copy()}. Frozen maps are never marked as shared.
+     */
+    boolean shared = false;
+
+    /**
+     * Set in a copy whose compound and list items are still shared with the
+     * map it was copied from. Only the copy replaces the shared items, so
+     * reading the original map never modifies it.
+     */
+    boolean sharedItems = false;
+
+    private NamedTag[] entries = EMPTY;
+    private int size = 0;
+
+    /**
+     * Hash index into the entries array. Each slot holds an entry index
+     * plus one, or zero if the slot is empty. Null for small maps.
+     */
+    private int[] index = null;
+
+    private int modCount = 0;
+
+    ItemMap() {
+      frozen = false;
+    }
+
+    /**
+     * Creates a map of the given items. Later items replace earlier items
+     * with the same name.
+     */
+    ItemMap(NamedTag[] items, boolean frozen) {
+      this.frozen = frozen;
+      entries = new NamedTag[items.length];
+      for (NamedTag item : items) {
+        insert(item);
+      }
+    }
+
+    NamedTag entry(int i) {
+      return entries[i];
+    }
+
+    private static int hash(Object name) {
+      int h = name.hashCode();
+      return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the index of the item with the given name, or -1 if there is none
+     */
+    private int indexOf(Object name) {
+      if (index == null) {
+        for (int i = 0; i < size; ++i) {
+          if (entries[i].name.equals(name)) {
+            return i;
+          }
+        }
+        return -1;
+      }
+      int mask = index.length - 1;
+      for (int slot = hash(name) & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+        int i = index[slot] - 1;
+        if (entries[i].name.equals(name)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private void insert(NamedTag item) {
+      int i = indexOf(item.name);
+      if (i >= 0) {
+        entries[i] = item;
+      } else {
+        append(item);
+      }
+    }
+
+    private void append(NamedTag item) {
+      if (size == entries.length) {
+        entries = Arrays.copyOf(entries, Math.max(4, size + (size >> 1)));
+      }
+      entries[size] = item;
+      size += 1;
+      modCount += 1;
+      if (size > INDEX_THRESHOLD) {
+        if (index == null || size * 2 > index.length) {
+          rebuildIndex();
+        } else {
+          addToIndex(size - 1);
+        }
+      }
+    }
+
+    /**
+     * The estimated heap size of this map, excluding the items.
+     */
+    long heapBytes() {
+      // Fields: frozen, shared, sharedItems, entries, size, index, modCount,
+      // and the keySet and values fields of AbstractMap.
+      long bytes = HeapSize.object(3 + 4 * HeapSize.REFERENCE + 8)
+          + HeapSize.array(entries.length, HeapSize.REFERENCE);
+      if (index != null) {
+        bytes += HeapSize.array(index.length, 4);
+      }
+      return bytes;
+    }
+
+    private void rebuildIndex() {
+      if (size <= INDEX_THRESHOLD) {
+        index = null;
+        return;
+      }
+      index = new int[Integer.highestOneBit(size * 4 - 1)];
+      for (int i = 0; i < size; ++i) {
+        addToIndex(i);
+      }
+    }
+
+    private void addToIndex(int i) {
+      int mask = index.length - 1;
+      int slot = hash(entries[i].name) & mask;
+      while (index[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      index[slot] = i + 1;
+    }
+
+    /**
+     * Gives a map that shares the items of this map until one of the maps is
+     * modified.
+     */
+    ItemMap share() {
+      ItemMap copy = new ItemMap();
+      copy.entries = entries;
+      copy.size = size;
+      copy.index = index;
+      copy.shared = true;
+      copy.sharedItems = true;
+      if (!frozen) {
+        shared = true;
+      }
+      return copy;
+    }
+
+    /**
+     * Copies the shared entries, so that this map can be modified.
+     * In a copy, compound and list items are also replaced by copies,
+     * because they are reachable from the original map.
+     */
+    void unshare() {
+      if (shared) {
+        entries = Arrays.copyOf(entries, entries.length);
+        if (index != null) {
+          index = index.clone();
+        }
+        shared = false;
+      }
+      if (sharedItems) {
+        for (int i = 0; i < size; ++i) {
+          NamedTag item = entries[i];
+          if (isContainer(item.tag)) {
+            entries[i] = new NamedTag(item.name, item.tag.copy());
+          }
+        }
+        sharedItems = false;
+      }
+    }
+
+    private void removeAt(int i) {
+      checkMutable();
+      System.arraycopy(entries, i + 1, entries, i, size - i - 1);
+      size -= 1;
+      entries[size] = null;
+      modCount += 1;
+      rebuildIndex();
+    }
+
+    private void checkMutable() {
+      if (frozen) {
+        throw new UnsupportedOperationException("Cannot modify a frozen compound tag");
+      }
+      unshare();
+    }
+
+    @Override public NamedTag put(String name, NamedTag item) {
+      checkMutable();
+      int i = indexOf(name);
+      if (i >= 0) {
+        NamedTag previous = entries[i];
+        entries[i] = item;
+        return previous;
+      }
+      append(item);
+      return null;
+    }
+
+    @Override public NamedTag get(Object name) {
+      int i = name instanceof String ? indexOf(name) : -1;
+      return i >= 0 ? entries[i] : null;
+    }
+
+    @Override public boolean containsKey(Object name) {
+      return name instanceof String && indexOf(name) >= 0;
+    }
+
+    @Override public NamedTag remove(Object name) {
+      int i = name instanceof String ? indexOf(name) : -1;
+      if (i < 0) {
+        return null;
+      }
+      NamedTag previous = entries[i];
+      removeAt(i);
+      return previous;
+    }
+
+    @Override public void clear() {
+      checkMutable();
+      Arrays.fill(entries, 0, size, null);
+      size = 0;
+      index = null;
+      modCount += 1;
+    }
+
+    @Override public int size() {
+      return size;
+    }
+
+    @Override public Collection<NamedTag> values() {
+      return new AbstractCollection<NamedTag>() {
+        @Override public Iterator<NamedTag> iterator() {
+          return new ItemIterator<NamedTag>() {
+            @Override NamedTag value(NamedTag item) {
+              return item;
+            }
+          };
+        }
+
+        @Override public int size() {
+          return size;
+        }
+      };
+    }
+
+    @Override public Set<Entry<String, NamedTag>> entrySet() {
+      return new AbstractSet<Entry<String, NamedTag>>() {
+        @Override public Iterator<Entry<String, NamedTag>> iterator() {
+          return new ItemIterator<Entry<String, NamedTag>>() {
+            @Override Entry<String, NamedTag> value(NamedTag item) {
+              return new SimpleImmutableEntry<>(item.name, item);
+            }
+          };
+        }
+
+        @Override public int size() {
+          return size;
+        }
+      };
+    }
+
+    /** Same as the hash code of a {@code LinkedHashMap} with the same items. */
+    @Override public int hashCode() {
+      int code = 0;
+      for (int i = 0; i < size; ++i) {
+        code += entries[i].name.hashCode() ^ entries[i].hashCode();
+      }
+      return code;
+    }
+
+    private abstract class ItemIterator<T> implements Iterator<T> {
+      private int next = 0;
+      private int last = -1;
+      private int expectedModCount = modCount;
+
+      abstract T value(NamedTag item);
+
+      @Override public boolean hasNext() {
+        return next < size;
+      }
+
+      @Override public T next() {
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+        if (next >= size) {
+          throw new NoSuchElementException();
+        }
+        last = next;
+        next += 1;
+        return value(entries[last]);
+      }
+
+      @Override public void remove() {
+        if (last < 0) {
+          throw new IllegalStateException();
+        }
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+        removeAt(last);
+        next = last;
+        last = -1;
+        expectedModCount = modCount;
+      }
+    }
   }
 }
@@ -0,0 +1,199 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Compression formats for NBT data.
+ *
+ * <p>Zlib and gzip use pooled inflaters and deflaters, so compressing or
+ * decompressing many small chunks does not allocate native zlib state for
+ * each chunk.
+ */
+public enum Compression {
+  /** Gzip, used for level.dat and other standalone NBT files. */
+  GZIP(1) {
+    @Override public ByteBuffer decompress(byte[] data, int offset, int length, int maxSize)
+        throws IOException {
+      return Zlib.gunzip(data, offset, length, maxSize);
+    }
+
+    @Override public ByteBuffer compress(byte[] data, int offset, int length) {
+      return Zlib.gzip(data, offset, length);
+    }
+  },
+
+  /** Zlib, the default compression for region file chunks. */
+  ZLIB(2) {
+    @Override public ByteBuffer decompress(byte[] data, int offset, int length, int maxSize)
+        throws IOException {
+      return Zlib.inflate(data, offset, length, maxSize);
+    }
+
+    @Override public ByteBuffer compress(byte[] data, int offset, int length) {
+      return Zlib.deflate(data, offset, length);
+    }
+  },
+
+  /** Uncompressed data. */
+  NONE(3) {
+    @Override public ByteBuffer decompress(byte[] data, int offset, int length, int maxSize)
+        throws IOException {
+      if (length > maxSize) {
+        throw new NbtLimitException("Decompressed data exceeds " + maxSize + " bytes");
+      }
+      return ByteBuffer.wrap(data, offset, length).slice();
+    }
+
+    @Override public ByteBuffer compress(byte[] data, int offset, int length) {
+      return ByteBuffer.wrap(Arrays.copyOfRange(data, offset, offset + length));
+    }
+  },
+
+  /**
+   * The LZ4 block stream format of lz4-java, used for region file chunks
+   * since Minecraft 1.20.5. Only decompression is supported.
+   */
+  LZ4(4) {
+    @Override public ByteBuffer decompress(byte[] data, int offset, int length, int maxSize)
+        throws IOException {
+      return Lz4Block.decompress(data, offset, length, maxSize);
+    }
+
+    @Override public ByteBuffer compress(byte[] data, int offset, int length) {
+      throw new UnsupportedOperationException("LZ4 compression is not supported");
+    }
+  };
+
+  /**
+   * The default maximum size of decompressed data, 256 MiB. This limits the
+   * memory used when decompressing corrupt or hostile data.
+   */
+  public static final int DEFAULT_MAX_SIZE = 1 << 28;
+
+  /** The compression type identifier used in region files. */
+  public final int id;
+
+  Compression(int id) {
+    this.id = id;
+  }
+
+  /**
+   * Decompresses data in this format, with a maximum decompressed size of
+   * {@link #DEFAULT_MAX_SIZE}.
+   *
+   * @return a heap buffer holding the decompressed data, positioned at the start
+   * of the data. For uncompressed data the buffer shares the input array.
+   * @throws NbtLimitException if the decompressed data is too large
+   * @throws IOException if the data is corrupt or truncated
+   */
+  public ByteBuffer decompress(byte[] data, int offset, int length) throws IOException {
+    return decompress(data, offset, length, DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * Decompresses data in this format. The output buffer is not grown past
+   * {@code maxSize} bytes.
+   *
+   * @param maxSize the maximum size of the decompressed data
+   * @return a heap buffer holding the decompressed data, positioned at the start
+   * of the data. For uncompressed data the buffer shares the input array.
+   * @throws NbtLimitException if the decompressed data is larger than
+   * {@code maxSize}
+   * @throws IOException if the data is corrupt or truncated
+   */
+  public abstract ByteBuffer decompress(byte[] data, int offset, int length, int maxSize)
+      throws IOException;
+
+  /**
+   * Compresses data in this format. Gzip, zlib and uncompressed data are
+   * supported. LZ4 compression is not implemented.
+   *
+   * @return a heap buffer holding the compressed data, positioned at the start
+   * of the data
+   * @throws UnsupportedOperationException for {@link #LZ4}
+   */
+  public abstract ByteBuffer compress(byte[] data, int offset, int length);
+
+  /**
+   * Finds the compression format for a region file compression type.
+   *
+   * @throws IOException if the compression type is unknown
+   */
+  public static Compression fromId(int id) throws IOException {
+    for (Compression compression : values()) {
+      if (compression.id == id) {
+        return compression;
+      }
+    }
+    throw new IOException("Unknown compression type: " + id);
+  }
+
+  /**
+   * Detects the compression format from the first bytes of the data.
+   * Data that is not recognized as gzip, zlib or LZ4 is assumed to be
+   * uncompressed.
+   */
+  public static Compression detect(byte[] data, int offset, int length) {
+    if (length >= 2) {
+      int b0 = data[offset] & 0xFF;
+      int b1 = data[offset + 1] & 0xFF;
+      if (b0 == 0x1F && b1 == 0x8B) {
+        return GZIP;
+      }
+      // Zlib header: deflate method with a valid header checksum.
+      if ((b0 & 0x0F) == 8 && (b0 >> 4) <= 7 && (b0 << 8 | b1) % 31 == 0) {
+        return ZLIB;
+      }
+    }
+    if (length >= Lz4Block.MAGIC.length) {
+      boolean lz4 = true;
+      for (int i = 0; i < Lz4Block.MAGIC.length; ++i) {
+        lz4 &= data[offset + i] == Lz4Block.MAGIC[i];
+      }
+      if (lz4) {
+        return LZ4;
+      }
+    }
+    return NONE;
+  }
+
+  /**
+   * Decompresses data in any of the supported formats, detected
+   * with {@link #detect(byte[], int, int)}.
+   */
+  public static ByteBuffer decompressAny(byte[] data, int offset, int length)
+      throws IOException {
+    return detect(data, offset, length).decompress(data, offset, length);
+  }
+}
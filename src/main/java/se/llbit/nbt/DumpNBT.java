@@ -29,27 +29,24 @@
  */
 package se.llbit.nbt;
 
-import java.io.DataInputStream;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.zip.GZIPInputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 /**
  * Simple program to print a text representation of NBT data.
+ *
+ * <p>The input can be gzip, zlib or LZ4 compressed, or uncompressed.
  */
 public class DumpNBT {
   public static void main(String[] args) throws IOException {
     if (args.length > 0) {
-      // TODO: handle non-gzipped input.
-      try (FileInputStream fin = new FileInputStream(args[0]);
-          GZIPInputStream gzin = new GZIPInputStream(fin);
-          DataInputStream in = new DataInputStream(gzin)) {
-        Tag root = NamedTag.read(in);
-        System.out.println(root.dumpTree());
-      }
+      byte[] data = Files.readAllBytes(Paths.get(args[0]));
+      Tag root = NamedTag.read(Compression.decompressAny(data, 0, data.length));
+      System.out.println(root.dumpTree());
     } else {
       System.err.println("Missing filename argument.");
-      System.err.println("Usage: DumpNBT <GZipped NBT file>");
+      System.err.println("Usage: DumpNBT <NBT file>");
     }
   }
 }
@@ -49,6 +49,10 @@ public class ErrorTag extends SpecificTag {
     return message != null ? message : "";
   }
 
+  @Override public long estimatedHeapBytes() {
+    return HeapSize.object(HeapSize.REFERENCE) + HeapSize.string(message);
+  }
+
   @Override public String extraInfo() {
     return ": \"" + getError() + '"';
   }
@@ -32,6 +32,8 @@ package se.llbit.nbt;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 
 public class FloatTag extends SpecificTag {
   public final float value;
@@ -44,10 +46,26 @@ public class FloatTag extends SpecificTag {
     }
   }
 
+  static SpecificTag read(ByteBuffer in) {
+    try {
+      return new FloatTag(in.getFloat());
+    } catch (BufferUnderflowException e) {
+      return new ErrorTag("Unexpected end of data while reading TAG_Float");
+    }
+  }
+
   @Override public void write(DataOutputStream out) throws IOException {
     out.writeFloat(getData());
   }
 
+  @Override public long serializedSize() {
+    return 4;
+  }
+
+  @Override public long estimatedHeapBytes() {
+    return HeapSize.object(4);
+  }
+
   public FloatTag(float value) {
     this.value = value;
   }
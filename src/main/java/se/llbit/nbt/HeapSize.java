@@ -0,0 +1,81 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+/**
+ * Object size estimates for {@link Tag#estimatedHeapBytes()}.
+ *
+ * <p>The estimates assume a 64-bit JVM with compressed object references
+ * and compact strings, which is the default for heaps smaller than 32 GiB:
+ * objects have a 12 byte header, references use 4 bytes, and all objects
+ * are aligned to 8 bytes.
+ */
+final class HeapSize {
+  static final int HEADER = 12;
+  static final int ARRAY_HEADER = 16;
+  static final int REFERENCE = 4;
+
+  private HeapSize() { }
+
+  static long align(long size) {
+    return (size + 7) & ~7L;
+  }
+
+  /** The size of an object with fields of the given total size. */
+  static long object(int fieldBytes) {
+    return align(HEADER + fieldBytes);
+  }
+
+  /** The size of an array. */
+  static long array(long length, int elementSize) {
+    return align(ARRAY_HEADER + length * elementSize);
+  }
+
+  /**
+   * The size of a string and its character array. Strings that only
+   * contain Latin-1 characters use one byte per character. A null string
+   * has no size, so a tag holding it counts only as the tag object.
+   */
+  static long string(String value) {
+    if (value == null) {
+      return 0;
+    }
+    int length = value.length();
+    int elementSize = 1;
+    for (int i = 0; i < length; ++i) {
+      if (value.charAt(i) > 0xFF) {
+        elementSize = 2;
+        break;
+      }
+    }
+    // Fields: value, hash, coder, hashIsZero.
+    return object(REFERENCE + 4 + 2) + array(length, elementSize);
+  }
+}
@@ -32,39 +32,114 @@ package se.llbit.nbt;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.util.Arrays;
 
 public class IntArrayTag extends SpecificTag {
+  /** Number of elements per block in bulk reads and writes. */
+  private static final int BLOCK_SIZE = 2048;
+
   public final int[] value;
 
   public static SpecificTag read(DataInputStream in) {
+    return read(in, null);
+  }
+
+  /**
+   * Reads the tag payload. The array length is checked against the budget,
+   * if there is one, before the array is allocated.
+   */
+  static SpecificTag read(DataInputStream in, TagParser.Budget budget) {
     try {
-      int length = in.readInt();
-      int[] data = new int[length];
-      for (int i = 0; i < length; ++i) {
-        data[i] = in.readInt();
+      int length = ByteArrayTag.arrayLength(in);
+      if (budget != null && !budget.allowArray(Tag.TAG_INT_ARRAY, length)) {
+        return budget.error();
       }
+      int[] data = new int[length];
+      readData(in, data);
       return new IntArrayTag(data);
     } catch (IOException e) {
       return new ErrorTag("IOException while reading TAG_Int_Array:\n" + e.getMessage());
     }
   }
 
+  static SpecificTag read(ByteBuffer in, TagParser.Budget budget) {
+    try {
+      int length = in.getInt();
+      if (length < 0 || length > in.remaining() / 4) {
+        return new ErrorTag("Unexpected end of data while reading TAG_Int_Array");
+      }
+      if (budget != null && !budget.allowArray(Tag.TAG_INT_ARRAY, length)) {
+        return budget.error();
+      }
+      int[] data = new int[length];
+      in.asIntBuffer().get(data);
+      in.position(in.position() + length * 4);
+      return new IntArrayTag(data);
+    } catch (BufferUnderflowException e) {
+      return new ErrorTag("Unexpected end of data while reading TAG_Int_Array");
+    }
+  }
+
   @Override public void write(DataOutputStream out) throws IOException {
     out.writeInt(value.length);
-    for (int i = 0; i < value.length; ++i) {
-      out.writeInt(value[i]);
+    writeData(out, value);
+  }
+
+  @Override public long serializedSize() {
+    return 4 + 4L * value.length;
+  }
+
+  @Override public long estimatedHeapBytes() {
+    return HeapSize.object(HeapSize.REFERENCE) + HeapSize.array(value.length, 4);
+  }
+
+  /**
+   * Reads big-endian array elements from the input stream.
+   *
+   * <p>The data is read in blocks of bytes that are converted through a
+   * {@code IntBuffer} view, which is much faster than reading one element
+   * at a time.
+   */
+  static void readData(DataInputStream in, int[] data) throws IOException {
+    byte[] block = new byte[Math.min(data.length, BLOCK_SIZE) * 4];
+    IntBuffer view = ByteBuffer.wrap(block).asIntBuffer();
+    int offset = 0;
+    while (offset < data.length) {
+      int count = Math.min(data.length - offset, BLOCK_SIZE);
+      in.readFully(block, 0, count * 4);
+      view.clear();
+      view.get(data, offset, count);
+      offset += count;
     }
   }
 
-  static void skip(DataInputStream in) {
-    try {
-      int length = in.readInt();
-      in.skipBytes(length * 4);
-    } catch (IOException e) {
+  /**
+   * Writes big-endian array elements to the output stream, in blocks.
+   */
+  static void writeData(DataOutputStream out, int[] data) throws IOException {
+    byte[] block = new byte[Math.min(data.length, BLOCK_SIZE) * 4];
+    IntBuffer view = ByteBuffer.wrap(block).asIntBuffer();
+    int offset = 0;
+    while (offset < data.length) {
+      int count = Math.min(data.length - offset, BLOCK_SIZE);
+      view.clear();
+      view.put(data, offset, count);
+      out.write(block, 0, count * 4);
+      offset += count;
     }
   }
 
+  static void skip(DataInputStream in) throws IOException {
+    SpecificTag.skipFully(in, ByteArrayTag.arrayLength(in) * 4L);
+  }
+
+  static void skip(ByteBuffer in) {
+    SpecificTag.skipBytes(in, in.getInt() * 4L);
+  }
+
   public IntArrayTag(int[] data) {
     this.value = data;
   }
@@ -32,22 +32,73 @@ package se.llbit.nbt;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 
 public class IntTag extends SpecificTag {
+  private static final int CACHE_LOW = -128;
+
+  /** Upper bound for the cacheHigh system property. */
+  private static final int MAX_CACHE_HIGH = 65535;
+
+  /**
+   * The largest cached value. Can be changed with the system property
+   * {@code se.llbit.nbt.IntTag.cacheHigh}, which is clamped to the range
+   * 127 to 65535.
+   */
+  private static final int CACHE_HIGH;
+  private static final IntTag[] CACHE;
+
+  static {
+    int cacheHigh = Integer.getInteger("se.llbit.nbt.IntTag.cacheHigh", 1023);
+    CACHE_HIGH = Math.min(MAX_CACHE_HIGH, Math.max(127, cacheHigh));
+    CACHE = new IntTag[CACHE_HIGH - CACHE_LOW + 1];
+    for (int i = 0; i < CACHE.length; ++i) {
+      CACHE[i] = new IntTag(i + CACHE_LOW);
+    }
+  }
+
   public final int value;
 
+  /**
+   * Returns a tag with the given value. Shared instances are returned for
+   * small values, by default in the range -128 to 1023.
+   */
+  public static IntTag valueOf(int value) {
+    if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+      return CACHE[value - CACHE_LOW];
+    }
+    return new IntTag(value);
+  }
+
   public static SpecificTag read(DataInputStream in) {
     try {
-      return new IntTag(in.readInt());
+      return valueOf(in.readInt());
     } catch (IOException e) {
       return new ErrorTag("IOException while reading TAG_Int:\n" + e.getMessage());
     }
   }
 
+  static SpecificTag read(ByteBuffer in) {
+    try {
+      return valueOf(in.getInt());
+    } catch (BufferUnderflowException e) {
+      return new ErrorTag("Unexpected end of data while reading TAG_Int");
+    }
+  }
+
   @Override public void write(DataOutputStream out) throws IOException {
     out.writeInt(value);
   }
 
+  @Override public long serializedSize() {
+    return 4;
+  }
+
+  @Override public long estimatedHeapBytes() {
+    return HeapSize.object(4);
+  }
+
   public IntTag(boolean boolValue) {
     this(boolValue ? 1 : 0);
   }
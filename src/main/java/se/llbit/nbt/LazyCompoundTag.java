@@ -0,0 +1,279 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compound tag that parses its items on demand.
+ *
+ * <p>When a lazy compound tag is read, only the name, type, and location of
+ * each item is recorded. An item is parsed the first time it is accessed with
+ * {@link #get(String)}. Compound items are themselves lazy compound tags.
+ * All other operations, such as iteration or adding items, parse all
+ * remaining items first.
+ *
+ * <p>Items that have not been parsed are written by copying their original
+ * bytes, so a lazy tree can be written back without parsing the untouched parts.
+ *
+ * <p>The buffer that a lazy compound tag was read from must not be modified
+ * while the tag is in use.
+ */
+public class LazyCompoundTag extends CompoundTag {
+  /** Lookups use a hash index above this number of items. */
+  private static final int INDEX_THRESHOLD = 16;
+
+  /** The buffer holding the item payloads, null when all items are parsed. */
+  private ByteBuffer data;
+  private int count = 0;
+  private String[] names = new String[8];
+  private byte[] types = new byte[8];
+  private int[] start = new int[8];
+  private int[] end = new int[8];
+  private SpecificTag[] parsed = new SpecificTag[8];
+  private Map<String, Integer> index = null;
+
+  private LazyCompoundTag(ByteBuffer data) {
+    this.data = data;
+  }
+
+  /**
+   * Reads a lazy compound tag payload from the buffer. The buffer position is
+   * advanced past the end of the compound tag.
+   */
+  static SpecificTag read(ByteBuffer in) {
+    LazyCompoundTag tagThis = new LazyCompoundTag(in.duplicate());
+    try {
+      while (true) {
+        byte type = in.get();
+        if (type == Tag.TAG_END) {
+          break;
+        }
+        String name = StringTag.readName(in);
+        tagThis.addEntry(name, type, in.position());
+        if (type < Tag.TAG_BYTE || type > Tag.TAG_LONG_ARRAY) {
+          // The item can not be skipped. Parsing it gives an error tag.
+          tagThis.end[tagThis.count - 1] = in.limit();
+          break;
+        }
+        try {
+          SpecificTag.skip(type, in);
+          tagThis.end[tagThis.count - 1] = in.position();
+        } catch (BufferUnderflowException | IOException e) {
+          // Parsing the truncated or malformed item gives an error tag.
+          tagThis.end[tagThis.count - 1] = in.limit();
+          break;
+        }
+      }
+    } catch (BufferUnderflowException | UTFDataFormatException e) {
+      // Parsing stops at the first error, like in CompoundTag.read().
+    }
+    return tagThis;
+  }
+
+  private void addEntry(String name, byte type, int position) {
+    if (count == names.length) {
+      int capacity = count * 2;
+      names = Arrays.copyOf(names, capacity);
+      types = Arrays.copyOf(types, capacity);
+      start = Arrays.copyOf(start, capacity);
+      end = Arrays.copyOf(end, capacity);
+      parsed = Arrays.copyOf(parsed, capacity);
+    }
+    names[count] = name;
+    types[count] = type;
+    start[count] = position;
+    end[count] = position;
+    count += 1;
+  }
+
+  /**
+   * Finds the index of the item with the given name.
+   * If there are duplicate names, the last item is used, as in {@link CompoundTag}.
+   *
+   * @return the item index, or -1 if there is no item with the name
+   */
+  private int indexOf(String name) {
+    if (count <= INDEX_THRESHOLD) {
+      for (int i = count - 1; i >= 0; --i) {
+        if (names[i].equals(name)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+    if (index == null) {
+      index = new HashMap<>(count * 2);
+      for (int i = 0; i < count; ++i) {
+        index.put(names[i], i);
+      }
+    }
+    Integer i = index.get(name);
+    return i != null ? i : -1;
+  }
+
+  private SpecificTag item(int i) {
+    if (parsed[i] == null) {
+      ByteBuffer in = data.duplicate();
+      in.limit(end[i]);
+      in.position(start[i]);
+      if (types[i] == Tag.TAG_COMPOUND) {
+        parsed[i] = LazyCompoundTag.read(in);
+      } else {
+        parsed[i] = SpecificTag.read(types[i], in);
+      }
+    }
+    return parsed[i];
+  }
+
+  /**
+   * Test if all items of this compound tag have been parsed.
+   */
+  public boolean isParsed() {
+    return data == null;
+  }
+
+  @Override ItemMap items() {
+    if (data != null) {
+      for (int i = 0; i < count; ++i) {
+        items.put(names[i], new NamedTag(names[i], item(i)));
+      }
+      data = null;
+      names = null;
+      types = null;
+      start = null;
+      end = null;
+      parsed = null;
+      index = null;
+    }
+    return items;
+  }
+
+  @Override public Tag get(String name) {
+    if (data == null) {
+      return super.get(name);
+    }
+    int i = indexOf(name);
+    if (i >= 0) {
+      return item(i);
+    }
+    return new ErrorTag("No item named \"" + name + "\" in this compound tag.");
+  }
+
+  @Override public void write(DataOutputStream out) throws IOException {
+    if (data == null) {
+      super.write(out);
+      return;
+    }
+    for (int i = 0; i < count; ++i) {
+      if (indexOf(names[i]) != i) {
+        continue; // Duplicate name.
+      }
+      out.writeByte(types[i]);
+      StringTag.write(out, names[i]);
+      if (parsed[i] != null) {
+        parsed[i].write(out);
+      } else {
+        writeBytes(out, start[i], end[i] - start[i]);
+      }
+    }
+    out.writeByte(Tag.TAG_END);
+  }
+
+  @Override public long serializedSize() {
+    if (data == null) {
+      return super.serializedSize();
+    }
+    long size = 1; // TAG_End.
+    for (int i = 0; i < count; ++i) {
+      if (indexOf(names[i]) != i) {
+        continue; // Duplicate name.
+      }
+      size += 1 + StringTag.serializedSize(names[i]);
+      if (parsed[i] != null) {
+        size += parsed[i].serializedSize();
+      } else {
+        size += end[i] - start[i];
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Estimates the heap size of this tag. For a tag that is not fully parsed,
+   * the buffer holding the unparsed items is not counted, since it is shared
+   * by all lazy compound tags read from the same buffer.
+   */
+  @Override public long estimatedHeapBytes() {
+    if (data == null) {
+      return super.estimatedHeapBytes();
+    }
+    // Fields: the fields of CompoundTag, and data, count, names, types,
+    // start, end, parsed, index.
+    long size = HeapSize.object(HeapSize.REFERENCE + 24 + 7 * HeapSize.REFERENCE + 4)
+        + items.heapBytes()
+        + HeapSize.array(names.length, HeapSize.REFERENCE)
+        + HeapSize.array(types.length, 1)
+        + 2 * HeapSize.array(start.length, 4)
+        + HeapSize.array(parsed.length, HeapSize.REFERENCE);
+    if (index != null) {
+      // A hash map node and a boxed index for each item.
+      size += HeapSize.object(3 * HeapSize.REFERENCE + 16)
+          + HeapSize.array(Integer.highestOneBit(count * 2) * 2, HeapSize.REFERENCE)
+          + count * (HeapSize.object(3 * HeapSize.REFERENCE + 4) + HeapSize.object(4));
+    }
+    for (int i = 0; i < count; ++i) {
+      size += HeapSize.string(names[i]);
+      if (parsed[i] != null) {
+        size += parsed[i].estimatedHeapBytes();
+      }
+    }
+    return size;
+  }
+
+  private void writeBytes(DataOutputStream out, int position, int length) throws IOException {
+    if (data.hasArray()) {
+      out.write(data.array(), data.arrayOffset() + position, length);
+    } else {
+      ByteBuffer in = data.duplicate();
+      in.position(position);
+      byte[] bytes = new byte[length];
+      in.get(bytes);
+      out.write(bytes);
+    }
+  }
+}
@@ -32,12 +32,14 @@ package se.llbit.nbt;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.RandomAccess;
 
 /**
  * Contains multiple tags of the same type.
@@ -46,78 +48,193 @@ public class ListTag extends SpecificTag implements Iterable<SpecificTag> {
   public final int type;
   public final List<SpecificTag> items;
 
+  /** Frozen lists have unmodifiable items, see {@link #freeze()}. */
+  private final boolean frozen;
+
+  /**
+   * Cached serialized size of this tag, excluding the payloads of compound
+   * and list items. Negative when not computed.
+   */
+  private long leafSize = -1;
+
+  /** Modification count of the item list when the leaf size was computed. */
+  private int leafSizeModCount;
+
+  /**
+   * Cached estimated heap size of this tag, excluding compound and list
+   * items. Negative when not computed.
+   */
+  private long leafHeap = -1;
+
+  /** Modification count of the item list when the leaf heap size was computed. */
+  private int leafHeapModCount;
+
   public static SpecificTag read(DataInputStream in) {
-    try {
-      byte itemType = in.readByte();
-      int numItems = in.readInt();
-      if (itemType == Tag.TAG_END && numItems > 0) {
-        return new ErrorTag("Cannot create list of TAG_End");
-      }
-      ListTag tagThis = new ListTag(itemType, Collections.<SpecificTag>emptyList());
-      for (int i = 0; i < numItems; ++i) {
-        SpecificTag last = SpecificTag.read(itemType, in);
-        tagThis.add(last);
-      }
-      return tagThis;
-    } catch (IOException e) {
-      return new ErrorTag("IOException while reading TAG_List:\n" + e.getMessage());
-    }
+    return TagParser.read((byte) Tag.TAG_LIST, in, DEFAULT_MAX_DEPTH);
   }
 
+  static SpecificTag read(ByteBuffer in) {
+    return TagParser.read((byte) Tag.TAG_LIST, in, DEFAULT_MAX_DEPTH);
+  }
+
+
   @Override public void write(DataOutputStream out) throws IOException {
     out.writeByte(getType());
     out.writeInt(size());
-    for (SpecificTag item : items) {
-      item.write(out);
+    if (items instanceof PrimitiveList) {
+      ((PrimitiveList) items).write(out);
+    } else {
+      for (SpecificTag item : items) {
+        item.write(out);
+      }
     }
   }
 
-  static Map<String, Tag> partialParse(DataInputStream in, String prefix,
-      Map<String, Tag> result, Set<String> request, Set<String> prefixes) {
-
-    try {
-      byte itemType = in.readByte();
-      int numItems = in.readInt();
-      if (itemType == Tag.TAG_END && numItems > 0) {
-        return result; // Cannot create list of TAG_End.
+  @Override public long serializedSize() {
+    if (items instanceof PrimitiveList) {
+      PrimitiveList values = (PrimitiveList) items;
+      return 5 + (long) values.size() * values.itemSize();
+    }
+    if (!(items instanceof ItemList)) {
+      // Frozen lists do not cache the size, so that they can be shared
+      // between threads.
+      long size = 5;
+      for (SpecificTag item : items) {
+        size += item.serializedSize();
       }
-      for (int i = 0; i < numItems; ++i) {
-        String tag = prefix + "." + i;
-        boolean parsed = NamedTag.partiallyParseTag(in, result, request, prefixes, itemType, tag);
-        if (parsed) {
-          if (request.isEmpty()) {
-            return result;
-          }
-        } else {
-          SpecificTag.skip(itemType, in);
+      return size;
+    }
+    int modCount = ((ItemList) items).modCount();
+    if (leafSize < 0 || leafSizeModCount != modCount) {
+      long size = 5; // Item type and list size.
+      for (SpecificTag item : items) {
+        if (!isContainer(item)) {
+          size += item.serializedSize();
         }
       }
-    } catch (IOException e) {
+      leafSize = size;
+      leafSizeModCount = modCount;
     }
-    return result;
+    long size = leafSize;
+    for (SpecificTag item : items) {
+      if (isContainer(item)) {
+        size += item.serializedSize();
+      }
+    }
+    return size;
   }
 
-  static void skip(DataInputStream in) {
-    try {
-      byte itemType = in.readByte();
-      int numItems = in.readInt();
-      if (itemType == 0) {
-        return;
+  @Override public long estimatedHeapBytes() {
+    // Fields: type, items, frozen, leafSize, leafSizeModCount, leafHeap,
+    // leafHeapModCount.
+    long size = HeapSize.object(4 + HeapSize.REFERENCE + 1 + 8 + 4 + 8 + 4);
+    if (items instanceof PrimitiveList) {
+      return size + ((PrimitiveList) items).heapBytes();
+    }
+    if (!(items instanceof ItemList)) {
+      // Frozen lists: an unmodifiable list wrapping an array list.
+      size += HeapSize.object(2 * HeapSize.REFERENCE) + HeapSize.object(HeapSize.REFERENCE)
+          + HeapSize.array(items.size(), HeapSize.REFERENCE);
+      for (SpecificTag item : items) {
+        size += item.estimatedHeapBytes();
       }
-      for (int i = 0; i < numItems; ++i) {
-        SpecificTag.skip(itemType, in);
+      return size;
+    }
+    int modCount = ((ItemList) items).modCount();
+    if (leafHeap < 0 || leafHeapModCount != modCount) {
+      // Fields of ItemList: items, size, shared, sharedItems, modCount.
+      long leaves = HeapSize.object(HeapSize.REFERENCE + 4 + 2 + 4)
+          + HeapSize.array(((ItemList) items).capacity(), HeapSize.REFERENCE);
+      for (SpecificTag item : items) {
+        if (!isContainer(item)) {
+          leaves += item.estimatedHeapBytes();
+        }
+      }
+      leafHeap = leaves;
+      leafHeapModCount = modCount;
+    }
+    size += leafHeap;
+    for (SpecificTag item : items) {
+      if (isContainer(item)) {
+        size += item.estimatedHeapBytes();
       }
-    } catch (IOException e) {
     }
+    return size;
   }
 
+  static void skip(DataInputStream in) throws IOException {
+    TagParser.skip((byte) Tag.TAG_LIST, in, DEFAULT_MAX_DEPTH);
+  }
+
+  static void skip(ByteBuffer in) throws IOException {
+    TagParser.skip((byte) Tag.TAG_LIST, in, DEFAULT_MAX_DEPTH);
+  }
+
+
   /**
    * @param type the type of tag that is stored in this list
    * @param items the items of this list
    */
   public ListTag(int type, List<? extends SpecificTag> items) {
+    this(type, new ItemList(items), false);
+  }
+
+  /**
+   * Creates a list of TAG_Byte items backed by the given array.
+   * The array is not copied.
+   */
+  public ListTag(byte[] values) {
+    this(new PrimitiveList.ByteList(values));
+  }
+
+  /**
+   * Creates a list of TAG_Short items backed by the given array.
+   * The array is not copied.
+   */
+  public ListTag(short[] values) {
+    this(new PrimitiveList.ShortList(values));
+  }
+
+  /**
+   * Creates a list of TAG_Int items backed by the given array.
+   * The array is not copied.
+   */
+  public ListTag(int[] values) {
+    this(new PrimitiveList.IntList(values));
+  }
+
+  /**
+   * Creates a list of TAG_Long items backed by the given array.
+   * The array is not copied.
+   */
+  public ListTag(long[] values) {
+    this(new PrimitiveList.LongList(values));
+  }
+
+  /**
+   * Creates a list of TAG_Float items backed by the given array.
+   * The array is not copied.
+   */
+  public ListTag(float[] values) {
+    this(new PrimitiveList.FloatList(values));
+  }
+
+  /**
+   * Creates a list of TAG_Double items backed by the given array.
+   * The array is not copied.
+   */
+  public ListTag(double[] values) {
+    this(new PrimitiveList.DoubleList(values));
+  }
+
+  ListTag(PrimitiveList values) {
+    this(values.itemType, values, values.frozen);
+  }
+
+  private ListTag(int type, List<SpecificTag> items, boolean frozen) {
     this.type = type;
-    this.items = new ArrayList<>(items);
+    this.items = items;
+    this.frozen = frozen;
   }
 
   /**
@@ -134,21 +251,149 @@ public class ListTag extends SpecificTag implements Iterable<SpecificTag> {
     return items.size();
   }
 
+  /**
+   * Gives the value of the TAG_Double item at index {@code i}.
+   * Lists of TAG_Double read from NBT data store their values in a
+   * primitive array, and this method avoids creating a tag for the item.
+   */
+  public double doubleAt(int i) {
+    if (items instanceof PrimitiveList) {
+      return ((PrimitiveList) items).doubleAt(i);
+    }
+    return items.get(i).doubleValue();
+  }
+
+  /**
+   * Gives the value of the TAG_Float item at index {@code i}.
+   */
+  public float floatAt(int i) {
+    if (items instanceof PrimitiveList) {
+      return ((PrimitiveList) items).floatAt(i);
+    }
+    return items.get(i).floatValue();
+  }
+
+  /**
+   * Gives the value of the TAG_Long item at index {@code i}.
+   */
+  public long longAt(int i) {
+    if (items instanceof PrimitiveList) {
+      return ((PrimitiveList) items).longAt(i);
+    }
+    return items.get(i).longValue();
+  }
+
+  /**
+   * Gives the value of the TAG_Int item at index {@code i}.
+   */
+  public int intAt(int i) {
+    if (items instanceof PrimitiveList) {
+      return ((PrimitiveList) items).intAt(i);
+    }
+    return items.get(i).intValue();
+  }
+
+  /**
+   * Gives the value of the TAG_Short item at index {@code i}.
+   */
+  public short shortAt(int i) {
+    if (items instanceof PrimitiveList) {
+      return ((PrimitiveList) items).shortAt(i);
+    }
+    return items.get(i).shortValue();
+  }
+
+  /**
+   * Gives the value of the TAG_Byte item at index {@code i}.
+   */
+  public int byteAt(int i) {
+    if (items instanceof PrimitiveList) {
+      return ((PrimitiveList) items).byteAt(i);
+    }
+    return items.get(i).byteValue();
+  }
+
+  /**
+   * Gives an immutable copy of this list, with all items frozen.
+   * The items of the frozen list cannot be added, removed or replaced, and
+   * the list can be read from multiple threads without synchronization.
+   *
+   * <p>The arrays of array tags in the list are shared with this list and
+   * are not protected from modification.
+   *
+   * @return this list if it is already frozen
+   */
+  @Override public ListTag freeze() {
+    if (frozen) {
+      return this;
+    }
+    if (items instanceof PrimitiveList) {
+      return new ListTag(((PrimitiveList) items).freeze());
+    }
+    SpecificTag[] frozenItems = new SpecificTag[items.size()];
+    for (int i = 0; i < frozenItems.length; ++i) {
+      frozenItems[i] = items.get(i).freeze();
+    }
+    return new ListTag(type, Collections.unmodifiableList(Arrays.asList(frozenItems)), true);
+  }
+
+  /**
+   * Gives a copy of this list that shares its items with this list until one
+   * of the lists is modified. Like {@link CompoundTag#copy()}, copying takes
+   * constant time and reading this list never modifies it. Compound and list
+   * items are copied when they are accessed in the copy.
+   *
+   * <p>The copy of a frozen list is not frozen.
+   */
+  @Override public ListTag copy() {
+    if (items instanceof PrimitiveList) {
+      return new ListTag(((PrimitiveList) items).share());
+    }
+    if (items instanceof ItemList) {
+      return new ListTag(type, ((ItemList) items).share(), false);
+    }
+    return new ListTag(type, ItemList.copyOf(items), false);
+  }
+
+  /**
+   * @return {@code true} if this list is immutable
+   */
+  public boolean isFrozen() {
+    return frozen;
+  }
+
   /**
    * Append an item to this list.
+   *
+   * <p>Only items of the list type can be stored in the list. An empty list
+   * of type TAG_End accepts no items.
+   *
+   * @throws IllegalArgumentException if the item is not of the list type
+   * @throws UnsupportedOperationException if this list is frozen
    */
   public void add(SpecificTag node) {
-    // TODO: prevent storing the wrong type.
+    checkType(node);
     items.add(node);
   }
 
   /**
    * Replaces the item at index {@code i} with the new node {@code node}.
+   *
+   * @throws IllegalArgumentException if the item is not of the list type
+   * @throws UnsupportedOperationException if this list is frozen
    */
   @Override public void set(int i, SpecificTag node) {
+    checkType(node);
     items.set(i, node);
   }
 
+  private void checkType(SpecificTag node) {
+    if (node.tagType() != type) {
+      throw new IllegalArgumentException(String.format(
+          "Cannot store %s in list of %s", node.tagName(), Tag.typeName(type)));
+    }
+  }
+
   public String toString() {
     return dumpTree();
   }
@@ -214,4 +459,153 @@ public class ListTag extends SpecificTag implements Iterable<SpecificTag> {
     }
     return code;
   }
+
+  /**
+   * Item storage that counts all modifications, including replaced items,
+   * so that the cached serialized size can be invalidated.
+   *
+   * <p>The item array can be shared with copies of the list, see
+   * {@link ListTag#copy()}. The array is copied before it is modified.
+   */
+  static final class ItemList extends AbstractList<SpecificTag> implements RandomAccess {
+    private static final SpecificTag[] EMPTY = new SpecificTag[0];
+
+    private SpecificTag[] items;
+    private int size;
+
+    /** Set when the item array is shared with another list. */
+    private boolean shared = false;
+
+    /**
+     * Set in a copy whose compound and list items are still shared with the
+     * list it was copied from. Only the copy replaces the shared items, so
+     * reading the original list never modifies it.
+     */
+    private boolean sharedItems = false;
+
+    ItemList(Collection<? extends SpecificTag> items) {
+      this.items = items.toArray(new SpecificTag[items.size()]);
+      size = this.items.length;
+    }
+
+    private ItemList(SpecificTag[] items, int size) {
+      this.items = items;
+      this.size = size;
+    }
+
+    /**
+     * Gives a list of the given items which copies compound and list items
+     * when they are accessed.
+     */
+    static ItemList copyOf(Collection<? extends SpecificTag> items) {
+      ItemList copy = new ItemList(items);
+      copy.sharedItems = true;
+      return copy;
+    }
+
+    int modCount() {
+      return modCount;
+    }
+
+    /** The length of the item array. */
+    int capacity() {
+      return items.length;
+    }
+
+    /**
+     * Gives a list that shares the items of this list until one of the lists
+     * is modified.
+     */
+    ItemList share() {
+      ItemList copy = new ItemList(items, size);
+      copy.shared = true;
+      copy.sharedItems = true;
+      shared = true;
+      return copy;
+    }
+
+    /**
+     * Copies the shared item array, so that this list can be modified.
+     * In a copy, compound and list items are also replaced by copies,
+     * because they are reachable from the original list.
+     */
+    private void unshare() {
+      if (shared) {
+        items = Arrays.copyOf(items, items.length);
+        shared = false;
+      }
+      if (sharedItems) {
+        for (int i = 0; i < size; ++i) {
+          if (isContainer(items[i])) {
+            items[i] = items[i].copy();
+          }
+        }
+        sharedItems = false;
+      }
+    }
+
+    @Override public int size() {
+      return size;
+    }
+
+    @Override public SpecificTag get(int i) {
+      checkIndex(i);
+      if (sharedItems && isContainer(items[i])) {
+        unshare();
+      }
+      return items[i];
+    }
+
+    @Override public SpecificTag set(int i, SpecificTag item) {
+      checkIndex(i);
+      unshare();
+      SpecificTag previous = items[i];
+      items[i] = item;
+      modCount += 1;
+      return previous;
+    }
+
+    @Override public void add(int i, SpecificTag item) {
+      if (i < 0 || i > size) {
+        throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+      }
+      unshare();
+      if (size == items.length) {
+        items = Arrays.copyOf(items, Math.max(4, size + (size >> 1)));
+      }
+      System.arraycopy(items, i, items, i + 1, size - i);
+      items[i] = item;
+      size += 1;
+      modCount += 1;
+    }
+
+    @Override public SpecificTag remove(int i) {
+      checkIndex(i);
+      unshare();
+      SpecificTag previous = items[i];
+      System.arraycopy(items, i + 1, items, i, size - i - 1);
+      size -= 1;
+      items[size] = null;
+      modCount += 1;
+      return previous;
+    }
+
+    @Override public void clear() {
+      if (shared) {
+        items = EMPTY;
+        shared = false;
+      } else {
+        Arrays.fill(items, 0, size, null);
+      }
+      sharedItems = false;
+      size = 0;
+      modCount += 1;
+    }
+
+    private void checkIndex(int i) {
+      if (i < 0 || i >= size) {
+        throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+      }
+    }
+  }
 }
@@ -32,6 +32,9 @@ package se.llbit.nbt;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
 import java.util.Arrays;
 
 /**
@@ -40,36 +43,108 @@ import java.util.Arrays;
  * <p>TAG_Long_Array was added in Minecraft 1.13 snapshots.
  */
 public class LongArrayTag extends SpecificTag {
+  /** Number of elements per block in bulk reads and writes. */
+  private static final int BLOCK_SIZE = 1024;
+
   public final long[] value;
 
   public static SpecificTag read(DataInputStream in) {
+    return read(in, null);
+  }
+
+  /**
+   * Reads the tag payload. The array length is checked against the budget,
+   * if there is one, before the array is allocated.
+   */
+  static SpecificTag read(DataInputStream in, TagParser.Budget budget) {
     try {
-      int length = in.readInt();
-      long[] data = new long[length];
-      for (int i = 0; i < length; ++i) {
-        data[i] = in.readLong();
+      int length = ByteArrayTag.arrayLength(in);
+      if (budget != null && !budget.allowArray(Tag.TAG_LONG_ARRAY, length)) {
+        return budget.error();
       }
+      long[] data = new long[length];
+      readData(in, data);
       return new LongArrayTag(data);
     } catch (IOException e) {
       return new ErrorTag("IOException while reading TAG_Long_Array:\n" + e.getMessage());
     }
   }
 
+  static SpecificTag read(ByteBuffer in, TagParser.Budget budget) {
+    try {
+      int length = in.getInt();
+      if (length < 0 || length > in.remaining() / 8) {
+        return new ErrorTag("Unexpected end of data while reading TAG_Long_Array");
+      }
+      if (budget != null && !budget.allowArray(Tag.TAG_LONG_ARRAY, length)) {
+        return budget.error();
+      }
+      long[] data = new long[length];
+      in.asLongBuffer().get(data);
+      in.position(in.position() + length * 8);
+      return new LongArrayTag(data);
+    } catch (BufferUnderflowException e) {
+      return new ErrorTag("Unexpected end of data while reading TAG_Long_Array");
+    }
+  }
+
   @Override public void write(DataOutputStream out) throws IOException {
     out.writeInt(value.length);
-    for (int i = 0; i < value.length; ++i) {
-      out.writeLong(value[i]);
+    writeData(out, value);
+  }
+
+  @Override public long serializedSize() {
+    return 4 + 8L * value.length;
+  }
+
+  @Override public long estimatedHeapBytes() {
+    return HeapSize.object(HeapSize.REFERENCE) + HeapSize.array(value.length, 8);
+  }
+
+  /**
+   * Reads big-endian array elements from the input stream.
+   *
+   * <p>The data is read in blocks of bytes that are converted through a
+   * {@code LongBuffer} view, which is much faster than reading one element
+   * at a time.
+   */
+  static void readData(DataInputStream in, long[] data) throws IOException {
+    byte[] block = new byte[Math.min(data.length, BLOCK_SIZE) * 8];
+    LongBuffer view = ByteBuffer.wrap(block).asLongBuffer();
+    int offset = 0;
+    while (offset < data.length) {
+      int count = Math.min(data.length - offset, BLOCK_SIZE);
+      in.readFully(block, 0, count * 8);
+      view.clear();
+      view.get(data, offset, count);
+      offset += count;
     }
   }
 
-  static void skip(DataInputStream in) {
-    try {
-      int length = in.readInt();
-      in.skipBytes(length * 8);
-    } catch (IOException e) {
+  /**
+   * Writes big-endian array elements to the output stream, in blocks.
+   */
+  static void writeData(DataOutputStream out, long[] data) throws IOException {
+    byte[] block = new byte[Math.min(data.length, BLOCK_SIZE) * 8];
+    LongBuffer view = ByteBuffer.wrap(block).asLongBuffer();
+    int offset = 0;
+    while (offset < data.length) {
+      int count = Math.min(data.length - offset, BLOCK_SIZE);
+      view.clear();
+      view.put(data, offset, count);
+      out.write(block, 0, count * 8);
+      offset += count;
     }
   }
 
+  static void skip(DataInputStream in) throws IOException {
+    SpecificTag.skipFully(in, ByteArrayTag.arrayLength(in) * 8L);
+  }
+
+  static void skip(ByteBuffer in) {
+    SpecificTag.skipBytes(in, in.getInt() * 8L);
+  }
+
   public LongArrayTag(long[] data) {
     this.value = data;
   }
@@ -32,6 +32,8 @@ package se.llbit.nbt;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 
 public class LongTag extends SpecificTag {
   public final long value;
@@ -44,10 +46,26 @@ public class LongTag extends SpecificTag {
     }
   }
 
+  static SpecificTag read(ByteBuffer in) {
+    try {
+      return new LongTag(in.getLong());
+    } catch (BufferUnderflowException e) {
+      return new ErrorTag("Unexpected end of data while reading TAG_Long");
+    }
+  }
+
   @Override public void write(DataOutputStream out) throws IOException {
     out.writeLong(getData());
   }
 
+  @Override public long serializedSize() {
+    return 8;
+  }
+
+  @Override public long estimatedHeapBytes() {
+    return HeapSize.object(8);
+  }
+
   public LongTag(long value) {
     this.value = value;
   }
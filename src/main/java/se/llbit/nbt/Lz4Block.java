@@ -0,0 +1,232 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Decoder for the LZ4 block stream format written by the lz4-java
+ * {@code LZ4BlockOutputStream}, which Minecraft uses for region compression
+ * type 4.
+ *
+ * <p>The stream is a sequence of blocks. Each block has a 21 byte header:
+ * the magic bytes "LZ4Block", a token byte holding the compression method,
+ * the compressed and decompressed lengths, and an XXH32 checksum of the
+ * decompressed data. All header integers are little-endian. A block with
+ * zero length ends the stream.
+ *
+ * <p>The decompressed length in a block header is checked against the
+ * compressed length and the largest block size before the output is
+ * allocated, so corrupt or hostile headers can not request huge buffers.
+ */
+final class Lz4Block {
+  static final byte[] MAGIC = { 'L', 'Z', '4', 'B', 'l', 'o', 'c', 'k' };
+
+  private static final int HEADER_SIZE = MAGIC.length + 13;
+  private static final int METHOD_RAW = 0x10;
+  private static final int METHOD_LZ4 = 0x20;
+  private static final int CHECKSUM_SEED = 0x9747B28C;
+
+  /** The largest block size written by lz4-java. */
+  private static final int MAX_BLOCK_SIZE = 1 << 25;
+
+  /**
+   * The maximum expansion of LZ4 data. Each extra match length byte adds at
+   * most 255 bytes of output.
+   */
+  private static final int MAX_RATIO = 255;
+
+  private static final int PRIME1 = 0x9E3779B1;
+  private static final int PRIME2 = 0x85EBCA77;
+  private static final int PRIME3 = 0xC2B2AE3D;
+  private static final int PRIME4 = 0x27D4EB2F;
+  private static final int PRIME5 = 0x165667B1;
+
+  private Lz4Block() { }
+
+  /**
+   * Decompresses an LZ4 block stream.
+   *
+   * @return a buffer holding the decompressed data
+   * @throws NbtLimitException if the decompressed data is larger than
+   * {@code maxSize}
+   * @throws IOException if the data is corrupt or truncated
+   */
+  static ByteBuffer decompress(byte[] data, int offset, int length, int maxSize)
+      throws IOException {
+    maxSize = Math.min(maxSize, Zlib.MAX_ARRAY_SIZE);
+    int end = offset + length;
+    int pos = offset;
+    byte[] out = new byte[(int) Math.min(Math.max(length * 2L, 64), maxSize)];
+    int size = 0;
+    while (pos < end) {
+      if (pos + HEADER_SIZE > end) {
+        throw new IOException("Unexpected end of LZ4 data");
+      }
+      for (int i = 0; i < MAGIC.length; ++i) {
+        if (data[pos + i] != MAGIC[i]) {
+          throw new IOException("Not in LZ4 block format");
+        }
+      }
+      int method = data[pos + MAGIC.length] & 0xF0;
+      int compressedLength = Zlib.readIntLE(data, pos + MAGIC.length + 1);
+      int decompressedLength = Zlib.readIntLE(data, pos + MAGIC.length + 5);
+      int checksum = Zlib.readIntLE(data, pos + MAGIC.length + 9);
+      pos += HEADER_SIZE;
+      if (compressedLength == 0 && decompressedLength == 0) {
+        break; // End of stream.
+      }
+      if (compressedLength < 0 || decompressedLength < 0 || compressedLength > end - pos
+          || (method != METHOD_RAW && method != METHOD_LZ4)
+          || (method == METHOD_RAW && compressedLength != decompressedLength)
+          || decompressedLength > MAX_BLOCK_SIZE
+          || decompressedLength > (long) compressedLength * MAX_RATIO) {
+        throw new IOException("Corrupt LZ4 block header");
+      }
+      if (size + (long) decompressedLength > maxSize) {
+        throw new NbtLimitException("Decompressed data exceeds " + maxSize + " bytes");
+      }
+      if (out.length - size < decompressedLength) {
+        long capacity = Math.max(size + decompressedLength, out.length * 2L);
+        out = Arrays.copyOf(out, (int) Math.min(capacity, maxSize));
+      }
+      if (method == METHOD_RAW) {
+        System.arraycopy(data, pos, out, size, decompressedLength);
+      } else {
+        decompressBlock(data, pos, compressedLength, out, size, decompressedLength);
+      }
+      if ((hash32(out, size, decompressedLength, CHECKSUM_SEED) & 0xFFFFFFF) != checksum) {
+        throw new IOException("Corrupt LZ4 data: checksum mismatch");
+      }
+      pos += compressedLength;
+      size += decompressedLength;
+    }
+    return ByteBuffer.wrap(out, 0, size);
+  }
+
+  /**
+   * Decompresses one raw LZ4 block. The block must decompress to exactly
+   * {@code length} bytes.
+   */
+  private static void decompressBlock(byte[] src, int offset, int srcLength, byte[] dst,
+      int dstOffset, int length) throws IOException {
+    int ip = offset;
+    int srcEnd = offset + srcLength;
+    int op = dstOffset;
+    int dstEnd = dstOffset + length;
+    try {
+      while (true) {
+        int token = src[ip++] & 0xFF;
+        int literals = token >>> 4;
+        if (literals == 15) {
+          int b;
+          do {
+            b = src[ip++] & 0xFF;
+            literals += b;
+          } while (b == 255);
+        }
+        if (literals > srcEnd - ip || literals > dstEnd - op) {
+          throw new IOException("Corrupt LZ4 block");
+        }
+        System.arraycopy(src, ip, dst, op, literals);
+        ip += literals;
+        op += literals;
+        if (ip == srcEnd) {
+          break; // The last sequence only has literals.
+        }
+        int matchOffset = (src[ip] & 0xFF) | (src[ip + 1] & 0xFF) << 8;
+        ip += 2;
+        int matchLength = token & 0x0F;
+        if (matchLength == 15) {
+          int b;
+          do {
+            b = src[ip++] & 0xFF;
+            matchLength += b;
+          } while (b == 255);
+        }
+        matchLength += 4;
+        if (matchOffset == 0 || matchOffset > op - dstOffset || matchLength > dstEnd - op) {
+          throw new IOException("Corrupt LZ4 block");
+        }
+        // Byte by byte copy, since the match may overlap the output.
+        for (int i = 0; i < matchLength; ++i) {
+          dst[op + i] = dst[op - matchOffset + i];
+        }
+        op += matchLength;
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IOException("Unexpected end of LZ4 block");
+    }
+    if (op != dstEnd) {
+      throw new IOException("Corrupt LZ4 block: wrong decompressed size");
+    }
+  }
+
+  /** Computes the XXH32 hash of the given bytes. */
+  static int hash32(byte[] data, int offset, int length, int seed) {
+    int end = offset + length;
+    int pos = offset;
+    int hash;
+    if (length >= 16) {
+      int v1 = seed + PRIME1 + PRIME2;
+      int v2 = seed + PRIME2;
+      int v3 = seed;
+      int v4 = seed - PRIME1;
+      while (pos <= end - 16) {
+        v1 = Integer.rotateLeft(v1 + Zlib.readIntLE(data, pos) * PRIME2, 13) * PRIME1;
+        v2 = Integer.rotateLeft(v2 + Zlib.readIntLE(data, pos + 4) * PRIME2, 13) * PRIME1;
+        v3 = Integer.rotateLeft(v3 + Zlib.readIntLE(data, pos + 8) * PRIME2, 13) * PRIME1;
+        v4 = Integer.rotateLeft(v4 + Zlib.readIntLE(data, pos + 12) * PRIME2, 13) * PRIME1;
+        pos += 16;
+      }
+      hash = Integer.rotateLeft(v1, 1) + Integer.rotateLeft(v2, 7)
+          + Integer.rotateLeft(v3, 12) + Integer.rotateLeft(v4, 18);
+    } else {
+      hash = seed + PRIME5;
+    }
+    hash += length;
+    while (pos <= end - 4) {
+      hash = Integer.rotateLeft(hash + Zlib.readIntLE(data, pos) * PRIME3, 17) * PRIME4;
+      pos += 4;
+    }
+    while (pos < end) {
+      hash = Integer.rotateLeft(hash + (data[pos] & 0xFF) * PRIME5, 11) * PRIME1;
+      pos += 1;
+    }
+    hash ^= hash >>> 15;
+    hash *= PRIME2;
+    hash ^= hash >>> 13;
+    hash *= PRIME3;
+    hash ^= hash >>> 16;
+    return hash;
+  }
+}
@@ -0,0 +1,168 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import java.io.UTFDataFormatException;
+import java.util.Arrays;
+
+/**
+ * Decodes the names of compound tag items.
+ *
+ * <p>The parser passes the raw modified UTF-8 bytes of each item name to the
+ * default name table. The default table remembers recently decoded names, so
+ * that names which repeat in the input are decoded only once and share a
+ * single String instance.
+ *
+ * <p>Name tables are used concurrently by all parsing threads.
+ */
+public abstract class NameTable {
+  /** Number of names remembered by the default name table. */
+  private static final int DEFAULT_SIZE = 2048;
+
+  private static volatile NameTable defaultTable = cache(DEFAULT_SIZE);
+
+  /**
+   * @return the name table used by the parser
+   */
+  public static NameTable getDefault() {
+    return defaultTable;
+  }
+
+  /**
+   * Changes the name table used by the parser.
+   */
+  public static void setDefault(NameTable table) {
+    if (table == null) {
+      throw new NullPointerException("Name table can not be null");
+    }
+    defaultTable = table;
+  }
+
+  /**
+   * @return a name table that decodes every name, without caching
+   */
+  public static NameTable uncached() {
+    return new NameTable() {
+      @Override public String name(byte[] bytes, int offset, int length)
+          throws UTFDataFormatException {
+        return StringTag.decodeUTF(bytes, offset, length);
+      }
+    };
+  }
+
+  /**
+   * Creates a bounded name cache. The cache does not lock, and a new name
+   * replaces the previous name with the same hash slot.
+   *
+   * @param size the number of hash slots in the cache, rounded up to a power
+   * of two
+   */
+  public static NameTable cache(int size) {
+    if (size <= 0) {
+      throw new IllegalArgumentException("Name cache size must be positive");
+    }
+    int slots = Integer.highestOneBit(Math.min(size, 1 << 30));
+    if (slots < size && slots < 1 << 30) {
+      slots <<= 1;
+    }
+    return new Cache(slots);
+  }
+
+  /**
+   * Decodes a modified UTF-8 name.
+   *
+   * <p>The byte array is owned by the caller and may be reused
+   * after this method returns.
+   *
+   * @return the decoded name
+   * @throws UTFDataFormatException if the bytes are not valid modified UTF-8
+   */
+  public abstract String name(byte[] bytes, int offset, int length)
+      throws UTFDataFormatException;
+
+  private static final class Cache extends NameTable {
+    /** Longer names are decoded without caching. */
+    private static final int MAX_NAME_LENGTH = 128;
+
+    /**
+     * Entries are immutable, so the array can be read and written without
+     * locking. A racing thread may miss an entry and decode the name again.
+     */
+    private final Entry[] entries;
+
+    Cache(int slots) {
+      entries = new Entry[slots];
+    }
+
+    @Override public String name(byte[] bytes, int offset, int length)
+        throws UTFDataFormatException {
+      if (length > MAX_NAME_LENGTH) {
+        return StringTag.decodeUTF(bytes, offset, length);
+      }
+      int hash = 0;
+      for (int i = offset; i < offset + length; ++i) {
+        hash = 31 * hash + bytes[i];
+      }
+      hash ^= hash >>> 16;
+      int slot = hash & (entries.length - 1);
+      Entry entry = entries[slot];
+      if (entry != null && entry.hash == hash && entry.matches(bytes, offset, length)) {
+        return entry.name;
+      }
+      String name = StringTag.decodeUTF(bytes, offset, length);
+      entries[slot] = new Entry(hash, Arrays.copyOfRange(bytes, offset, offset + length), name);
+      return name;
+    }
+  }
+
+  private static final class Entry {
+    final int hash;
+    final byte[] bytes;
+    final String name;
+
+    Entry(int hash, byte[] bytes, String name) {
+      this.hash = hash;
+      this.bytes = bytes;
+      this.name = name;
+    }
+
+    boolean matches(byte[] other, int offset, int length) {
+      if (bytes.length != length) {
+        return false;
+      }
+      for (int i = 0; i < length; ++i) {
+        if (bytes[i] != other[offset + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -32,8 +32,11 @@ package se.llbit.nbt;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -50,95 +53,238 @@ public class NamedTag extends Tag {
   }
 
   public static Tag read(DataInputStream in) {
+    return read(in, DEFAULT_MAX_DEPTH);
+  }
+
+  /**
+   * Parses a named tag from the input stream.
+   *
+   * <p>Compound and list tags are parsed without recursion. If they are
+   * nested deeper than {@code maxDepth} levels the named tag gets an error
+   * tag as payload.
+   *
+   * @param maxDepth the maximum nesting depth of compound and list tags
+   */
+  public static Tag read(DataInputStream in, int maxDepth) {
+    try {
+      byte type = in.readByte();
+      if (type == 0) {
+        return Tag.END;
+      } else {
+        String name = readName(in);
+        SpecificTag payload = TagParser.read(type, in, maxDepth);
+        return new NamedTag(name, payload);
+      }
+    } catch (IOException e) {
+      return new ErrorTag("IOException while reading tag type:\n" + e.getMessage());
+    }
+  }
+
+  /**
+   * Parses a named tag from the input stream, checking that the data does
+   * not exceed the given limits. Use this for data from untrusted sources.
+   *
+   * <p>Malformed data gives an error tag, like {@link #read(DataInputStream)},
+   * but when a limit is exceeded parsing stops with an exception.
+   *
+   * @throws NbtLimitException if the data exceeds one of the limits
+   */
+  public static Tag read(DataInputStream in, ReadLimits limits) throws NbtLimitException {
+    TagParser.Budget budget = new TagParser.Budget(limits);
+    in = budget.wrap(in);
     try {
       byte type = in.readByte();
       if (type == 0) {
         return Tag.END;
       } else {
-        SpecificTag name = StringTag.read(in);
-        SpecificTag payload = SpecificTag.read(type, in);
-        return new NamedTag(name.stringValue(), payload);
+        String name = readName(in);
+        budget.check();
+        SpecificTag payload = TagParser.read(type, in, budget);
+        return new NamedTag(name, payload);
       }
+    } catch (NbtLimitException e) {
+      throw e;
     } catch (IOException e) {
       return new ErrorTag("IOException while reading tag type:\n" + e.getMessage());
     }
   }
 
+  /**
+   * Parses a named tag from a buffer containing uncompressed NBT data.
+   *
+   * <p>Parsing starts at the current position of the buffer, and the
+   * buffer position is advanced past the parsed data. The byte order of the
+   * buffer does not matter: NBT data is always read as big-endian.
+   */
+  public static Tag read(ByteBuffer buffer) {
+    return read(buffer, DEFAULT_MAX_DEPTH);
+  }
+
+  /**
+   * Parses a named tag from a buffer containing uncompressed NBT data, like
+   * {@link #read(ByteBuffer)}, with the given maximum nesting depth of
+   * compound and list tags.
+   */
+  public static Tag read(ByteBuffer buffer, int maxDepth) {
+    if (buffer.order() == ByteOrder.BIG_ENDIAN) {
+      return readTag(buffer, maxDepth);
+    }
+    ByteBuffer in = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+    Tag tag = readTag(in, maxDepth);
+    buffer.position(in.position());
+    return tag;
+  }
+
+  /**
+   * Parses a named tag from a buffer containing uncompressed NBT data, like
+   * {@link #read(ByteBuffer)}, checking that the data does not exceed the
+   * given limits. Bytes are counted from the current buffer position.
+   *
+   * @throws NbtLimitException if the data exceeds one of the limits
+   */
+  public static Tag read(ByteBuffer buffer, ReadLimits limits) throws NbtLimitException {
+    ByteBuffer in = buffer;
+    if (buffer.order() != ByteOrder.BIG_ENDIAN) {
+      in = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+    }
+    TagParser.Budget budget = new TagParser.Budget(limits);
+    budget.start(in);
+    Tag tag;
+    try {
+      byte type = in.get();
+      if (type == 0) {
+        tag = Tag.END;
+      } else {
+        String name = readName(in);
+        budget.check();
+        SpecificTag payload = TagParser.read(type, in, budget);
+        tag = new NamedTag(name, payload);
+      }
+    } catch (BufferUnderflowException e) {
+      tag = new ErrorTag("Unexpected end of data while reading tag type");
+    }
+    buffer.position(in.position());
+    return tag;
+  }
+
+  /**
+   * Parses a named tag from {@code length} bytes of uncompressed NBT data,
+   * starting at {@code offset} in the array.
+   */
+  public static Tag read(byte[] data, int offset, int length) {
+    return readTag(ByteBuffer.wrap(data, offset, length));
+  }
+
+  /**
+   * Parses a named tag from a buffer containing uncompressed NBT data, in
+   * lazy mode. Compound tags are parsed as {@link LazyCompoundTag}, which
+   * only parse the items that are accessed.
+   *
+   * <p>The buffer position is advanced past the parsed data, as for
+   * {@link #read(ByteBuffer)}. The buffer content must not be modified while
+   * the lazy tag tree is in use.
+   */
+  public static Tag readLazy(ByteBuffer buffer) {
+    ByteBuffer in = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+    Tag tag;
+    try {
+      byte type = in.get();
+      if (type == 0) {
+        tag = Tag.END;
+      } else {
+        String name = readName(in);
+        SpecificTag payload = (type == TAG_COMPOUND)
+            ? LazyCompoundTag.read(in)
+            : SpecificTag.read(type, in);
+        tag = new NamedTag(name, payload);
+      }
+    } catch (BufferUnderflowException e) {
+      tag = new ErrorTag("Unexpected end of data while reading tag type");
+    }
+    buffer.position(in.position());
+    return tag;
+  }
+
+  static Tag readTag(ByteBuffer in) {
+    return readTag(in, DEFAULT_MAX_DEPTH);
+  }
+
+  static Tag readTag(ByteBuffer in, int maxDepth) {
+    try {
+      byte type = in.get();
+      if (type == 0) {
+        return Tag.END;
+      } else {
+        String name = readName(in);
+        SpecificTag payload = TagParser.read(type, in, maxDepth);
+        return new NamedTag(name, payload);
+      }
+    } catch (BufferUnderflowException e) {
+      return new ErrorTag("Unexpected end of data while reading tag type");
+    }
+  }
+
+  /**
+   * Reads the name of a named tag. If the name can not be read, the name is
+   * empty and the error is reported when reading the payload.
+   */
+  static String readName(DataInputStream in) {
+    try {
+      return StringTag.readName(in);
+    } catch (IOException e) {
+      return "";
+    }
+  }
+
+  static String readName(ByteBuffer in) {
+    try {
+      return StringTag.readName(in);
+    } catch (BufferUnderflowException | UTFDataFormatException e) {
+      return "";
+    }
+  }
+
   @Override public void write(DataOutputStream out) throws IOException {
     getTag().writeType(out);
     StringTag.write(out, name);
     getTag().write(out);
   }
 
+  @Override public long serializedSize() {
+    return 1 + StringTag.serializedSize(name) + tag.serializedSize();
+  }
+
+  @Override public long estimatedHeapBytes() {
+    return HeapSize.object(2 * HeapSize.REFERENCE) + HeapSize.string(name)
+        + tag.estimatedHeapBytes();
+  }
+
   /**
    * Parse only the requested tags.
    *
+   * <p>Use {@link NbtQuery} instead to avoid compiling the requested tag paths
+   * for each parsed file.
+   *
    * @param in The input stream of the NBT data
    * @param request A set containing the requested tags
    * @return Requested tag paths mapped to parsed tag data
    */
   public static Map<String, Tag> quickParse(DataInputStream in, Set<String> request) {
-    // Create a tree of tags to be parsed, skip parsing for other tags.
     Map<String, Tag> result = new HashMap<>();
-    Set<String> prefixes = new HashSet<>();
-
-    for (String tag : request) {
-      String[] parts = tag.split("\\.");
-      String prefix = "";
-      for (int i = 0; i < parts.length - 1; ++i) {
-        if (i > 0) {
-          prefix += ".";
-        }
-        prefix += parts[i];
-        prefixes.add(prefix);
-      }
-    }
 
     // Initialize result map so it contains error nodes for each requested tag.
     for (String tag : request) {
       result.put(tag, new ErrorTag("[not loaded]"));
     }
 
-    return partialParse(in, result, request, prefixes);
-  }
-
-  private static Map<String, Tag> partialParse(DataInputStream in, Map<String, Tag> result,
-      Set<String> request, Set<String> prefixes) {
     try {
-      byte type = in.readByte();
-      if (type != 0) {
-        SpecificTag name = StringTag.read(in);
-        String tag = name.stringValue(); // We have no prefix as this is the top level tag.
-        partiallyParseTag(in, result, request, prefixes, type, tag);
-      }
+      NbtQuery.compile(request).parse(in, result);
     } catch (IOException e) {
+      // Return the tags that were parsed before the error.
     }
-    // No tags were read.
     return result;
   }
 
-  static boolean partiallyParseTag(DataInputStream in,
-      Map<String, Tag> result,
-      Set<String> request, Set<String> prefixes,
-      byte type, String tag) {
-    if (request.contains(tag)) {
-      // Read this tag fully.
-      SpecificTag payload = SpecificTag.read(type, in);
-      result.put(tag, payload);
-      request.remove(tag);
-      return true;
-    } else if (prefixes.contains(tag)) {
-      // Partially parse this tag.
-      if (type == TAG_LIST) {
-        ListTag.partialParse(in, tag, result, request, prefixes);
-      } else if (type == TAG_COMPOUND) {
-        CompoundTag.partialParse(in, tag, result, request, prefixes);
-      }
-      return true;
-    }
-    return false;
-  }
-
   /**
    * Gives the name of this named tag.
    *
@@ -176,6 +322,26 @@ public class NamedTag extends Tag {
     tag.printTag(buff, indent + "  ");
   }
 
+  /**
+   * Gives a named tag with a frozen copy of the tag child.
+   *
+   * @return this tag if the child is already immutable
+   */
+  @Override public NamedTag freeze() {
+    SpecificTag frozen = tag.freeze();
+    return frozen == tag ? this : new NamedTag(name, frozen);
+  }
+
+  /**
+   * Gives a named tag with a copy of the tag child.
+   *
+   * @return this tag if the child can not be modified
+   */
+  @Override public NamedTag copy() {
+    SpecificTag copy = tag.copy();
+    return copy == tag ? this : new NamedTag(name, copy);
+  }
+
   @Override public ListTag asList() {
     return tag.asList();
   }
@@ -0,0 +1,481 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A precompiled set of tag paths used to parse only selected tags from NBT data.
+ *
+ * <p>Tag paths use the same format as {@link NamedTag#quickParse}: the path
+ * components are separated by dots, and the first component is the name of the
+ * root tag (usually empty). Compound items are selected by name, and list items
+ * by index. The path component {@code *} matches any compound item or list item.
+ * For example, {@code .Level.Sections.*.Y} selects the {@code Y} tag of every
+ * item in the {@code Sections} list.
+ *
+ * <p>The paths are compiled into a tree of matchers. Item names are compared
+ * with the raw bytes in the input, so skipped tags do not require any string
+ * decoding or path building. A compiled query is immutable and can be reused
+ * for parsing many files, also from multiple threads.
+ */
+public class NbtQuery {
+  private static final Node[] NO_NODES = new Node[0];
+
+  private final Node root;
+  private final int numExact;
+  private final boolean hasWildcards;
+
+  private NbtQuery(Node root, int numExact, boolean hasWildcards) {
+    this.root = root;
+    this.numExact = numExact;
+    this.hasWildcards = hasWildcards;
+  }
+
+  /**
+   * Compile a query for the given tag paths.
+   */
+  public static NbtQuery compile(String... paths) {
+    return compile(Arrays.asList(paths));
+  }
+
+  /**
+   * Compile a query for the given tag paths.
+   */
+  public static NbtQuery compile(Collection<String> paths) {
+    Node root = new Node("", false);
+    Map<Node, Map<String, Node>> childMaps = new HashMap<>();
+    for (String path : paths) {
+      Node node = root;
+      boolean exact = true;
+      for (String part : path.split("\\.", -1)) {
+        Map<String, Node> children = childMaps.get(node);
+        if (children == null) {
+          children = new HashMap<>();
+          childMaps.put(node, children);
+        }
+        Node child = children.get(part);
+        exact = exact && !part.equals("*");
+        if (child == null) {
+          child = new Node(part, exact);
+          children.put(part, child);
+          node.childList.add(child);
+        }
+        node = child;
+      }
+      node.path = path;
+    }
+    int[] terminals = new int[2];
+    root.build(terminals);
+    return new NbtQuery(root, terminals[0], terminals[1] > 0);
+  }
+
+  /**
+   * Parse the requested tags from an input stream. Parsing stops as soon as
+   * all requested tags are found, unless the query contains wildcards.
+   *
+   * @return requested tag paths mapped to the parsed tags. For paths with
+   * wildcards, the matched tags are included with the wildcards replaced by
+   * the actual item names or indexes.
+   */
+  public Map<String, Tag> parse(DataInputStream in) throws IOException {
+    Map<String, Tag> result = new HashMap<>();
+    parse(in, result);
+    return result;
+  }
+
+  /**
+   * Parse the requested tags from an input stream and add them to the result map.
+   *
+   * <p>If an exception is thrown while parsing, the result map contains the
+   * tags that were parsed before the error.
+   */
+  public void parse(DataInputStream in, Map<String, Tag> result) throws IOException {
+    new Parser(in, result).parseRoot();
+  }
+
+  /** A node in the query tree. */
+  private static final class Node {
+    final String name;
+    final byte[] nameBytes;
+    final int index;
+    final boolean wildcard;
+    final boolean exact;
+    final Node[] self = { this };
+
+    /** The full path if this node is the end of a requested path, otherwise null. */
+    String path = null;
+    int id = -1;
+    List<Node> childList = new ArrayList<>();
+    Node[] children = NO_NODES;
+
+    Node(String name, boolean exact) {
+      this.name = name;
+      this.nameBytes = encode(name);
+      this.index = parseIndex(name);
+      this.wildcard = name.equals("*");
+      this.exact = exact;
+    }
+
+    boolean isTerminal() {
+      return path != null;
+    }
+
+    /**
+     * Finish building the query tree. Requested tags are parsed fully, so
+     * the children of terminal nodes are removed.
+     *
+     * @param terminals counts the reachable terminal nodes without and with
+     * wildcards. The exact terminal nodes are numbered by the first count.
+     */
+    void build(int[] terminals) {
+      if (isTerminal()) {
+        if (exact) {
+          id = terminals[0]++;
+        } else {
+          terminals[1] += 1;
+        }
+      } else {
+        children = childList.toArray(NO_NODES);
+        for (Node child : children) {
+          child.build(terminals);
+        }
+      }
+      childList = null;
+    }
+
+    boolean matchesName(byte[] bytes, int length) {
+      if (wildcard) {
+        return true;
+      }
+      if (nameBytes.length != length) {
+        return false;
+      }
+      for (int i = 0; i < length; ++i) {
+        if (nameBytes[i] != bytes[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    boolean matchesIndex(int i) {
+      return wildcard || index == i;
+    }
+
+    private static byte[] encode(String name) {
+      try {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(name);
+        byte[] encoded = bytes.toByteArray();
+        return Arrays.copyOfRange(encoded, 2, encoded.length);
+      } catch (IOException e) {
+        // The name is too long to be an NBT tag name.
+        return new byte[0];
+      }
+    }
+
+    private static int parseIndex(String name) {
+      if (name.isEmpty() || name.length() > 9) {
+        return -1;
+      }
+      for (int i = 0; i < name.length(); ++i) {
+        char c = name.charAt(i);
+        if (c < '0' || c > '9') {
+          return -1;
+        }
+      }
+      return Integer.parseInt(name);
+    }
+  }
+
+  /** Holds the state of a single parse. */
+  private final class Parser {
+    private final DataInputStream in;
+    private final Map<String, Tag> result;
+    private final boolean[] found = new boolean[numExact];
+    private int pending = numExact;
+    private boolean done = false;
+    private byte[] name = new byte[64];
+    private int nameLength = 0;
+    private String[] path = new String[16];
+    private int depth = 0;
+
+    Parser(DataInputStream in, Map<String, Tag> result) {
+      this.in = in;
+      this.result = result;
+      this.done = numExact == 0 && !hasWildcards;
+    }
+
+    void parseRoot() throws IOException {
+      if (done) {
+        return;
+      }
+      byte type = in.readByte();
+      if (type == Tag.TAG_END) {
+        return;
+      }
+      readName();
+      Node[] matches = matchName(root.self);
+      if (matches != null) {
+        parseTag(type, matches, componentName(matches));
+      }
+    }
+
+    private void readName() throws IOException {
+      nameLength = in.readUnsignedShort();
+      if (nameLength > name.length) {
+        name = new byte[Math.max(nameLength, name.length * 2)];
+      }
+      in.readFully(name, 0, nameLength);
+    }
+
+    /**
+     * Find the children of the parent nodes that match the current item name.
+     * @return the matching nodes, or null if there is no match
+     */
+    private Node[] matchName(Node[] parents) {
+      Node first = null;
+      int count = 0;
+      for (Node parent : parents) {
+        for (Node child : parent.children) {
+          if (child.matchesName(name, nameLength)) {
+            if (count == 0) {
+              first = child;
+            }
+            count += 1;
+          }
+        }
+      }
+      if (count <= 1) {
+        return count == 0 ? null : first.self;
+      }
+      Node[] matches = new Node[count];
+      count = 0;
+      for (Node parent : parents) {
+        for (Node child : parent.children) {
+          if (child.matchesName(name, nameLength)) {
+            matches[count++] = child;
+          }
+        }
+      }
+      return matches;
+    }
+
+    /**
+     * Find the children of the parent nodes that match a list index.
+     * @return the matching nodes, or null if there is no match
+     */
+    private Node[] matchIndex(Node[] parents, int i) {
+      Node first = null;
+      int count = 0;
+      for (Node parent : parents) {
+        for (Node child : parent.children) {
+          if (child.matchesIndex(i)) {
+            if (count == 0) {
+              first = child;
+            }
+            count += 1;
+          }
+        }
+      }
+      if (count <= 1) {
+        return count == 0 ? null : first.self;
+      }
+      Node[] matches = new Node[count];
+      count = 0;
+      for (Node parent : parents) {
+        for (Node child : parent.children) {
+          if (child.matchesIndex(i)) {
+            matches[count++] = child;
+          }
+        }
+      }
+      return matches;
+    }
+
+    /**
+     * Gives the path component for a match: the name of a non-wildcard node, if any.
+     */
+    private String componentName(Node[] matches) {
+      for (Node node : matches) {
+        if (!node.wildcard) {
+          return node.name;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Parse a tag that matched the given query nodes.
+     *
+     * @param component the path component for the tag, or null if it should be
+     * decoded from the current item name
+     */
+    private void parseTag(byte type, Node[] matches, String component) throws IOException {
+      if (component == null) {
+        component = NameTable.getDefault().name(name, 0, nameLength);
+      }
+      push(component);
+      boolean terminal = false;
+      for (Node node : matches) {
+        terminal |= node.isTerminal();
+      }
+      if (terminal) {
+        SpecificTag tag = SpecificTag.read(type, in);
+        for (Node node : matches) {
+          collect(node, tag);
+        }
+      } else if (type == Tag.TAG_COMPOUND) {
+        parseCompound(matches);
+      } else if (type == Tag.TAG_LIST) {
+        parseList(matches);
+      } else {
+        SpecificTag.skip(type, in);
+      }
+      depth -= 1;
+    }
+
+    private void parseCompound(Node[] parents) throws IOException {
+      while (true) {
+        byte type = in.readByte();
+        if (type == Tag.TAG_END) {
+          return;
+        }
+        readName();
+        Node[] matches = matchName(parents);
+        if (matches == null) {
+          SpecificTag.skip(type, in);
+        } else {
+          parseTag(type, matches, componentName(matches));
+          if (done) {
+            return;
+          }
+        }
+      }
+    }
+
+    private void parseList(Node[] parents) throws IOException {
+      byte itemType = in.readByte();
+      int numItems = in.readInt();
+      if (itemType == Tag.TAG_END && numItems > 0) {
+        return; // Cannot create list of TAG_End.
+      }
+      for (int i = 0; i < numItems; ++i) {
+        Node[] matches = matchIndex(parents, i);
+        if (matches == null) {
+          SpecificTag.skip(itemType, in);
+        } else {
+          String component = componentName(matches);
+          parseTag(itemType, matches, component != null ? component : Integer.toString(i));
+          if (done) {
+            return;
+          }
+        }
+      }
+    }
+
+    /**
+     * Collect requested tags from an already parsed tag.
+     */
+    private void collect(Node node, Tag tag) {
+      if (node.isTerminal()) {
+        if (node.exact) {
+          if (!found[node.id]) {
+            found[node.id] = true;
+            result.put(node.path, tag);
+            pending -= 1;
+            done = pending == 0 && !hasWildcards;
+          }
+        } else {
+          StringBuilder key = new StringBuilder();
+          for (int i = 0; i < depth; ++i) {
+            if (i > 0) {
+              key.append('.');
+            }
+            key.append(path[i]);
+          }
+          result.put(key.toString(), tag);
+        }
+        return;
+      }
+      if (tag.isCompoundTag()) {
+        for (Node child : node.children) {
+          if (child.wildcard) {
+            for (NamedTag item : tag.asCompound()) {
+              push(item.name());
+              collect(child, item.tag);
+              depth -= 1;
+            }
+          } else {
+            Tag item = tag.get(child.name);
+            if (!item.isError()) {
+              push(child.name);
+              collect(child, item);
+              depth -= 1;
+            }
+          }
+        }
+      } else if (tag.isList()) {
+        ListTag list = tag.asList();
+        for (Node child : node.children) {
+          if (child.wildcard) {
+            for (int i = 0; i < list.size(); ++i) {
+              push(Integer.toString(i));
+              collect(child, list.get(i));
+              depth -= 1;
+            }
+          } else if (child.index >= 0 && child.index < list.size()) {
+            push(child.name);
+            collect(child, list.get(child.index));
+            depth -= 1;
+          }
+        }
+      }
+    }
+
+    private void push(String component) {
+      if (depth == path.length) {
+        path = Arrays.copyOf(path, depth * 2);
+      }
+      path[depth++] = component;
+    }
+  }
+}
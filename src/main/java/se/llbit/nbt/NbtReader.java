@@ -0,0 +1,305 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Event-based NBT parser.
+ *
+ * <p>Instead of building a tag tree, the reader reports each tag to an
+ * {@link NbtVisitor} as it is parsed. This is useful for tools that only
+ * aggregate or filter data, since no tag objects are allocated for the
+ * parsed data.
+ *
+ * <p>Tags can be skipped by returning {@code false} from
+ * {@link NbtVisitor#visitName(String)}, {@link NbtVisitor#visitCompoundStart()},
+ * or {@link NbtVisitor#visitListStart(int, int)}.
+ *
+ * <p>The open compound and list tags are kept on an explicit stack instead
+ * of recursing, so deeply nested data can not overflow the call stack.
+ */
+public class NbtReader {
+  private final DataInputStream in;
+  private final NbtVisitor visitor;
+  private final TagParser.Budget budget;
+  private final int maxDepth;
+
+  /** The item types of the open compound and list tags. Compounds have TAG_End. */
+  private byte[] itemTypes = new byte[8];
+
+  /** The number of items left to read in each open list tag. */
+  private int[] remaining = new int[8];
+
+  /** The number of compound and list tags containing the current tag. */
+  private int depth = 0;
+
+  private NbtReader(DataInputStream in, NbtVisitor visitor, TagParser.Budget budget) {
+    this.in = budget.wrap(in);
+    this.visitor = visitor;
+    this.budget = budget;
+    this.maxDepth = budget.limits.maxDepth();
+  }
+
+  /**
+   * Parses one named tag from the input stream and reports the parsed data to
+   * the visitor.
+   *
+   * @return {@code true} if the tag was parsed without errors
+   */
+  public static boolean accept(DataInputStream in, NbtVisitor visitor) {
+    return accept(in, visitor, Tag.DEFAULT_MAX_DEPTH);
+  }
+
+  /**
+   * Parses one named tag from the input stream and reports the parsed data to
+   * the visitor. If compound and list tags are nested deeper than
+   * {@code maxDepth} levels, an error is reported and parsing stops.
+   *
+   * @return {@code true} if the tag was parsed without errors
+   */
+  public static boolean accept(DataInputStream in, NbtVisitor visitor, int maxDepth) {
+    try {
+      return accept(in, visitor, ReadLimits.DEFAULT.withMaxDepth(maxDepth));
+    } catch (NbtLimitException e) {
+      visitor.visitError(e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Parses one named tag from the input stream and reports the parsed data to
+   * the visitor, checking that the data does not exceed the given limits.
+   * Use this for data from untrusted sources.
+   *
+   * <p>Malformed data is reported to the visitor, like
+   * {@link #accept(DataInputStream, NbtVisitor)}, but when a limit is exceeded
+   * parsing stops with an exception. Array lengths are checked before the
+   * arrays are allocated.
+   *
+   * @return {@code true} if the tag was parsed without errors
+   * @throws NbtLimitException if the data exceeds one of the limits
+   */
+  public static boolean accept(DataInputStream in, NbtVisitor visitor, ReadLimits limits)
+      throws NbtLimitException {
+    NbtReader reader = new NbtReader(in, visitor, new TagParser.Budget(limits));
+    try {
+      byte type = reader.in.readByte();
+      if (type == Tag.TAG_END) {
+        return true;
+      }
+      return reader.run(type);
+    } catch (NbtLimitException e) {
+      throw e;
+    } catch (IOException e) {
+      visitor.visitError("IOException while reading NBT data:\n" + e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Parses a named tag with the given type, and the items of all compound and
+   * list tags that are opened while parsing it.
+   */
+  private boolean run(byte type) throws IOException {
+    if (!visitNamed(type)) {
+      return false;
+    }
+    while (depth > 0) {
+      budget.check();
+      int top = depth - 1;
+      if (itemTypes[top] == Tag.TAG_END) {
+        byte itemType = in.readByte();
+        if (itemType == Tag.TAG_END) {
+          depth -= 1;
+          visitor.visitCompoundEnd();
+        } else if (!visitNamed(itemType)) {
+          return false;
+        }
+      } else if (remaining[top] == 0) {
+        depth -= 1;
+        visitor.visitListEnd();
+      } else {
+        remaining[top] -= 1;
+        if (!visit(itemTypes[top])) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private boolean visitNamed(byte type) throws IOException {
+    String name = StringTag.readName(in);
+    if (visitor.visitName(name)) {
+      return visit(type);
+    } else {
+      TagParser.skip(type, in, maxDepth - depth);
+      return true;
+    }
+  }
+
+  /**
+   * Reports a tag payload to the visitor. Compound and list tags are pushed
+   * on the stack, and their items are parsed by {@link #run(byte)}.
+   */
+  private boolean visit(byte type) throws IOException {
+    budget.addNodes(1);
+    switch (type) {
+      case Tag.TAG_BYTE:
+        visitor.visitByte(in.readByte());
+        return true;
+      case Tag.TAG_SHORT:
+        visitor.visitShort(in.readShort());
+        return true;
+      case Tag.TAG_INT:
+        visitor.visitInt(in.readInt());
+        return true;
+      case Tag.TAG_LONG:
+        visitor.visitLong(in.readLong());
+        return true;
+      case Tag.TAG_FLOAT:
+        visitor.visitFloat(in.readFloat());
+        return true;
+      case Tag.TAG_DOUBLE:
+        visitor.visitDouble(in.readDouble());
+        return true;
+      case Tag.TAG_BYTE_ARRAY:
+        return visitByteArray();
+      case Tag.TAG_STRING:
+        visitor.visitString(StringTag.readString(in));
+        return true;
+      case Tag.TAG_LIST:
+        return visitList();
+      case Tag.TAG_COMPOUND:
+        return visitCompound();
+      case Tag.TAG_INT_ARRAY:
+        return visitIntArray();
+      case Tag.TAG_LONG_ARRAY:
+        return visitLongArray();
+      default:
+        visitor.visitError("Unknown tag type: " + type);
+        return false;
+    }
+  }
+
+  /**
+   * Checks that a compound or list tag at the current depth is not nested
+   * too deep.
+   */
+  private void checkDepth() throws NbtLimitException {
+    if (depth >= maxDepth) {
+      throw budget.fail(TagParser.depthError(maxDepth));
+    }
+  }
+
+  private void push(byte itemType, int numItems) {
+    if (depth == itemTypes.length) {
+      itemTypes = Arrays.copyOf(itemTypes, depth * 2);
+      remaining = Arrays.copyOf(remaining, depth * 2);
+    }
+    itemTypes[depth] = itemType;
+    remaining[depth] = numItems;
+    depth += 1;
+  }
+
+  private boolean visitCompound() throws IOException {
+    checkDepth();
+    if (visitor.visitCompoundStart()) {
+      push((byte) Tag.TAG_END, 0);
+    } else {
+      TagParser.skip((byte) Tag.TAG_COMPOUND, in, maxDepth - depth);
+    }
+    return true;
+  }
+
+  private boolean visitList() throws IOException {
+    checkDepth();
+    byte itemType = in.readByte();
+    int numItems = in.readInt();
+    if (itemType == Tag.TAG_END && numItems > 0) {
+      visitor.visitError("Cannot create list of TAG_End");
+      return false;
+    }
+    numItems = Math.max(0, numItems);
+    budget.checkList(numItems, Math.max(1, SpecificTag.fixedSize(itemType)));
+    if (!visitor.visitListStart(itemType, numItems)) {
+      for (int i = 0; i < numItems; ++i) {
+        TagParser.skip(itemType, in, maxDepth - depth - 1);
+      }
+    } else if (numItems == 0) {
+      visitor.visitListEnd();
+    } else {
+      push(itemType, numItems);
+    }
+    return true;
+  }
+
+  private boolean visitByteArray() throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      visitor.visitError("Negative TAG_Byte_Array length: " + length);
+      return false;
+    }
+    budget.checkArray(Tag.TAG_BYTE_ARRAY, length);
+    byte[] data = new byte[length];
+    in.readFully(data, 0, length);
+    visitor.visitByteArray(data);
+    return true;
+  }
+
+  private boolean visitIntArray() throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      visitor.visitError("Negative TAG_Int_Array length: " + length);
+      return false;
+    }
+    budget.checkArray(Tag.TAG_INT_ARRAY, length);
+    int[] data = new int[length];
+    IntArrayTag.readData(in, data);
+    visitor.visitIntArray(data);
+    return true;
+  }
+
+  private boolean visitLongArray() throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      visitor.visitError("Negative TAG_Long_Array length: " + length);
+      return false;
+    }
+    budget.checkArray(Tag.TAG_LONG_ARRAY, length);
+    long[] data = new long[length];
+    LongArrayTag.readData(in, data);
+    visitor.visitLongArray(data);
+    return true;
+  }
+}
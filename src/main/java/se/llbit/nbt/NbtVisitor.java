@@ -0,0 +1,120 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+/**
+ * Receives the tags of an NBT stream, in order, from an {@link NbtReader}.
+ *
+ * <p>The visitor methods are called as the input is parsed, without
+ * building a tag tree. All methods have empty default implementations
+ * so that a visitor only needs to override the events it is interested in.
+ */
+public abstract class NbtVisitor {
+  /**
+   * Called with the name of the next tag. Only the root tag and items of
+   * compound tags have names.
+   *
+   * @return {@code false} if the named tag should be skipped. No more
+   * events are generated for a skipped tag.
+   */
+  public boolean visitName(String name) {
+    return true;
+  }
+
+  /**
+   * Called at the start of a compound tag.
+   *
+   * @return {@code false} if the items of the compound tag should be skipped.
+   * If the compound tag is skipped, {@link #visitCompoundEnd()} is not called.
+   */
+  public boolean visitCompoundStart() {
+    return true;
+  }
+
+  /**
+   * Called after the last item of a compound tag.
+   */
+  public void visitCompoundEnd() {
+  }
+
+  /**
+   * Called at the start of a list tag.
+   *
+   * @param itemType the tag type of the list items
+   * @param size the number of items in the list
+   * @return {@code false} if the items of the list tag should be skipped.
+   * If the list tag is skipped, {@link #visitListEnd()} is not called.
+   */
+  public boolean visitListStart(int itemType, int size) {
+    return true;
+  }
+
+  /**
+   * Called after the last item of a list tag.
+   */
+  public void visitListEnd() {
+  }
+
+  public void visitByte(int value) {
+  }
+
+  public void visitShort(short value) {
+  }
+
+  public void visitInt(int value) {
+  }
+
+  public void visitLong(long value) {
+  }
+
+  public void visitFloat(float value) {
+  }
+
+  public void visitDouble(double value) {
+  }
+
+  public void visitString(String value) {
+  }
+
+  public void visitByteArray(byte[] value) {
+  }
+
+  public void visitIntArray(int[] value) {
+  }
+
+  public void visitLongArray(long[] value) {
+  }
+
+  /**
+   * Called if the input could not be parsed. Parsing stops after an error.
+   */
+  public void visitError(String message) {
+  }
+}
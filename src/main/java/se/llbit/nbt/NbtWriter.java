@@ -0,0 +1,326 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Serializes tags into a growable in-memory buffer.
+ *
+ * <p>The writer encodes tags directly into a byte array, with bulk encoding of
+ * arrays and numeric lists, and without allocating temporary buffers for
+ * strings. The encoded data can then be copied to a stream or channel. A
+ * writer can be reused for many tags by calling {@link #reset()}, which keeps
+ * the allocated buffer.
+ *
+ * <p>Writers are not thread safe.
+ */
+public class NbtWriter {
+  private static final int DEFAULT_CAPACITY = 8192;
+
+  private byte[] buffer;
+
+  /** Big-endian view of the buffer, used for bulk encoding. */
+  private ByteBuffer view;
+
+  private int size = 0;
+
+  /** Stream view of this writer, for tags that do their own serialization. */
+  private final DataOutputStream out = new DataOutputStream(new OutputStream() {
+    @Override public void write(int b) {
+      writeByte(b);
+    }
+
+    @Override public void write(byte[] bytes, int offset, int length) {
+      writeBytes(bytes, offset, length);
+    }
+  });
+
+  public NbtWriter() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param initialCapacity the initial buffer size, in bytes
+   */
+  public NbtWriter(int initialCapacity) {
+    buffer = new byte[Math.max(initialCapacity, 16)];
+    view = ByteBuffer.wrap(buffer);
+  }
+
+  /**
+   * Encodes a tag in the same format as {@link Tag#write(DataOutputStream)}:
+   * named tags are written with tag type and name, other tags are
+   * written without.
+   */
+  public void write(Tag tag) throws IOException {
+    if (tag instanceof NamedTag) {
+      NamedTag named = (NamedTag) tag;
+      write(named.name, named.tag);
+    } else {
+      writePayload((SpecificTag) tag);
+    }
+  }
+
+  /**
+   * Encodes a named tag: the tag type, the name, and the tag payload.
+   */
+  public void write(String name, SpecificTag tag) throws IOException {
+    if (tag.isError()) {
+      tag.write(out); // Throws an exception.
+    }
+    writeByte(tag.tagType());
+    writeString(name);
+    writePayload(tag);
+  }
+
+  /**
+   * @return the number of bytes written since the last reset
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Discards the written data. The buffer is kept for reuse.
+   */
+  public void reset() {
+    size = 0;
+  }
+
+  /**
+   * @return a copy of the written data
+   */
+  public byte[] toByteArray() {
+    return Arrays.copyOf(buffer, size);
+  }
+
+  /**
+   * @return a buffer containing the written data. The buffer shares memory
+   * with this writer and is only valid until the next write or reset.
+   */
+  public ByteBuffer asByteBuffer() {
+    return ByteBuffer.wrap(buffer, 0, size).slice();
+  }
+
+  /**
+   * Copies the written data to an output stream.
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(buffer, 0, size);
+  }
+
+  /**
+   * Copies the written data to a channel.
+   */
+  public void writeTo(WritableByteChannel channel) throws IOException {
+    ByteBuffer data = asByteBuffer();
+    while (data.hasRemaining()) {
+      channel.write(data);
+    }
+  }
+
+  private void writePayload(SpecificTag tag) throws IOException {
+    if (tag.isError() || tag instanceof LazyCompoundTag) {
+      // Error tags throw an exception, lazy compound tags copy unparsed items.
+      tag.write(out);
+      return;
+    }
+    switch (tag.tagType()) {
+      case Tag.TAG_BYTE:
+        writeByte(((ByteTag) tag).value);
+        break;
+      case Tag.TAG_SHORT:
+        writeShort(((ShortTag) tag).value);
+        break;
+      case Tag.TAG_INT:
+        writeInt(((IntTag) tag).value);
+        break;
+      case Tag.TAG_LONG:
+        writeLong(((LongTag) tag).value);
+        break;
+      case Tag.TAG_FLOAT:
+        writeInt(Float.floatToIntBits(((FloatTag) tag).value));
+        break;
+      case Tag.TAG_DOUBLE:
+        writeLong(Double.doubleToLongBits(((DoubleTag) tag).value));
+        break;
+      case Tag.TAG_BYTE_ARRAY: {
+        byte[] value = ((ByteArrayTag) tag).value;
+        writeInt(value.length);
+        writeBytes(value, 0, value.length);
+        break;
+      }
+      case Tag.TAG_STRING:
+        writeString(((StringTag) tag).value);
+        break;
+      case Tag.TAG_LIST:
+        writeList((ListTag) tag);
+        break;
+      case Tag.TAG_COMPOUND:
+        for (NamedTag item : ((CompoundTag) tag).items().values()) {
+          write(item.name, item.tag);
+        }
+        writeByte(Tag.TAG_END);
+        break;
+      case Tag.TAG_INT_ARRAY: {
+        int[] value = ((IntArrayTag) tag).value;
+        writeInt(value.length);
+        ensureCapacity(4L * value.length);
+        view.position(size);
+        view.asIntBuffer().put(value);
+        size += 4 * value.length;
+        break;
+      }
+      case Tag.TAG_LONG_ARRAY: {
+        long[] value = ((LongArrayTag) tag).value;
+        writeInt(value.length);
+        ensureCapacity(8L * value.length);
+        view.position(size);
+        view.asLongBuffer().put(value);
+        size += 8 * value.length;
+        break;
+      }
+      default:
+        tag.write(out);
+    }
+  }
+
+  private void writeList(ListTag list) throws IOException {
+    writeByte(list.getType());
+    writeInt(list.size());
+    if (list.items instanceof PrimitiveList) {
+      PrimitiveList items = (PrimitiveList) list.items;
+      int length = items.size() * items.itemSize();
+      ensureCapacity(length);
+      view.position(size);
+      items.encode(view, 0, items.size());
+      size += length;
+    } else {
+      for (SpecificTag item : list.items) {
+        writePayload(item);
+      }
+    }
+  }
+
+  /**
+   * Encodes a string as modified UTF-8, like
+   * {@link DataOutputStream#writeUTF(String)}.
+   */
+  private void writeString(String value) throws UTFDataFormatException {
+    int length = value.length();
+    ensureCapacity(2 + 3L * length);
+    int start = size;
+    int pos = start + 2;
+    byte[] buffer = this.buffer;
+    int i = 0;
+    // ASCII fast path.
+    for (; i < length; ++i) {
+      char c = value.charAt(i);
+      if (c == 0 || c >= 0x80) {
+        break;
+      }
+      buffer[pos++] = (byte) c;
+    }
+    for (; i < length; ++i) {
+      char c = value.charAt(i);
+      if (c != 0 && c < 0x80) {
+        buffer[pos++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[pos++] = (byte) (0xC0 | (c >> 6));
+        buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+      } else {
+        buffer[pos++] = (byte) (0xE0 | (c >> 12));
+        buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+    int encodedLength = pos - start - 2;
+    if (encodedLength > 0xFFFF) {
+      throw new UTFDataFormatException("encoded string too long: " + encodedLength + " bytes");
+    }
+    buffer[start] = (byte) (encodedLength >> 8);
+    buffer[start + 1] = (byte) encodedLength;
+    size = pos;
+  }
+
+  private void writeByte(int value) {
+    ensureCapacity(1);
+    buffer[size++] = (byte) value;
+  }
+
+  private void writeShort(int value) {
+    ensureCapacity(2);
+    buffer[size] = (byte) (value >> 8);
+    buffer[size + 1] = (byte) value;
+    size += 2;
+  }
+
+  private void writeInt(int value) {
+    ensureCapacity(4);
+    buffer[size] = (byte) (value >> 24);
+    buffer[size + 1] = (byte) (value >> 16);
+    buffer[size + 2] = (byte) (value >> 8);
+    buffer[size + 3] = (byte) value;
+    size += 4;
+  }
+
+  private void writeLong(long value) {
+    writeInt((int) (value >> 32));
+    writeInt((int) value);
+  }
+
+  private void writeBytes(byte[] bytes, int offset, int length) {
+    ensureCapacity(length);
+    System.arraycopy(bytes, offset, buffer, size, length);
+    size += length;
+  }
+
+  /**
+   * Makes room for {@code length} more bytes in the buffer.
+   */
+  private void ensureCapacity(long length) {
+    long required = size + length;
+    if (required > buffer.length) {
+      if (required > Integer.MAX_VALUE - 8) {
+        throw new OutOfMemoryError("NBT data too large for in-memory buffer");
+      }
+      long capacity = Math.max(required, Math.min(2L * buffer.length, Integer.MAX_VALUE - 8));
+      buffer = Arrays.copyOf(buffer, (int) capacity);
+      view = ByteBuffer.wrap(buffer);
+    }
+  }
+}
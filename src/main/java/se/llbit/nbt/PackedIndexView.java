@@ -0,0 +1,261 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+/**
+ * Reads and writes bit-packed indices stored in a long array, such as the
+ * palette indices in the "BlockStates" and "data" tags of chunk sections.
+ *
+ * <p>Two layouts are supported. In the spanning layout, used before
+ * Minecraft 1.16, entries are packed back to back and an entry can span two
+ * longs. In the aligned layout, used since Minecraft 1.16, each long holds
+ * {@code 64 / bitsPerEntry} entries and the remaining high bits are unused.
+ * In both layouts the first entry is stored in the lowest bits of the
+ * first long.
+ *
+ * <p>The view reads and writes the array it was created with, it does not
+ * copy it. A view is not thread safe if it is used for writing.
+ */
+public class PackedIndexView {
+  /** The number of blocks in a chunk section. */
+  public static final int SECTION_SIZE = 4096;
+
+  private final long[] data;
+  private final int bits;
+  private final int size;
+  private final boolean spanning;
+  private final long mask;
+
+  /** Number of entries per long in the aligned layout. */
+  private final int entriesPerLong;
+
+  /**
+   * @param data the packed data
+   * @param bitsPerEntry the number of bits per entry, from 1 to 32
+   * @param size the number of entries
+   * @param spanning {@code true} for the spanning layout used before
+   * Minecraft 1.16, {@code false} for the aligned layout
+   * @throws IllegalArgumentException if the data array is too short
+   */
+  public PackedIndexView(long[] data, int bitsPerEntry, int size, boolean spanning) {
+    if (bitsPerEntry < 1 || bitsPerEntry > 32) {
+      throw new IllegalArgumentException("Bits per entry must be in the range 1 to 32");
+    }
+    if (size < 0 || data.length < requiredLength(bitsPerEntry, size, spanning)) {
+      throw new IllegalArgumentException(String.format(
+          "Packed data too short: %d longs for %d entries of %d bits",
+          data.length, size, bitsPerEntry));
+    }
+    this.data = data;
+    this.bits = bitsPerEntry;
+    this.size = size;
+    this.spanning = spanning;
+    this.mask = (1L << bitsPerEntry) - 1;
+    this.entriesPerLong = 64 / bitsPerEntry;
+  }
+
+  /**
+   * Creates a view of a chunk section in the spanning layout used
+   * before Minecraft 1.16.
+   */
+  public static PackedIndexView spanning(LongArrayTag tag, int bitsPerEntry) {
+    return new PackedIndexView(tag.value, bitsPerEntry, SECTION_SIZE, true);
+  }
+
+  /**
+   * Creates a view of a chunk section in the aligned layout used since
+   * Minecraft 1.16.
+   */
+  public static PackedIndexView aligned(LongArrayTag tag, int bitsPerEntry) {
+    return new PackedIndexView(tag.value, bitsPerEntry, SECTION_SIZE, false);
+  }
+
+  /**
+   * Gives the number of longs needed to store {@code size} entries.
+   */
+  public static int requiredLength(int bitsPerEntry, int size, boolean spanning) {
+    if (spanning) {
+      return (int) (((long) size * bitsPerEntry + 63) / 64);
+    } else {
+      int entriesPerLong = 64 / bitsPerEntry;
+      return (size + entriesPerLong - 1) / entriesPerLong;
+    }
+  }
+
+  /**
+   * @return the number of entries
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the number of bits per entry
+   */
+  public int bitsPerEntry() {
+    return bits;
+  }
+
+  /**
+   * Gives the entry at index {@code i}.
+   */
+  public int get(int i) {
+    checkIndex(i);
+    if (spanning) {
+      long bitIndex = (long) i * bits;
+      int word = (int) (bitIndex >>> 6);
+      int offset = (int) (bitIndex & 63);
+      long value = data[word] >>> offset;
+      if (offset + bits > 64) {
+        value |= data[word + 1] << (64 - offset);
+      }
+      return (int) (value & mask);
+    } else {
+      int word = i / entriesPerLong;
+      int offset = (i - word * entriesPerLong) * bits;
+      return (int) ((data[word] >>> offset) & mask);
+    }
+  }
+
+  /**
+   * Changes the entry at index {@code i}. Only the lowest bits of the value
+   * are stored.
+   */
+  public void set(int i, int value) {
+    checkIndex(i);
+    long bitsValue = value & mask;
+    if (spanning) {
+      long bitIndex = (long) i * bits;
+      int word = (int) (bitIndex >>> 6);
+      int offset = (int) (bitIndex & 63);
+      data[word] = (data[word] & ~(mask << offset)) | (bitsValue << offset);
+      if (offset + bits > 64) {
+        int shift = 64 - offset;
+        data[word + 1] = (data[word + 1] & ~(mask >>> shift)) | (bitsValue >>> shift);
+      }
+    } else {
+      int word = i / entriesPerLong;
+      int offset = (i - word * entriesPerLong) * bits;
+      data[word] = (data[word] & ~(mask << offset)) | (bitsValue << offset);
+    }
+  }
+
+  /**
+   * Decodes all entries into an array.
+   *
+   * @param out the destination array, for example a reused {@code int[4096]}.
+   * Must have room for {@link #size()} entries.
+   * @return the destination array
+   */
+  public int[] unpack(int[] out) {
+    if (out.length < size) {
+      throw new IllegalArgumentException("Output array too short");
+    }
+    if (size == 0) {
+      return out;
+    }
+    if (spanning) {
+      int word = 0;
+      long current = data[0];
+      int available = 64;
+      for (int i = 0; i < size; ++i) {
+        if (available >= bits) {
+          out[i] = (int) (current & mask);
+          current >>>= bits;
+          available -= bits;
+        } else {
+          long next = data[++word];
+          out[i] = (int) ((current | (next << available)) & mask);
+          current = next >>> (bits - available);
+          available += 64 - bits;
+        }
+      }
+    } else {
+      int i = 0;
+      for (int word = 0; i < size; ++word) {
+        long current = data[word];
+        int end = Math.min(i + entriesPerLong, size);
+        for (; i < end; ++i) {
+          out[i] = (int) (current & mask);
+          current >>>= bits;
+        }
+      }
+    }
+    return out;
+  }
+
+  /**
+   * Encodes all entries from an array, replacing the packed data. Only the
+   * lowest bits of each value are stored.
+   *
+   * @param values the entries to store. Must have at least {@link #size()}
+   * entries.
+   */
+  public void pack(int[] values) {
+    if (values.length < size) {
+      throw new IllegalArgumentException("Input array too short");
+    }
+    int length = requiredLength(bits, size, spanning);
+    if (spanning) {
+      int word = 0;
+      long current = 0;
+      int used = 0;
+      for (int i = 0; i < size; ++i) {
+        long value = values[i] & mask;
+        current |= value << used;
+        used += bits;
+        if (used >= 64) {
+          data[word++] = current;
+          used -= 64;
+          current = used == 0 ? 0 : value >>> (bits - used);
+        }
+      }
+      if (word < length) {
+        data[word] = current;
+      }
+    } else {
+      int i = 0;
+      for (int word = 0; word < length; ++word) {
+        long current = 0;
+        int end = Math.min(i + entriesPerLong, size);
+        for (int offset = 0; i < end; ++i, offset += bits) {
+          current |= (values[i] & mask) << offset;
+        }
+        data[word] = current;
+      }
+    }
+  }
+
+  private void checkIndex(int i) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    }
+  }
+}
@@ -0,0 +1,745 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Item storage for lists of numeric tags.
+ *
+ * <p>The values are kept in a primitive array and a tag object is created
+ * each time an item is accessed through the {@code List} interface.
+ * Only tags of the list item type can be stored.
+ */
+abstract class PrimitiveList extends AbstractList<SpecificTag> implements RandomAccess {
+  /** Size in bytes of the block buffer used for stream reading and writing. */
+  private static final int BLOCK_SIZE = 8192;
+
+  final int itemType;
+
+  int size;
+
+  /** Frozen lists throw {@code UnsupportedOperationException} when modified. */
+  boolean frozen;
+
+  /**
+   * Set when the backing array is shared with another list, see
+   * {@link #share()}. Frozen lists are never marked as shared.
+   */
+  boolean shared;
+
+  PrimitiveList(int itemType, int size) {
+    this.itemType = itemType;
+    this.size = size;
+  }
+
+  /**
+   * @return empty storage for the given item type, or {@code null} if the
+   * item type is not numeric.
+   */
+  static PrimitiveList create(int itemType) {
+    switch (itemType) {
+      case Tag.TAG_BYTE:
+        return new ByteList(new byte[0]);
+      case Tag.TAG_SHORT:
+        return new ShortList(new short[0]);
+      case Tag.TAG_INT:
+        return new IntList(new int[0]);
+      case Tag.TAG_LONG:
+        return new LongList(new long[0]);
+      case Tag.TAG_FLOAT:
+        return new FloatList(new float[0]);
+      case Tag.TAG_DOUBLE:
+        return new DoubleList(new double[0]);
+      default:
+        return null;
+    }
+  }
+
+  /** Creates a tag for the value at index {@code i}. */
+  abstract SpecificTag item(int i);
+
+  /** Stores the value of the tag at index {@code i}. */
+  abstract void store(int i, SpecificTag tag);
+
+  /** The length of the backing array. */
+  abstract int capacity();
+
+  /** Replaces the backing array by a copy with the given length. */
+  abstract void resize(int capacity);
+
+  /** A copy of this list, with the backing array trimmed to the list size. */
+  abstract PrimitiveList copy();
+
+  /** A list with the same backing array as this list. */
+  abstract PrimitiveList view();
+
+  /** Moves {@code count} values from index {@code from} to index {@code to}. */
+  abstract void move(int from, int to, int count);
+
+  /** The serialized size of one item, in bytes. */
+  abstract int itemSize();
+
+  /**
+   * Decodes {@code count} values starting at the current position of the buffer
+   * into the backing array, starting at index {@code offset}. The buffer
+   * position is not changed.
+   */
+  abstract void decode(ByteBuffer in, int offset, int count);
+
+  /**
+   * Encodes {@code count} values starting at index {@code offset} into the
+   * buffer, starting at the current buffer position. The buffer position is
+   * not changed.
+   */
+  abstract void encode(ByteBuffer out, int offset, int count);
+
+  @Override public int size() {
+    return size;
+  }
+
+  /** The estimated heap size of this list, including the backing array. */
+  long heapBytes() {
+    // Fields: itemType, size, frozen, shared, modCount, values.
+    return HeapSize.object(4 + 4 + 2 + 4 + HeapSize.REFERENCE)
+        + HeapSize.array(capacity(), itemSize());
+  }
+
+  /**
+   * Gives a list that shares the backing array of this list until one of the
+   * lists is modified.
+   */
+  PrimitiveList share() {
+    PrimitiveList copy = view();
+    copy.size = size;
+    copy.shared = true;
+    if (!frozen) {
+      shared = true;
+    }
+    return copy;
+  }
+
+  /** A frozen copy of this list. */
+  PrimitiveList freeze() {
+    PrimitiveList copy = copy();
+    copy.frozen = true;
+    return copy;
+  }
+
+  @Override public SpecificTag get(int i) {
+    checkIndex(i);
+    return item(i);
+  }
+
+  @Override public SpecificTag set(int i, SpecificTag tag) {
+    checkMutable();
+    checkIndex(i);
+    checkType(tag);
+    SpecificTag previous = item(i);
+    store(i, tag);
+    return previous;
+  }
+
+  @Override public void add(int i, SpecificTag tag) {
+    checkMutable();
+    if (i < 0 || i > size) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    }
+    checkType(tag);
+    ensureCapacity(size + 1);
+    move(i, i + 1, size - i);
+    store(i, tag);
+    size += 1;
+    modCount += 1;
+  }
+
+  @Override public SpecificTag remove(int i) {
+    checkMutable();
+    checkIndex(i);
+    SpecificTag previous = item(i);
+    move(i + 1, i, size - i - 1);
+    size -= 1;
+    modCount += 1;
+    return previous;
+  }
+
+  @Override public void clear() {
+    checkMutable();
+    size = 0;
+    modCount += 1;
+  }
+
+  double doubleAt(int i) {
+    return get(i).doubleValue();
+  }
+
+  float floatAt(int i) {
+    return get(i).floatValue();
+  }
+
+  long longAt(int i) {
+    return get(i).longValue();
+  }
+
+  int intAt(int i) {
+    return get(i).intValue();
+  }
+
+  short shortAt(int i) {
+    return get(i).shortValue();
+  }
+
+  int byteAt(int i) {
+    return get(i).byteValue();
+  }
+
+  /**
+   * Reads {@code count} items from the stream and appends them to this list.
+   * The backing array grows while reading, so a corrupt item count does not
+   * cause a large allocation before the end of the input is reached.
+   */
+  void read(DataInputStream in, int count) throws IOException {
+    int itemSize = itemSize();
+    int blockItems = BLOCK_SIZE / itemSize;
+    byte[] block = new byte[Math.min(count, blockItems) * itemSize];
+    ByteBuffer view = ByteBuffer.wrap(block);
+    int end = size + count;
+    while (size < end) {
+      int n = Math.min(end - size, blockItems);
+      ensureCapacity(size + n);
+      in.readFully(block, 0, n * itemSize);
+      decode(view, size, n);
+      size += n;
+    }
+    modCount += 1;
+  }
+
+  /**
+   * Reads {@code count} items from the buffer and appends them to this list.
+   *
+   * @throws BufferUnderflowException if the buffer does not contain
+   * all items.
+   */
+  void read(ByteBuffer in, int count) {
+    long length = (long) count * itemSize();
+    if (length > in.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    ensureCapacity(size + count);
+    decode(in, size, count);
+    in.position(in.position() + (int) length);
+    size += count;
+    modCount += 1;
+  }
+
+  /** Writes all items, without tag type or list header. */
+  void write(DataOutputStream out) throws IOException {
+    int itemSize = itemSize();
+    int blockItems = BLOCK_SIZE / itemSize;
+    byte[] block = new byte[Math.min(size, blockItems) * itemSize];
+    ByteBuffer view = ByteBuffer.wrap(block);
+    for (int offset = 0; offset < size; offset += blockItems) {
+      int n = Math.min(size - offset, blockItems);
+      encode(view, offset, n);
+      out.write(block, 0, n * itemSize);
+    }
+  }
+
+  private void ensureCapacity(int minCapacity) {
+    int capacity = capacity();
+    if (minCapacity > capacity) {
+      resize(Math.max(minCapacity, capacity + (capacity >> 1)));
+    }
+  }
+
+  private void checkIndex(int i) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    }
+  }
+
+  private void checkMutable() {
+    if (frozen) {
+      throw new UnsupportedOperationException("Cannot modify a frozen list tag");
+    }
+    if (shared) {
+      resize(capacity());
+      shared = false;
+    }
+  }
+
+  private void checkType(SpecificTag tag) {
+    if (tag.tagType() != itemType) {
+      throw new IllegalArgumentException(String.format(
+          "Cannot store %s in list of %s", tag.tagName(), Tag.typeName(itemType)));
+    }
+  }
+
+  static final class ByteList extends PrimitiveList {
+    byte[] values;
+
+    ByteList(byte[] values) {
+      super(Tag.TAG_BYTE, values.length);
+      this.values = values;
+    }
+
+    @Override SpecificTag item(int i) {
+      return ByteTag.valueOf(values[i]);
+    }
+
+    @Override void store(int i, SpecificTag tag) {
+      values[i] = (byte) tag.byteValue();
+    }
+
+    @Override int capacity() {
+      return values.length;
+    }
+
+    @Override void resize(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override PrimitiveList copy() {
+      return new ByteList(Arrays.copyOf(values, size));
+    }
+
+    @Override PrimitiveList view() {
+      return new ByteList(values);
+    }
+
+    @Override void move(int from, int to, int count) {
+      System.arraycopy(values, from, values, to, count);
+    }
+
+    @Override int itemSize() {
+      return 1;
+    }
+
+    @Override void decode(ByteBuffer in, int offset, int count) {
+      in.duplicate().get(values, offset, count);
+    }
+
+    @Override void encode(ByteBuffer out, int offset, int count) {
+      out.duplicate().put(values, offset, count);
+    }
+
+    @Override int byteAt(int i) {
+      if (i >= size) {
+        throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+      }
+      return values[i];
+    }
+
+    @Override public boolean equals(Object obj) {
+      if (obj instanceof ByteList) {
+        ByteList other = (ByteList) obj;
+        if (other.size != size) {
+          return false;
+        }
+        for (int i = 0; i < size; ++i) {
+          if (values[i] != other.values[i]) {
+            return false;
+          }
+        }
+        return true;
+      }
+      return super.equals(obj);
+    }
+  }
+
+  static final class ShortList extends PrimitiveList {
+    short[] values;
+
+    ShortList(short[] values) {
+      super(Tag.TAG_SHORT, values.length);
+      this.values = values;
+    }
+
+    @Override SpecificTag item(int i) {
+      return ShortTag.valueOf(values[i]);
+    }
+
+    @Override void store(int i, SpecificTag tag) {
+      values[i] = tag.shortValue();
+    }
+
+    @Override int capacity() {
+      return values.length;
+    }
+
+    @Override void resize(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override PrimitiveList copy() {
+      return new ShortList(Arrays.copyOf(values, size));
+    }
+
+    @Override PrimitiveList view() {
+      return new ShortList(values);
+    }
+
+    @Override void move(int from, int to, int count) {
+      System.arraycopy(values, from, values, to, count);
+    }
+
+    @Override int itemSize() {
+      return 2;
+    }
+
+    @Override void decode(ByteBuffer in, int offset, int count) {
+      in.asShortBuffer().get(values, offset, count);
+    }
+
+    @Override void encode(ByteBuffer out, int offset, int count) {
+      out.asShortBuffer().put(values, offset, count);
+    }
+
+    @Override short shortAt(int i) {
+      if (i >= size) {
+        throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+      }
+      return values[i];
+    }
+
+    @Override public boolean equals(Object obj) {
+      if (obj instanceof ShortList) {
+        ShortList other = (ShortList) obj;
+        if (other.size != size) {
+          return false;
+        }
+        for (int i = 0; i < size; ++i) {
+          if (values[i] != other.values[i]) {
+            return false;
+          }
+        }
+        return true;
+      }
+      return super.equals(obj);
+    }
+  }
+
+  static final class IntList extends PrimitiveList {
+    int[] values;
+
+    IntList(int[] values) {
+      super(Tag.TAG_INT, values.length);
+      this.values = values;
+    }
+
+    @Override SpecificTag item(int i) {
+      return IntTag.valueOf(values[i]);
+    }
+
+    @Override void store(int i, SpecificTag tag) {
+      values[i] = tag.intValue();
+    }
+
+    @Override int capacity() {
+      return values.length;
+    }
+
+    @Override void resize(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override PrimitiveList copy() {
+      return new IntList(Arrays.copyOf(values, size));
+    }
+
+    @Override PrimitiveList view() {
+      return new IntList(values);
+    }
+
+    @Override void move(int from, int to, int count) {
+      System.arraycopy(values, from, values, to, count);
+    }
+
+    @Override int itemSize() {
+      return 4;
+    }
+
+    @Override void decode(ByteBuffer in, int offset, int count) {
+      in.asIntBuffer().get(values, offset, count);
+    }
+
+    @Override void encode(ByteBuffer out, int offset, int count) {
+      out.asIntBuffer().put(values, offset, count);
+    }
+
+    @Override int intAt(int i) {
+      if (i >= size) {
+        throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+      }
+      return values[i];
+    }
+
+    @Override public boolean equals(Object obj) {
+      if (obj instanceof IntList) {
+        IntList other = (IntList) obj;
+        if (other.size != size) {
+          return false;
+        }
+        for (int i = 0; i < size; ++i) {
+          if (values[i] != other.values[i]) {
+            return false;
+          }
+        }
+        return true;
+      }
+      return super.equals(obj);
+    }
+  }
+
+  static final class LongList extends PrimitiveList {
+    long[] values;
+
+    LongList(long[] values) {
+      super(Tag.TAG_LONG, values.length);
+      this.values = values;
+    }
+
+    @Override SpecificTag item(int i) {
+      return new LongTag(values[i]);
+    }
+
+    @Override void store(int i, SpecificTag tag) {
+      values[i] = tag.longValue();
+    }
+
+    @Override int capacity() {
+      return values.length;
+    }
+
+    @Override void resize(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override PrimitiveList copy() {
+      return new LongList(Arrays.copyOf(values, size));
+    }
+
+    @Override PrimitiveList view() {
+      return new LongList(values);
+    }
+
+    @Override void move(int from, int to, int count) {
+      System.arraycopy(values, from, values, to, count);
+    }
+
+    @Override int itemSize() {
+      return 8;
+    }
+
+    @Override void decode(ByteBuffer in, int offset, int count) {
+      in.asLongBuffer().get(values, offset, count);
+    }
+
+    @Override void encode(ByteBuffer out, int offset, int count) {
+      out.asLongBuffer().put(values, offset, count);
+    }
+
+    @Override long longAt(int i) {
+      if (i >= size) {
+        throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+      }
+      return values[i];
+    }
+
+    @Override public boolean equals(Object obj) {
+      if (obj instanceof LongList) {
+        LongList other = (LongList) obj;
+        if (other.size != size) {
+          return false;
+        }
+        for (int i = 0; i < size; ++i) {
+          if (values[i] != other.values[i]) {
+            return false;
+          }
+        }
+        return true;
+      }
+      return super.equals(obj);
+    }
+  }
+
+  static final class FloatList extends PrimitiveList {
+    float[] values;
+
+    FloatList(float[] values) {
+      super(Tag.TAG_FLOAT, values.length);
+      this.values = values;
+    }
+
+    @Override SpecificTag item(int i) {
+      return new FloatTag(values[i]);
+    }
+
+    @Override void store(int i, SpecificTag tag) {
+      values[i] = tag.floatValue();
+    }
+
+    @Override int capacity() {
+      return values.length;
+    }
+
+    @Override void resize(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override PrimitiveList copy() {
+      return new FloatList(Arrays.copyOf(values, size));
+    }
+
+    @Override PrimitiveList view() {
+      return new FloatList(values);
+    }
+
+    @Override void move(int from, int to, int count) {
+      System.arraycopy(values, from, values, to, count);
+    }
+
+    @Override int itemSize() {
+      return 4;
+    }
+
+    @Override void decode(ByteBuffer in, int offset, int count) {
+      in.asFloatBuffer().get(values, offset, count);
+    }
+
+    @Override void encode(ByteBuffer out, int offset, int count) {
+      out.asFloatBuffer().put(values, offset, count);
+    }
+
+    @Override float floatAt(int i) {
+      if (i >= size) {
+        throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+      }
+      return values[i];
+    }
+
+    @Override public boolean equals(Object obj) {
+      if (obj instanceof FloatList) {
+        // Compare like FloatTag.equals.
+        FloatList other = (FloatList) obj;
+        if (other.size != size) {
+          return false;
+        }
+        for (int i = 0; i < size; ++i) {
+          if (values[i] != other.values[i]) {
+            return false;
+          }
+        }
+        return true;
+      }
+      return super.equals(obj);
+    }
+  }
+
+  static final class DoubleList extends PrimitiveList {
+    double[] values;
+
+    DoubleList(double[] values) {
+      super(Tag.TAG_DOUBLE, values.length);
+      this.values = values;
+    }
+
+    @Override SpecificTag item(int i) {
+      return new DoubleTag(values[i]);
+    }
+
+    @Override void store(int i, SpecificTag tag) {
+      values[i] = tag.doubleValue();
+    }
+
+    @Override int capacity() {
+      return values.length;
+    }
+
+    @Override void resize(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override PrimitiveList copy() {
+      return new DoubleList(Arrays.copyOf(values, size));
+    }
+
+    @Override PrimitiveList view() {
+      return new DoubleList(values);
+    }
+
+    @Override void move(int from, int to, int count) {
+      System.arraycopy(values, from, values, to, count);
+    }
+
+    @Override int itemSize() {
+      return 8;
+    }
+
+    @Override void decode(ByteBuffer in, int offset, int count) {
+      in.asDoubleBuffer().get(values, offset, count);
+    }
+
+    @Override void encode(ByteBuffer out, int offset, int count) {
+      out.asDoubleBuffer().put(values, offset, count);
+    }
+
+    @Override double doubleAt(int i) {
+      if (i >= size) {
+        throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+      }
+      return values[i];
+    }
+
+    @Override public boolean equals(Object obj) {
+      if (obj instanceof DoubleList) {
+        // Compare like DoubleTag.equals.
+        DoubleList other = (DoubleList) obj;
+        if (other.size != size) {
+          return false;
+        }
+        for (int i = 0; i < size; ++i) {
+          if (values[i] != other.values[i]) {
+            return false;
+          }
+        }
+        return true;
+      }
+      return super.equals(obj);
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+/**
+ * Limits for parsing NBT data from untrusted sources.
+ *
+ * <p>The size of arrays and lists is stored in the NBT data, so without
+ * limits a few bytes of input can make the parser allocate gigabytes of
+ * memory. When a limit is exceeded parsing stops with a
+ * {@link NbtLimitException}, before the memory is allocated.
+ *
+ * <p>Limits are immutable. The {@code with} methods return a copy with one
+ * limit changed:
+ * <pre>
+ * ReadLimits limits = ReadLimits.DEFAULT
+ *     .withMaxBytes(1 &lt;&lt; 20)
+ *     .withMaxArrayLength(65536)
+ *     .withMaxNodes(100000);
+ * Tag tag = NamedTag.read(in, limits);
+ * </pre>
+ */
+public final class ReadLimits {
+  /**
+   * No limits except for the maximum nesting depth,
+   * {@link Tag#DEFAULT_MAX_DEPTH}.
+   */
+  public static final ReadLimits DEFAULT = new ReadLimits(Long.MAX_VALUE, Integer.MAX_VALUE,
+      Integer.MAX_VALUE, Tag.DEFAULT_MAX_DEPTH, Long.MAX_VALUE);
+
+  private final long maxBytes;
+  private final int maxArrayLength;
+  private final int maxListSize;
+  private final int maxDepth;
+  private final long maxNodes;
+
+  private ReadLimits(long maxBytes, int maxArrayLength, int maxListSize, int maxDepth,
+      long maxNodes) {
+    this.maxBytes = maxBytes;
+    this.maxArrayLength = maxArrayLength;
+    this.maxListSize = maxListSize;
+    this.maxDepth = maxDepth;
+    this.maxNodes = maxNodes;
+  }
+
+  /**
+   * The maximum number of bytes read for one tag, including the tag type and
+   * name.
+   */
+  public long maxBytes() {
+    return maxBytes;
+  }
+
+  /** The maximum number of elements in a byte, int or long array tag. */
+  public int maxArrayLength() {
+    return maxArrayLength;
+  }
+
+  /** The maximum number of items in a list tag. */
+  public int maxListSize() {
+    return maxListSize;
+  }
+
+  /** The maximum nesting depth of compound and list tags. */
+  public int maxDepth() {
+    return maxDepth;
+  }
+
+  /**
+   * The maximum number of tags in the parsed tree. The items of numeric list
+   * tags are counted as tags.
+   */
+  public long maxNodes() {
+    return maxNodes;
+  }
+
+  public ReadLimits withMaxBytes(long maxBytes) {
+    return new ReadLimits(maxBytes, maxArrayLength, maxListSize, maxDepth, maxNodes);
+  }
+
+  public ReadLimits withMaxArrayLength(int maxArrayLength) {
+    return new ReadLimits(maxBytes, maxArrayLength, maxListSize, maxDepth, maxNodes);
+  }
+
+  public ReadLimits withMaxListSize(int maxListSize) {
+    return new ReadLimits(maxBytes, maxArrayLength, maxListSize, maxDepth, maxNodes);
+  }
+
+  public ReadLimits withMaxDepth(int maxDepth) {
+    return new ReadLimits(maxBytes, maxArrayLength, maxListSize, maxDepth, maxNodes);
+  }
+
+  public ReadLimits withMaxNodes(long maxNodes) {
+    return new ReadLimits(maxBytes, maxArrayLength, maxListSize, maxDepth, maxNodes);
+  }
+
+  @Override public String toString() {
+    return "ReadLimits{maxBytes=" + maxBytes + ", maxArrayLength=" + maxArrayLength
+        + ", maxListSize=" + maxListSize + ", maxDepth=" + maxDepth
+        + ", maxNodes=" + maxNodes + "}";
+  }
+}
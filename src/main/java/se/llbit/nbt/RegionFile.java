@@ -0,0 +1,270 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Reads chunks from a Minecraft region file (.mca or .mcr).
+ *
+ * <p>A region file holds the chunks of a 32 by 32 chunk area. It starts with
+ * a table of chunk locations and a table of chunk timestamps, each
+ * {@value #SECTOR_SIZE} bytes. The compressed chunk data is stored in
+ * sectors of {@value #SECTOR_SIZE} bytes.
+ *
+ * <p>The file is memory mapped and the header is parsed when the region file
+ * is opened. Chunk coordinates can be given either relative to the region or
+ * as world chunk coordinates, since only the lowest five bits are used.
+ *
+ * <p>A region file can be read by multiple threads concurrently.
+ */
+public class RegionFile implements Closeable {
+  public static final int SECTOR_SIZE = 4096;
+
+  /** Chunk compression type: gzip. */
+  public static final int COMPRESSION_GZIP = 1;
+
+  /** Chunk compression type: zlib. This is used by Minecraft. */
+  public static final int COMPRESSION_ZLIB = 2;
+
+  /** Chunk compression type: uncompressed. */
+  public static final int COMPRESSION_NONE = 3;
+
+  /** Chunk compression type: LZ4, used since Minecraft 1.20.5. */
+  public static final int COMPRESSION_LZ4 = 4;
+
+  /** Flag in the compression type for chunks stored in a separate .mcc file. */
+  private static final int EXTERNAL_FLAG = 0x80;
+
+  /** Matches region file names. The groups are the region X and Z coordinates. */
+  static final Pattern REGION_NAME = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.mc[ar]");
+
+  private final File file;
+  private final FileChannel channel;
+  private final ByteBuffer data;
+  private final int[] locations = new int[1024];
+  private final int[] timestamps = new int[1024];
+
+  /**
+   * Opens a region file for reading. The region file header is parsed
+   * immediately.
+   *
+   * @throws IOException if the file can not be opened
+   */
+  public RegionFile(File file) throws IOException {
+    this.file = file;
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      data = map;
+      if (data.limit() >= 2 * SECTOR_SIZE) {
+        data.asIntBuffer().get(locations);
+        ByteBuffer header = data.duplicate();
+        header.position(SECTOR_SIZE);
+        header.asIntBuffer().get(timestamps);
+      }
+      // Smaller files are treated as empty regions, like Minecraft does.
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @return the region file that was opened
+   */
+  public File getFile() {
+    return file;
+  }
+
+  private static int index(int x, int z) {
+    return (x & 31) + (z & 31) * 32;
+  }
+
+  /**
+   * Test if the region contains a chunk at the given coordinates.
+   */
+  public boolean hasChunk(int x, int z) {
+    return locations[index(x, z)] != 0;
+  }
+
+  /**
+   * Gives the last modification time of a chunk, in seconds since the epoch.
+   * Gives zero if the chunk does not exist.
+   */
+  public int getTimestamp(int x, int z) {
+    return timestamps[index(x, z)];
+  }
+
+  /**
+   * Reads the decompressed NBT data of a chunk.
+   *
+   * @return a buffer containing the uncompressed chunk data,
+   * or {@code null} if the chunk does not exist
+   * @throws IOException if the chunk data is corrupt or can not be decompressed
+   */
+  public ByteBuffer readChunkData(int x, int z) throws IOException {
+    ByteBuffer chunk = storedData(x, z);
+    if (chunk == null) {
+      return null;
+    }
+    int compression = chunk.get() & 0xFF;
+    if ((compression & EXTERNAL_FLAG) != 0) {
+      return decompress(compression & ~EXTERNAL_FLAG, readExternal(x, z));
+    }
+    if (compression == COMPRESSION_NONE) {
+      return chunk.slice();
+    }
+    byte[] compressed = new byte[chunk.remaining()];
+    chunk.get(compressed);
+    return decompress(compression, compressed);
+  }
+
+  /**
+   * Gives a checksum of the stored data of a chunk: a CRC32 of the
+   * compression type and the compressed chunk data. Unlike the timestamp,
+   * the checksum tells apart versions of a chunk that were written within
+   * the same second.
+   *
+   * @return the checksum, or zero if the chunk does not exist
+   * @throws IOException if the chunk is outside the region file or has an
+   * invalid length
+   */
+  public long getChecksum(int x, int z) throws IOException {
+    ByteBuffer chunk = storedData(x, z);
+    if (chunk == null) {
+      return 0;
+    }
+    CRC32 crc = new CRC32();
+    int compression = chunk.get(chunk.position()) & 0xFF;
+    if ((compression & EXTERNAL_FLAG) != 0) {
+      byte[] external = readExternal(x, z);
+      crc.update(compression);
+      crc.update(external, 0, external.length);
+    } else {
+      byte[] block = new byte[Math.min(chunk.remaining(), SECTOR_SIZE)];
+      while (chunk.hasRemaining()) {
+        int n = Math.min(chunk.remaining(), block.length);
+        chunk.get(block, 0, n);
+        crc.update(block, 0, n);
+      }
+    }
+    return crc.getValue();
+  }
+
+  /**
+   * Gives the stored data of a chunk, from the compression type to the end
+   * of the compressed data. For chunks stored in a separate file only the
+   * compression type is included.
+   *
+   * @return a view of the mapped file, or {@code null} if the chunk does
+   * not exist
+   */
+  private ByteBuffer storedData(int x, int z) throws IOException {
+    int location = locations[index(x, z)];
+    if (location == 0) {
+      return null;
+    }
+    long offset = (long) (location >>> 8) * SECTOR_SIZE;
+    int sectors = location & 0xFF;
+    if (offset < 2 * SECTOR_SIZE || offset + 5 > data.limit()) {
+      throw new IOException(String.format("Chunk (%d, %d) is outside the region file",
+          x & 31, z & 31));
+    }
+    ByteBuffer chunk = data.duplicate();
+    chunk.position((int) offset);
+    int length = chunk.getInt();
+    int compression = chunk.get(chunk.position()) & 0xFF;
+    if ((compression & EXTERNAL_FLAG) != 0) {
+      chunk.limit(chunk.position() + 1);
+      return chunk;
+    }
+    if (length < 1 || length + 4 > (long) sectors * SECTOR_SIZE
+        || offset + 4 + length > data.limit()) {
+      throw new IOException(String.format("Chunk (%d, %d) has invalid length %d",
+          x & 31, z & 31, length));
+    }
+    chunk.limit(chunk.position() + length);
+    return chunk;
+  }
+
+  /**
+   * Reads and parses a chunk.
+   *
+   * @return the root tag of the chunk, or {@code null} if the chunk does not
+   * exist. Parse errors are reported as for {@link NamedTag#read(ByteBuffer)}.
+   * @throws IOException if the chunk data is corrupt or can not be decompressed
+   */
+  public Tag readChunk(int x, int z) throws IOException {
+    ByteBuffer chunk = readChunkData(x, z);
+    if (chunk == null) {
+      return null;
+    }
+    return NamedTag.read(chunk);
+  }
+
+  /**
+   * Reads the data of a chunk that is stored outside the region file, in a
+   * file named c.X.Z.mcc next to the region file. X and Z are world chunk
+   * coordinates, computed from the region file name.
+   */
+  private byte[] readExternal(int x, int z) throws IOException {
+    Matcher matcher = REGION_NAME.matcher(file.getName());
+    if (!matcher.matches()) {
+      throw new IOException("Can not locate external chunk file for region " + file.getName());
+    }
+    int chunkX = Integer.parseInt(matcher.group(1)) * 32 + (x & 31);
+    int chunkZ = Integer.parseInt(matcher.group(2)) * 32 + (z & 31);
+    File external = new File(file.getParentFile(), "c." + chunkX + "." + chunkZ + ".mcc");
+    return Files.readAllBytes(external.toPath());
+  }
+
+  private static ByteBuffer decompress(int compression, byte[] compressed) throws IOException {
+    return Compression.fromId(compression).decompress(compressed, 0, compressed.length);
+  }
+
+  /**
+   * Closes the file channel. Buffers returned for uncompressed chunks remain
+   * valid until they are garbage collected.
+   */
+  @Override public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,423 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.regex.Matcher;
+
+/**
+ * Writes chunks into a Minecraft region file (.mca or .mcr), without
+ * rewriting the rest of the file.
+ *
+ * <p>Used sectors are tracked in a bitmap. A written chunk is stored in the
+ * first free range of sectors that is large enough, and the file grows only
+ * when there is no such range. The old sectors of the chunk are still in use
+ * while the new data is written, so the old copy stays intact if the write
+ * fails. The location and timestamp of the chunk are then updated in place
+ * in the region file header, and only after that the old sectors are freed.
+ * Chunks that need more than 255 sectors are written to a separate
+ * c.X.Z.mcc file, like Minecraft does.
+ *
+ * <p>Freed sectors are reused by later writes. Use {@link #compact()} to
+ * move all chunks to the start of the file and truncate it.
+ *
+ * <p>A {@link RegionFile} that is open for the same file does not see the
+ * changes made by the writer. Open it again after writing.
+ */
+public class RegionFileWriter implements Closeable {
+  private static final int SECTOR_SIZE = RegionFile.SECTOR_SIZE;
+
+  /** The largest number of sectors that a location table entry can hold. */
+  private static final int MAX_SECTORS = 255;
+
+  /** Flag in the compression type for chunks stored in a separate .mcc file. */
+  private static final int EXTERNAL_FLAG = 0x80;
+
+  private final File file;
+  private final FileChannel channel;
+  private final int[] locations = new int[1024];
+  private final int[] timestamps = new int[1024];
+
+  /** The used sectors of the file, including the two header sectors. */
+  private final BitSet used = new BitSet();
+
+  /** The number of sectors in the file. */
+  private int fileSectors;
+
+  private final NbtWriter writer = new NbtWriter();
+
+  /**
+   * Opens a region file for writing. A new empty region file is created if
+   * the file does not exist, or if it is too small to hold the header.
+   *
+   * @throws IOException if the file can not be opened
+   */
+  public RegionFileWriter(File file) throws IOException {
+    this.file = file;
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+        StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+    try {
+      if (channel.size() < 2 * SECTOR_SIZE) {
+        // Smaller files are treated as empty regions, like Minecraft does.
+        channel.truncate(0);
+        writeFully(ByteBuffer.allocate(2 * SECTOR_SIZE), 0);
+      } else {
+        ByteBuffer header = ByteBuffer.allocate(2 * SECTOR_SIZE);
+        readFully(header, 0);
+        header.flip();
+        header.asIntBuffer().get(locations);
+        header.position(SECTOR_SIZE);
+        header.asIntBuffer().get(timestamps);
+      }
+      fileSectors = (int) ((channel.size() + SECTOR_SIZE - 1) / SECTOR_SIZE);
+      used.set(0, 2);
+      for (int i = 0; i < locations.length; ++i) {
+        int sector = locations[i] >>> 8;
+        int count = locations[i] & 0xFF;
+        if (sector < 2 || sector + count > fileSectors) {
+          // Invalid location: forget the chunk.
+          locations[i] = 0;
+        } else {
+          used.set(sector, sector + count);
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @return the region file that was opened
+   */
+  public File getFile() {
+    return file;
+  }
+
+  private static int index(int x, int z) {
+    return (x & 31) + (z & 31) * 32;
+  }
+
+  /**
+   * Test if the region contains a chunk at the given coordinates.
+   */
+  public synchronized boolean hasChunk(int x, int z) {
+    return locations[index(x, z)] != 0;
+  }
+
+  /**
+   * Gives the last modification time of a chunk, in seconds since the epoch.
+   * Gives zero if the chunk does not exist.
+   */
+  public synchronized int getTimestamp(int x, int z) {
+    return timestamps[index(x, z)];
+  }
+
+  /**
+   * Serializes and stores a chunk using zlib compression, which is the
+   * compression used by Minecraft. The chunk timestamp is set to the
+   * current time.
+   *
+   * @param chunk the root tag of the chunk, usually a named compound tag
+   */
+  public void writeChunk(int x, int z, Tag chunk) throws IOException {
+    writeChunk(x, z, chunk, Compression.ZLIB);
+  }
+
+  /**
+   * Serializes and stores a chunk using the given compression. The chunk
+   * timestamp is set to the current time.
+   *
+   * <p>LZ4 compression is not supported for writing. LZ4 compressed chunk
+   * data can be stored with {@link #writeChunkData}.
+   *
+   * @param chunk the root tag of the chunk, usually a named compound tag
+   * @throws IllegalArgumentException if the compression is
+   * {@link Compression#LZ4}
+   */
+  public synchronized void writeChunk(int x, int z, Tag chunk, Compression compression)
+      throws IOException {
+    if (compression == Compression.LZ4) {
+      throw new IllegalArgumentException("LZ4 compression is not supported for writing");
+    }
+    writer.reset();
+    writer.write(chunk);
+    ByteBuffer data = writer.asByteBuffer();
+    ByteBuffer compressed =
+        compression.compress(data.array(), data.arrayOffset(), data.remaining());
+    writeChunkData(x, z, compressed, compression,
+        (int) (System.currentTimeMillis() / 1000));
+  }
+
+  /**
+   * Stores already compressed chunk data.
+   *
+   * @param data the compressed chunk data, from the current position to the limit
+   * @param timestamp the chunk timestamp, in seconds since the epoch
+   */
+  public synchronized void writeChunkData(int x, int z, ByteBuffer data,
+      Compression compression, int timestamp) throws IOException {
+    int index = index(x, z);
+    int length = data.remaining() + 1; // Data length plus compression type.
+    int type = compression.id;
+    int sectors = (length + 4 + SECTOR_SIZE - 1) / SECTOR_SIZE;
+    File external = externalFile(x, z);
+    if (sectors > MAX_SECTORS) {
+      if (external == null) {
+        throw new IOException("Can not store external chunk data for region " + file.getName());
+      }
+      Files.write(external.toPath(), bytes(data));
+      type |= EXTERNAL_FLAG;
+      length = 1;
+      sectors = 1;
+    }
+
+    // The old sectors are freed after the header points to the new data.
+    int oldLocation = locations[index];
+    int sector = allocate(sectors);
+    int location = (sector << 8) | sectors;
+    ByteBuffer buffer = ByteBuffer.allocate(sectors * SECTOR_SIZE);
+    buffer.putInt(length);
+    buffer.put((byte) type);
+    if ((type & EXTERNAL_FLAG) == 0) {
+      buffer.put(data.duplicate());
+    }
+    buffer.clear();
+    try {
+      writeFully(buffer, (long) sector * SECTOR_SIZE);
+      setHeader(index, location, timestamp);
+    } catch (IOException e) {
+      if (locations[index] != location) {
+        free(location);
+      }
+      throw e;
+    }
+    free(oldLocation);
+
+    if ((type & EXTERNAL_FLAG) == 0 && external != null && external.isFile()) {
+      // Remove the old external data, if any, after the header points to the new data.
+      Files.delete(external.toPath());
+    }
+  }
+
+  /**
+   * Removes a chunk from the region. Its sectors can be reused by later writes.
+   */
+  public synchronized void deleteChunk(int x, int z) throws IOException {
+    int index = index(x, z);
+    if (locations[index] != 0) {
+      free(locations[index]);
+      setHeader(index, 0, 0);
+      File external = externalFile(x, z);
+      if (external != null && external.isFile()) {
+        Files.delete(external.toPath());
+      }
+    }
+  }
+
+  /**
+   * Moves all chunks to the start of the file, in their current order, and
+   * truncates the free sectors at the end of the file.
+   *
+   * <p>A chunk is never written over its own sectors: the header points to a
+   * complete copy of each chunk at all times.
+   */
+  public synchronized void compact() throws IOException {
+    Integer[] order = new Integer[locations.length];
+    for (int i = 0; i < order.length; ++i) {
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override public int compare(Integer a, Integer b) {
+        return Integer.compare(locations[a] >>> 8, locations[b] >>> 8);
+      }
+    });
+    // All chunks end before this sector.
+    int spare = fileSectors;
+    int next = 2;
+    for (int index : order) {
+      int location = locations[index];
+      if (location == 0) {
+        continue;
+      }
+      int sector = location >>> 8;
+      int sectors = location & 0xFF;
+      if (sector != next) {
+        if (next + sectors > sector) {
+          // The new sectors overlap the current sectors. The chunk is first
+          // moved past the end of the file, so that an interrupted move does
+          // not leave the header pointing to partly overwritten data.
+          move(index, spare);
+        }
+        move(index, next);
+      }
+      next += sectors;
+    }
+    channel.truncate((long) next * SECTOR_SIZE);
+    fileSectors = next;
+    used.clear();
+    used.set(0, next);
+  }
+
+  /**
+   * @return the number of sectors in the region file
+   */
+  public synchronized int sectorCount() {
+    return fileSectors;
+  }
+
+  /**
+   * @return the number of unused sectors in the region file
+   */
+  public synchronized int freeSectorCount() {
+    return fileSectors - used.cardinality();
+  }
+
+  /**
+   * Writes pending changes to the storage device.
+   */
+  public synchronized void flush() throws IOException {
+    channel.force(false);
+  }
+
+  @Override public synchronized void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Copies the sectors of a chunk to free sectors starting at the given
+   * sector, then points the header to the copy and frees the old sectors.
+   */
+  private void move(int index, int sector) throws IOException {
+    int oldLocation = locations[index];
+    int sectors = oldLocation & 0xFF;
+    int location = (sector << 8) | sectors;
+    used.set(sector, sector + sectors);
+    fileSectors = Math.max(fileSectors, sector + sectors);
+    ByteBuffer buffer = ByteBuffer.allocate(sectors * SECTOR_SIZE);
+    readFully(buffer, (long) (oldLocation >>> 8) * SECTOR_SIZE);
+    buffer.clear();
+    try {
+      writeFully(buffer, (long) sector * SECTOR_SIZE);
+      setHeader(index, location, timestamps[index]);
+    } catch (IOException e) {
+      if (locations[index] != location) {
+        free(location);
+      }
+      throw e;
+    }
+    free(oldLocation);
+  }
+
+  private void free(int location) {
+    if (location != 0) {
+      int sector = location >>> 8;
+      used.clear(sector, sector + (location & 0xFF));
+    }
+  }
+
+  /**
+   * Finds the first free range of sectors with the given length, or places
+   * the range at the end of the file.
+   */
+  private int allocate(int sectors) {
+    int start = used.nextClearBit(2);
+    while (start < fileSectors) {
+      int end = used.nextSetBit(start);
+      if (end < 0 || end - start >= sectors) {
+        break;
+      }
+      start = used.nextClearBit(end);
+    }
+    used.set(start, start + sectors);
+    fileSectors = Math.max(fileSectors, start + sectors);
+    return start;
+  }
+
+  private void setHeader(int index, int location, int timestamp) throws IOException {
+    locations[index] = location;
+    timestamps[index] = timestamp;
+    ByteBuffer entry = ByteBuffer.allocate(4);
+    entry.putInt(0, location);
+    writeFully(entry, 4L * index);
+    entry.clear();
+    entry.putInt(0, timestamp);
+    writeFully(entry, SECTOR_SIZE + 4L * index);
+  }
+
+  /**
+   * The file for chunk data stored outside the region file. X and Z in the
+   * file name are world chunk coordinates, computed from the region file name.
+   *
+   * @return {@code null} if the region file name does not have the region
+   * coordinates
+   */
+  private File externalFile(int x, int z) {
+    Matcher matcher = RegionFile.REGION_NAME.matcher(file.getName());
+    if (!matcher.matches()) {
+      return null;
+    }
+    int chunkX = Integer.parseInt(matcher.group(1)) * 32 + (x & 31);
+    int chunkZ = Integer.parseInt(matcher.group(2)) * 32 + (z & 31);
+    return new File(file.getParentFile(), "c." + chunkX + "." + chunkZ + ".mcc");
+  }
+
+  private static byte[] bytes(ByteBuffer data) {
+    byte[] bytes = new byte[data.remaining()];
+    data.duplicate().get(bytes);
+    return bytes;
+  }
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int n = channel.read(buffer, position);
+      if (n < 0) {
+        // Sectors past the end of the file read as zeros.
+        break;
+      }
+      position += n;
+    }
+  }
+
+  private void writeFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+}
@@ -32,22 +32,61 @@ package se.llbit.nbt;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 
 public class ShortTag extends SpecificTag {
+  private static final int CACHE_LOW = -128;
+  private static final int CACHE_HIGH = 1023;
+  private static final ShortTag[] CACHE = new ShortTag[CACHE_HIGH - CACHE_LOW + 1];
+
+  static {
+    for (int i = 0; i < CACHE.length; ++i) {
+      CACHE[i] = new ShortTag((short) (i + CACHE_LOW));
+    }
+  }
+
   public final short value;
 
+  /**
+   * Returns a tag with the given value. Shared instances are returned for
+   * values in the range -128 to 1023.
+   */
+  public static ShortTag valueOf(short value) {
+    if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+      return CACHE[value - CACHE_LOW];
+    }
+    return new ShortTag(value);
+  }
+
   public static SpecificTag read(DataInputStream in) {
     try {
-      return new ShortTag(in.readShort());
+      return valueOf(in.readShort());
     } catch (IOException e) {
       return new ErrorTag("IOException while reading TAG_Short:\n" + e.getMessage());
     }
   }
 
+  static SpecificTag read(ByteBuffer in) {
+    try {
+      return valueOf(in.getShort());
+    } catch (BufferUnderflowException e) {
+      return new ErrorTag("Unexpected end of data while reading TAG_Short");
+    }
+  }
+
   @Override public void write(DataOutputStream out) throws IOException {
     out.writeShort(getData());
   }
 
+  @Override public long serializedSize() {
+    return 2;
+  }
+
+  @Override public long estimatedHeapBytes() {
+    return HeapSize.object(2);
+  }
+
   public ShortTag(short value) {
     this.value = value;
   }
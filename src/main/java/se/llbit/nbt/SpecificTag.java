@@ -31,7 +31,10 @@ package se.llbit.nbt;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 
 /**
  * Specific tags are all types of tags that can appear explicitly in an NBT file.
@@ -39,7 +42,43 @@ import java.io.IOException;
  * <p>The only non-sepcific tag is the named tag, which is an implicit construct.
  */
 public abstract class SpecificTag extends Tag {
+  /**
+   * Target for data that is read just to be discarded. The contents are
+   * never used, so it is safe to share between threads.
+   */
+  private static final byte[] SKIP_BUFFER = new byte[4096];
+
+  /**
+   * Reads a tag payload of the given type from the input stream.
+   *
+   * <p>Compound and list tags nested deeper than
+   * {@link Tag#DEFAULT_MAX_DEPTH} levels are not parsed, an error tag is
+   * returned instead.
+   */
   public static SpecificTag read(byte type, DataInputStream in) {
+    return TagParser.read(type, in, DEFAULT_MAX_DEPTH);
+  }
+
+  /**
+   * Reads a tag payload of the given type from the input stream.
+   *
+   * @param maxDepth the maximum nesting depth of compound and list tags
+   * @return the parsed tag, or an error tag if the data can not be parsed or
+   * is nested deeper than {@code maxDepth} levels
+   */
+  public static SpecificTag read(byte type, DataInputStream in, int maxDepth) {
+    return TagParser.read(type, in, maxDepth);
+  }
+
+  static SpecificTag read(byte type, ByteBuffer in) {
+    return TagParser.read(type, in, DEFAULT_MAX_DEPTH);
+  }
+
+  /**
+   * Reads the payload of a tag that is not a compound or list tag. The length
+   * of array tags is checked against the budget.
+   */
+  static SpecificTag readLeaf(byte type, DataInputStream in, TagParser.Budget budget) {
     switch (type) {
       case Tag.TAG_BYTE:
         return ByteTag.read(in);
@@ -54,70 +93,201 @@ public abstract class SpecificTag extends Tag {
       case Tag.TAG_DOUBLE:
         return DoubleTag.read(in);
       case Tag.TAG_BYTE_ARRAY:
-        return ByteArrayTag.read(in);
+        return ByteArrayTag.read(in, budget);
       case Tag.TAG_STRING:
         return StringTag.read(in);
-      case Tag.TAG_LIST:
-        return ListTag.read(in);
-      case Tag.TAG_COMPOUND:
-        return CompoundTag.read(in);
       case Tag.TAG_INT_ARRAY:
-        return IntArrayTag.read(in);
+        return IntArrayTag.read(in, budget);
       case Tag.TAG_LONG_ARRAY:
-        return LongArrayTag.read(in);
+        return LongArrayTag.read(in, budget);
       default:
         return new ErrorTag("Unknown tag type: " + type);
     }
   }
 
+  static SpecificTag readLeaf(byte type, ByteBuffer in, TagParser.Budget budget) {
+    switch (type) {
+      case Tag.TAG_BYTE:
+        return ByteTag.read(in);
+      case Tag.TAG_SHORT:
+        return ShortTag.read(in);
+      case Tag.TAG_INT:
+        return IntTag.read(in);
+      case Tag.TAG_LONG:
+        return LongTag.read(in);
+      case Tag.TAG_FLOAT:
+        return FloatTag.read(in);
+      case Tag.TAG_DOUBLE:
+        return DoubleTag.read(in);
+      case Tag.TAG_BYTE_ARRAY:
+        return ByteArrayTag.read(in, budget);
+      case Tag.TAG_STRING:
+        return StringTag.read(in);
+      case Tag.TAG_INT_ARRAY:
+        return IntArrayTag.read(in, budget);
+      case Tag.TAG_LONG_ARRAY:
+        return LongArrayTag.read(in, budget);
+      default:
+        return new ErrorTag("Unknown tag type: " + type);
+    }
+  }
+
+  /**
+   * Test if this tag can contain other tags. The size of containers is not cached
+   * by their parent since the content of a container can change.
+   */
+  static boolean isContainer(SpecificTag tag) {
+    return tag instanceof CompoundTag || tag instanceof ListTag;
+  }
+
   public void writeType(DataOutputStream out) throws IOException {
     out.writeByte(tagType());
   }
 
   /**
    * Skip the specific tag type in the input stream.
+   *
+   * <p>All bytes of the tag are skipped, even if the underlying input stream
+   * skips fewer bytes than requested.
+   *
+   * @throws EOFException if the end of the input is reached before the end of the tag
+   * @throws IOException if the tag type is unknown, the tag is nested deeper
+   * than {@link Tag#DEFAULT_MAX_DEPTH} levels, or the input can not be read
+   */
+  public static void skip(byte type, DataInputStream in) throws IOException {
+    TagParser.skip(type, in, DEFAULT_MAX_DEPTH);
+  }
+
+  /**
+   * Skip the specific tag type in the input stream.
+   *
+   * @param maxDepth the maximum nesting depth of compound and list tags
+   * @throws EOFException if the end of the input is reached before the end of the tag
+   * @throws IOException if the tag type is unknown, the tag is nested deeper
+   * than {@code maxDepth} levels, or the input can not be read
    */
-  static void skip(byte type, DataInputStream in) {
-    try {
-      switch (type) {
-        case Tag.TAG_BYTE:
-          in.skipBytes(1);
-          break;
-        case Tag.TAG_SHORT:
-          in.skipBytes(2);
-          break;
-        case Tag.TAG_INT:
-          in.skipBytes(4);
-          break;
-        case Tag.TAG_LONG:
-          in.skipBytes(8);
-          break;
-        case Tag.TAG_FLOAT:
-          in.skipBytes(4);
-          break;
-        case Tag.TAG_DOUBLE:
-          in.skipBytes(8);
-          break;
-        case Tag.TAG_BYTE_ARRAY:
-          ByteArrayTag.skip(in);
-          break;
-        case Tag.TAG_STRING:
-          StringTag.skip(in);
-          break;
-        case Tag.TAG_LIST:
-          ListTag.skip(in);
-          break;
-        case Tag.TAG_COMPOUND:
-          CompoundTag.skip(in);
-          break;
-        case Tag.TAG_INT_ARRAY:
-          IntArrayTag.skip(in);
-          break;
-        case Tag.TAG_LONG_ARRAY:
-          LongArrayTag.skip(in);
-          break;
+  public static void skip(byte type, DataInputStream in, int maxDepth) throws IOException {
+    TagParser.skip(type, in, maxDepth);
+  }
+
+  /**
+   * Skip a tag that is not a compound or list tag.
+   */
+  static void skipLeaf(byte type, DataInputStream in) throws IOException {
+    switch (type) {
+      case Tag.TAG_BYTE_ARRAY:
+        ByteArrayTag.skip(in);
+        break;
+      case Tag.TAG_STRING:
+        StringTag.skip(in);
+        break;
+      case Tag.TAG_INT_ARRAY:
+        IntArrayTag.skip(in);
+        break;
+      case Tag.TAG_LONG_ARRAY:
+        LongArrayTag.skip(in);
+        break;
+      default:
+        int size = fixedSize(type);
+        if (size == 0) {
+          throw new IOException("Unknown tag type: " + type);
+        }
+        skipFully(in, size);
+        break;
+    }
+  }
+
+  /**
+   * Skip exactly {@code count} bytes in the input stream.
+   *
+   * <p>{@link DataInputStream#skipBytes} may skip fewer bytes than requested,
+   * for example for compressed streams. This method keeps skipping until done,
+   * and falls back to reading into a discard buffer when the stream makes no
+   * progress.
+   *
+   * @throws EOFException if the end of the input is reached first
+   */
+  static void skipFully(DataInputStream in, long count) throws IOException {
+    while (count > 0) {
+      int skipped = in.skipBytes((int) Math.min(count, Integer.MAX_VALUE));
+      if (skipped <= 0) {
+        skipped = in.read(SKIP_BUFFER, 0, (int) Math.min(count, SKIP_BUFFER.length));
+        if (skipped < 0) {
+          throw new EOFException();
+        }
       }
-    } catch (IOException e) {
+      count -= skipped;
+    }
+  }
+
+  /**
+   * Skip the specific tag type in the buffer.
+   *
+   * @throws BufferUnderflowException if the tag extends past the end of the
+   * buffer
+   * @throws NbtLimitException if the tag is nested deeper than
+   * {@link Tag#DEFAULT_MAX_DEPTH} levels
+   * @throws IOException if the tag type is unknown
+   */
+  static void skip(byte type, ByteBuffer in) throws IOException {
+    TagParser.skip(type, in, DEFAULT_MAX_DEPTH);
+  }
+
+  static void skipLeaf(byte type, ByteBuffer in) throws IOException {
+    switch (type) {
+      case Tag.TAG_BYTE_ARRAY:
+        ByteArrayTag.skip(in);
+        break;
+      case Tag.TAG_STRING:
+        StringTag.skip(in);
+        break;
+      case Tag.TAG_INT_ARRAY:
+        IntArrayTag.skip(in);
+        break;
+      case Tag.TAG_LONG_ARRAY:
+        LongArrayTag.skip(in);
+        break;
+      default:
+        int size = fixedSize(type);
+        if (size == 0) {
+          throw new IOException("Unknown tag type: " + type);
+        }
+        skipBytes(in, size);
+        break;
+    }
+  }
+
+  /**
+   * Advance the buffer position by {@code count} bytes.
+   *
+   * @throws BufferUnderflowException if there are not enough bytes remaining
+   */
+  static void skipBytes(ByteBuffer in, long count) {
+    if (count < 0 || count > in.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    in.position(in.position() + (int) count);
+  }
+
+  /**
+   * Gives the payload size of tag types that have a fixed size.
+   *
+   * @return the number of bytes used by the tag type, or 0 if the size is variable
+   */
+  static int fixedSize(int type) {
+    switch (type) {
+      case Tag.TAG_BYTE:
+        return 1;
+      case Tag.TAG_SHORT:
+        return 2;
+      case Tag.TAG_INT:
+      case Tag.TAG_FLOAT:
+        return 4;
+      case Tag.TAG_LONG:
+      case Tag.TAG_DOUBLE:
+        return 8;
+      default:
+        return 0;
     }
   }
 
@@ -130,5 +300,13 @@ public abstract class SpecificTag extends Tag {
     return node;
   }
 
+  @Override public SpecificTag freeze() {
+    return this;
+  }
+
+  @Override public SpecificTag copy() {
+    return this;
+  }
+
   public abstract int tagType();
 }
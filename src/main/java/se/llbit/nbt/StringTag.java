@@ -32,37 +32,223 @@ package se.llbit.nbt;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 public class StringTag extends SpecificTag {
   // TODO: make value non-null.
   public final String value;
 
+  /** Scratch buffers larger than this are not kept for reuse. */
+  private static final int MAX_SCRATCH_SIZE = 8192;
+
+  /** Per-thread scratch buffers for reading and decoding strings. */
+  private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+    @Override protected Scratch initialValue() {
+      return new Scratch();
+    }
+  };
+
   public static SpecificTag read(DataInputStream in) {
     try {
-      // NB: This is not exactly following the minecraft.net spec
-      // since the string length is there specified to be a two
-      // bytes unsigned integer, but readUTF uses readUnsignedShort
-      // for the string length.
-      return new StringTag(in.readUTF());
+      return new StringTag(readString(in));
     } catch (IOException e) {
       return new ErrorTag("IOException while reading TAG_String:\n" + e.getMessage());
     }
   }
 
+  static SpecificTag read(ByteBuffer in) {
+    try {
+      return new StringTag(readString(in));
+    } catch (BufferUnderflowException e) {
+      return new ErrorTag("Unexpected end of data while reading TAG_String");
+    } catch (UTFDataFormatException e) {
+      return new ErrorTag("IOException while reading TAG_String:\n" + e.getMessage());
+    }
+  }
+
+  /**
+   * Reads a length-prefixed modified UTF-8 string from the stream.
+   * The string length is read as an unsigned short, like
+   * {@link DataInputStream#readUTF()} does.
+   */
+  static String readString(DataInputStream in) throws IOException {
+    int length = in.readUnsignedShort();
+    byte[] bytes = SCRATCH.get().bytes(length);
+    in.readFully(bytes, 0, length);
+    return decodeUTF(bytes, 0, length);
+  }
+
+  /**
+   * Reads a length-prefixed modified UTF-8 string from the buffer.
+   */
+  static String readString(ByteBuffer in) throws UTFDataFormatException {
+    int length = in.getShort() & 0xFFFF;
+    if (length > in.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    if (in.hasArray()) {
+      int position = in.position();
+      String value = decodeUTF(in.array(), in.arrayOffset() + position, length);
+      in.position(position + length);
+      return value;
+    } else {
+      byte[] bytes = SCRATCH.get().bytes(length);
+      in.get(bytes, 0, length);
+      return decodeUTF(bytes, 0, length);
+    }
+  }
+
+  /**
+   * Reads a compound item name from the stream, using the default
+   * {@link NameTable}.
+   */
+  static String readName(DataInputStream in) throws IOException {
+    int length = in.readUnsignedShort();
+    byte[] bytes = SCRATCH.get().bytes(length);
+    in.readFully(bytes, 0, length);
+    return NameTable.getDefault().name(bytes, 0, length);
+  }
+
+  /**
+   * Reads a compound item name from the buffer, using the default
+   * {@link NameTable}.
+   */
+  static String readName(ByteBuffer in) throws UTFDataFormatException {
+    int length = in.getShort() & 0xFFFF;
+    if (length > in.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    byte[] bytes;
+    int offset;
+    if (in.hasArray()) {
+      bytes = in.array();
+      offset = in.arrayOffset() + in.position();
+      in.position(in.position() + length);
+    } else {
+      bytes = SCRATCH.get().bytes(length);
+      offset = 0;
+      in.get(bytes, 0, length);
+    }
+    return NameTable.getDefault().name(bytes, offset, length);
+  }
+
+  /**
+   * Decodes a modified UTF-8 string, in the format used by
+   * {@link java.io.DataInput#readUTF()}.
+   *
+   * <p>Strings that are only ASCII are decoded as ISO-8859-1, which copies the
+   * bytes directly into the string. Other strings are decoded through a
+   * per-thread scratch buffer.
+   */
+  static String decodeUTF(byte[] bytes, int offset, int length) throws UTFDataFormatException {
+    int end = offset + length;
+    int i = offset;
+    while (i < end && bytes[i] >= 0) {
+      i += 1;
+    }
+    if (i == end) {
+      return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+    }
+    char[] chars = SCRATCH.get().chars(length);
+    int count = 0;
+    for (int j = offset; j < i; ++j) {
+      chars[count++] = (char) bytes[j];
+    }
+    while (i < end) {
+      int c = bytes[i] & 0xFF;
+      if (c < 0x80) {
+        chars[count++] = (char) c;
+        i += 1;
+      } else if ((c & 0xE0) == 0xC0) {
+        if (i + 1 >= end || (bytes[i + 1] & 0xC0) != 0x80) {
+          throw new UTFDataFormatException("malformed input around byte " + (i - offset));
+        }
+        chars[count++] = (char) (((c & 0x1F) << 6) | (bytes[i + 1] & 0x3F));
+        i += 2;
+      } else if ((c & 0xF0) == 0xE0) {
+        if (i + 2 >= end || (bytes[i + 1] & 0xC0) != 0x80 || (bytes[i + 2] & 0xC0) != 0x80) {
+          throw new UTFDataFormatException("malformed input around byte " + (i - offset));
+        }
+        chars[count++] = (char) (((c & 0x0F) << 12)
+            | ((bytes[i + 1] & 0x3F) << 6)
+            | (bytes[i + 2] & 0x3F));
+        i += 3;
+      } else {
+        throw new UTFDataFormatException("malformed input around byte " + (i - offset));
+      }
+    }
+    return new String(chars, 0, count);
+  }
+
   @Override public void write(DataOutputStream out) throws IOException {
     write(out, value);
   }
 
+  @Override public long serializedSize() {
+    return serializedSize(value);
+  }
+
+  @Override public long estimatedHeapBytes() {
+    return HeapSize.object(HeapSize.REFERENCE) + HeapSize.string(value);
+  }
+
+  /**
+   * Gives the number of bytes used to write a string, including the
+   * length prefix.
+   */
+  static long serializedSize(String value) {
+    long size = 2;
+    for (int i = 0; i < value.length(); ++i) {
+      char c = value.charAt(i);
+      if (c != 0 && c < 0x80) {
+        size += 1;
+      } else if (c < 0x800) {
+        size += 2;
+      } else {
+        size += 3;
+      }
+    }
+    return size;
+  }
+
+  private static final class Scratch {
+    private byte[] bytes = new byte[256];
+    private char[] chars = new char[256];
+
+    byte[] bytes(int length) {
+      if (length <= bytes.length) {
+        return bytes;
+      } else if (length > MAX_SCRATCH_SIZE) {
+        return new byte[length];
+      }
+      bytes = new byte[length];
+      return bytes;
+    }
+
+    char[] chars(int length) {
+      if (length <= chars.length) {
+        return chars;
+      } else if (length > MAX_SCRATCH_SIZE) {
+        return new char[length];
+      }
+      chars = new char[length];
+      return chars;
+    }
+  }
+
   static void write(DataOutputStream out, String data) throws IOException {
     out.writeUTF(data);
   }
 
-  static void skip(DataInputStream in) {
-    try {
-      short length = in.readShort();
-      in.skipBytes(length);
-    } catch (IOException e) {
-    }
+  static void skip(DataInputStream in) throws IOException {
+    SpecificTag.skipFully(in, in.readUnsignedShort());
+  }
+
+  static void skip(ByteBuffer in) {
+    SpecificTag.skipBytes(in, in.getShort() & 0xFFFF);
   }
 
   public StringTag(String value) {
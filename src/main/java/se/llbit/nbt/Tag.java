@@ -31,6 +31,7 @@ package se.llbit.nbt;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Collections;
 
 /**
@@ -55,9 +56,11 @@ public abstract class Tag {
   public static final int TAG_INT_ARRAY = 11;
   public static final int TAG_LONG_ARRAY = 12; // Added in Minecraft 1.13.
 
-  private static final ListTag EMPTY_LIST =
-      new ListTag(Tag.TAG_END, Collections.<SpecificTag>emptyList());
-  private static final CompoundTag EMPTY_COMPOUND = new CompoundTag();
+  /**
+   * The default maximum nesting depth of compound and list tags when
+   * parsing or skipping tags. Minecraft itself limits the depth to 512.
+   */
+  public static final int DEFAULT_MAX_DEPTH = 512;
 
   protected Tag() {
   }
@@ -82,6 +85,43 @@ public abstract class Tag {
 
   public abstract String tagName();
 
+  /**
+   * @return the name of the tag type with the given ID, as given by
+   * {@link #tagName()} for tags of that type
+   */
+  static String typeName(int type) {
+    switch (type) {
+      case TAG_END:
+        return "TAG_End";
+      case TAG_BYTE:
+        return "TAG_Byte";
+      case TAG_SHORT:
+        return "TAG_Short";
+      case TAG_INT:
+        return "TAG_Int";
+      case TAG_LONG:
+        return "TAG_Long";
+      case TAG_FLOAT:
+        return "TAG_Float";
+      case TAG_DOUBLE:
+        return "TAG_Double";
+      case TAG_BYTE_ARRAY:
+        return "TAG_Byte_Array";
+      case TAG_STRING:
+        return "TAG_String";
+      case TAG_LIST:
+        return "TAG_List";
+      case TAG_COMPOUND:
+        return "TAG_Compound";
+      case TAG_INT_ARRAY:
+        return "TAG_Int_Array";
+      case TAG_LONG_ARRAY:
+        return "TAG_Long_Array";
+      default:
+        return "TAG_Unknown(" + type + ")";
+    }
+  }
+
   public boolean isError() {
     return false;
   }
@@ -134,6 +174,73 @@ public abstract class Tag {
 
   public abstract void write(DataOutputStream out) throws IOException;
 
+  /**
+   * Gives the number of bytes that {@link #write(DataOutputStream)} writes
+   * for this tag, without writing it.
+   *
+   * <p>Compound and list tags cache the size of their items, except for
+   * nested compound and list tags, so after a change in a large tree the
+   * size is recomputed by visiting only the compound and list tags.
+   */
+  public long serializedSize() {
+    final long[] size = { 0 };
+    OutputStream counter = new OutputStream() {
+      @Override public void write(int b) {
+        size[0] += 1;
+      }
+
+      @Override public void write(byte[] bytes, int offset, int length) {
+        size[0] += length;
+      }
+    };
+    try {
+      write(new DataOutputStream(counter));
+    } catch (IOException e) {
+      throw new Error(e); // Not thrown by the counting stream.
+    }
+    return size[0];
+  }
+
+  /**
+   * Gives an estimate of the heap memory used by this tag and its children,
+   * in bytes.
+   *
+   * <p>The estimate includes the tag objects, the item storage of compound
+   * and list tags, names, strings and arrays. It assumes a 64-bit JVM with
+   * compressed object references and compact strings. Shared objects, such
+   * as cached small numeric tags, names from a {@link NameTable}, and items
+   * shared by copy-on-write copies, are counted each time they occur.
+   *
+   * <p>Like {@link #serializedSize()}, compound and list tags cache the
+   * estimate for their items, except for nested compound and list tags.
+   */
+  public long estimatedHeapBytes() {
+    return HeapSize.object(0);
+  }
+
+  /**
+   * Gives an immutable version of this tag which can be shared between
+   * threads without synchronization.
+   *
+   * <p>Compound and list tags return a frozen copy of the tree. Other tags
+   * can not be modified and return themselves, but note that the arrays in
+   * array tags are not copied and can still be modified.
+   */
+  public Tag freeze() {
+    return this;
+  }
+
+  /**
+   * Gives a copy of this tag which can be modified without changing this tag.
+   *
+   * <p>Compound tags are copied on write, see {@link CompoundTag#copy()}.
+   * Other tags can not be modified and return themselves, but note that the
+   * arrays in array tags are not copied.
+   */
+  public Tag copy() {
+    return this;
+  }
+
   public String toString() {
     return tagName() + extraInfo();
   }
@@ -291,16 +398,16 @@ public abstract class Tag {
   }
 
   /**
-   * Returns this tag if it is a list tag, otherwise an empty list.
+   * Returns this tag if it is a list tag, otherwise a new empty list.
    */
   public ListTag asList() {
-    return EMPTY_LIST;
+    return new ListTag(Tag.TAG_END, Collections.<SpecificTag>emptyList());
   }
 
   /**
-   * Returns this tag if it is a list tag, otherwise an empty list.
+   * Returns this tag if it is a compound tag, otherwise a new empty compound.
    */
   public CompoundTag asCompound() {
-    return EMPTY_COMPOUND;
+    return new CompoundTag();
   }
 }
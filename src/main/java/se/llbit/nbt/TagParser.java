@@ -0,0 +1,653 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import java.io.DataInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Parses and skips compound and list tags with an explicit stack instead
+ * of recursion, so that deeply nested data can not overflow the call stack.
+ *
+ * <p>Data that is nested deeper than the maximum depth is rejected. The
+ * depth counts the compound and list tags that contain a tag, including
+ * the tag itself if it is a compound or list tag.
+ *
+ * <p>The parser enforces {@link ReadLimits}, see {@link Budget}.
+ */
+final class TagParser {
+  private TagParser() { }
+
+  /**
+   * Keeps track of the resources used while parsing one tag, and checks them
+   * against the read limits.
+   *
+   * <p>Leaf tag readers check array lengths with
+   * {@link #allowArray(int, int)} before allocating the array. Limits that
+   * are exceeded inside a leaf tag reader, or while reading from the limited
+   * input stream, are recorded and the reader returns an error tag. The
+   * parser then throws the recorded exception from {@link #check()}.
+   */
+  static final class Budget {
+    final ReadLimits limits;
+    private long nodes = 0;
+    private LimitedInputStream counter = null;
+    private ByteBuffer buffer = null;
+    private int start;
+    private NbtLimitException failure = null;
+
+    Budget(ReadLimits limits) {
+      this.limits = limits;
+    }
+
+    /**
+     * Wraps the input stream to count the bytes read, if the number of bytes
+     * is limited.
+     */
+    DataInputStream wrap(DataInputStream in) {
+      if (limits.maxBytes() == Long.MAX_VALUE) {
+        return in;
+      }
+      counter = new LimitedInputStream(in, this);
+      return new DataInputStream(counter);
+    }
+
+    /** Starts counting the bytes read from the buffer. */
+    void start(ByteBuffer in) {
+      buffer = in;
+      start = in.position();
+    }
+
+    long remainingBytes() {
+      if (counter != null) {
+        return limits.maxBytes() - counter.count;
+      }
+      if (buffer != null) {
+        return limits.maxBytes() - (buffer.position() - start);
+      }
+      return Long.MAX_VALUE;
+    }
+
+    /** Records an exceeded limit. */
+    NbtLimitException fail(String message) {
+      if (failure == null) {
+        failure = new NbtLimitException(message);
+      }
+      return failure;
+    }
+
+    /** Gives an error tag for the recorded exceeded limit. */
+    ErrorTag error() {
+      return new ErrorTag(failure.getMessage());
+    }
+
+    /**
+     * Throws the recorded exception, if a limit has been exceeded.
+     */
+    void check() throws NbtLimitException {
+      if (buffer != null && buffer.position() - start > limits.maxBytes()) {
+        fail("Tag exceeds the limit of " + limits.maxBytes() + " bytes");
+      }
+      if (failure != null) {
+        throw failure;
+      }
+    }
+
+    /**
+     * Checks the length of an array tag before the array is allocated.
+     *
+     * @return {@code false} if the array exceeds a limit
+     */
+    boolean allowArray(int type, int length) {
+      if (length > limits.maxArrayLength()) {
+        fail(tagName(type) + " length " + length + " exceeds the limit of "
+            + limits.maxArrayLength());
+        return false;
+      }
+      if ((long) length * SpecificTag.fixedSize(elementType(type)) > remainingBytes()) {
+        fail(tagName(type) + " of length " + length + " exceeds the limit of "
+            + limits.maxBytes() + " bytes");
+        return false;
+      }
+      return true;
+    }
+
+    /**
+     * Checks the length of an array tag before the array is allocated.
+     *
+     * @throws NbtLimitException if the array exceeds a limit
+     */
+    void checkArray(int type, int length) throws NbtLimitException {
+      if (!allowArray(type, length)) {
+        throw failure;
+      }
+    }
+
+    /**
+     * Checks the size of a list tag before the items are parsed.
+     *
+     * @param itemSize the minimum size of each item, in bytes
+     */
+    void checkList(int numItems, int itemSize) throws NbtLimitException {
+      if (numItems > limits.maxListSize()) {
+        throw fail("TAG_List size " + numItems + " exceeds the limit of "
+            + limits.maxListSize());
+      }
+      if ((long) numItems * itemSize > remainingBytes()) {
+        throw fail("TAG_List of size " + numItems + " exceeds the limit of "
+            + limits.maxBytes() + " bytes");
+      }
+    }
+
+    void addNodes(long count) throws NbtLimitException {
+      nodes += count;
+      if (nodes > limits.maxNodes()) {
+        throw fail("Tag count exceeds the limit of " + limits.maxNodes());
+      }
+    }
+
+    private static int elementType(int arrayType) {
+      switch (arrayType) {
+        case Tag.TAG_INT_ARRAY:
+          return Tag.TAG_INT;
+        case Tag.TAG_LONG_ARRAY:
+          return Tag.TAG_LONG;
+        default:
+          return Tag.TAG_BYTE;
+      }
+    }
+
+    private static String tagName(int arrayType) {
+      switch (arrayType) {
+        case Tag.TAG_INT_ARRAY:
+          return "TAG_Int_Array";
+        case Tag.TAG_LONG_ARRAY:
+          return "TAG_Long_Array";
+        default:
+          return "TAG_Byte_Array";
+      }
+    }
+  }
+
+  /**
+   * Counts the bytes read, and fails when more than the maximum number of
+   * bytes are read.
+   */
+  private static final class LimitedInputStream extends FilterInputStream {
+    private final Budget budget;
+    long count = 0;
+
+    LimitedInputStream(InputStream in, Budget budget) {
+      super(in);
+      this.budget = budget;
+    }
+
+    private NbtLimitException exceeded() {
+      return budget.fail("Tag exceeds the limit of " + budget.limits.maxBytes() + " bytes");
+    }
+
+    @Override public int read() throws IOException {
+      if (budget.remainingBytes() <= 0) {
+        throw exceeded();
+      }
+      int b = super.read();
+      if (b >= 0) {
+        count += 1;
+      }
+      return b;
+    }
+
+    @Override public int read(byte[] b, int off, int len) throws IOException {
+      long remaining = budget.remainingBytes();
+      if (len > 0 && remaining <= 0) {
+        throw exceeded();
+      }
+      int n = super.read(b, off, (int) Math.min(len, remaining));
+      if (n > 0) {
+        count += n;
+      }
+      return n;
+    }
+
+    @Override public long skip(long n) throws IOException {
+      long skipped = super.skip(Math.min(n, budget.remainingBytes()));
+      count += skipped;
+      return skipped;
+    }
+
+    @Override public boolean markSupported() {
+      return false;
+    }
+  }
+
+  /** A compound or list tag that is being parsed. */
+  private static final class Frame {
+    final CompoundTag compound;
+    final ListTag list;
+    final byte itemType;
+    int remaining;
+
+    /** The name of the compound item that is being parsed. */
+    String name;
+
+    Frame(CompoundTag compound) {
+      this.compound = compound;
+      this.list = null;
+      this.itemType = Tag.TAG_END;
+    }
+
+    Frame(ListTag list, byte itemType, int remaining) {
+      this.compound = null;
+      this.list = list;
+      this.itemType = itemType;
+      this.remaining = remaining;
+    }
+
+    void add(SpecificTag item) {
+      if (compound != null) {
+        compound.add(new NamedTag(name, item));
+      } else {
+        list.add(item);
+        remaining -= 1;
+      }
+    }
+  }
+
+  private static final class Stack {
+    private Frame[] frames = new Frame[8];
+    private int size = 0;
+    private final int maxDepth;
+
+    Stack(int maxDepth) {
+      this.maxDepth = maxDepth;
+    }
+
+    void push(Frame frame) {
+      if (size == frames.length) {
+        frames = Arrays.copyOf(frames, size * 2);
+      }
+      frames[size++] = frame;
+    }
+
+    void checkDepth(Budget budget) throws NbtLimitException {
+      if (size >= maxDepth) {
+        throw budget.fail(depthError(maxDepth));
+      }
+    }
+
+    Frame top() {
+      return size > 0 ? frames[size - 1] : null;
+    }
+
+    void pop() {
+      frames[--size] = null;
+    }
+  }
+
+  static String depthError(int maxDepth) {
+    return "Maximum nesting depth of " + maxDepth + " exceeded";
+  }
+
+  /**
+   * Reads a tag payload of the given type from the stream.
+   *
+   * @return the parsed tag, or an error tag if the data is malformed or
+   * nested deeper than the maximum depth
+   */
+  static SpecificTag read(byte type, DataInputStream in, int maxDepth) {
+    try {
+      return read(type, in, new Budget(ReadLimits.DEFAULT.withMaxDepth(maxDepth)));
+    } catch (NbtLimitException e) {
+      return new ErrorTag(e.getMessage());
+    }
+  }
+
+  /**
+   * Reads a tag payload of the given type from a stream which has been
+   * wrapped by {@link Budget#wrap}.
+   *
+   * @return the parsed tag, or an error tag if the data is malformed
+   * @throws NbtLimitException if the data exceeds the read limits
+   */
+  static SpecificTag read(byte type, DataInputStream in, Budget budget)
+      throws NbtLimitException {
+    Stack stack = new Stack(budget.limits.maxDepth());
+    SpecificTag value = start(type, in, stack, budget);
+    while (true) {
+      budget.check();
+      Frame top = stack.top();
+      if (value != null) {
+        budget.addNodes(1);
+        if (top == null) {
+          return value;
+        }
+        top.add(value);
+        value = null;
+      }
+      if (top.compound != null) {
+        byte itemType;
+        try {
+          itemType = in.readByte();
+        } catch (IOException e) {
+          // An error ends the compound tag, like TAG_End.
+          itemType = Tag.TAG_END;
+        }
+        if (itemType == Tag.TAG_END) {
+          value = top.compound;
+          stack.pop();
+        } else {
+          top.name = NamedTag.readName(in);
+          value = start(itemType, in, stack, budget);
+        }
+      } else if (top.remaining == 0) {
+        value = top.list;
+        stack.pop();
+      } else {
+        value = start(top.itemType, in, stack, budget);
+      }
+    }
+  }
+
+  /**
+   * Reads a tag payload. For compound tags and non-empty lists of compound or
+   * list tags a frame is pushed on the stack, and null is returned.
+   */
+  private static SpecificTag start(byte type, DataInputStream in, Stack stack, Budget budget)
+      throws NbtLimitException {
+    switch (type) {
+      case Tag.TAG_COMPOUND:
+        stack.checkDepth(budget);
+        stack.push(new Frame(new CompoundTag()));
+        return null;
+      case Tag.TAG_LIST:
+        stack.checkDepth(budget);
+        try {
+          byte itemType = in.readByte();
+          int numItems = in.readInt();
+          if (itemType == Tag.TAG_END && numItems > 0) {
+            return new ErrorTag("Cannot create list of TAG_End");
+          }
+          PrimitiveList values = PrimitiveList.create(itemType);
+          if (values != null) {
+            if (numItems > 0) {
+              budget.checkList(numItems, SpecificTag.fixedSize(itemType));
+              budget.addNodes(numItems);
+              values.read(in, numItems);
+            }
+            return new ListTag(values);
+          }
+          ListTag list = new ListTag(itemType, Collections.<SpecificTag>emptyList());
+          if (numItems <= 0) {
+            return list;
+          }
+          budget.checkList(numItems, 1);
+          stack.push(new Frame(list, itemType, numItems));
+          return null;
+        } catch (NbtLimitException e) {
+          throw e;
+        } catch (IOException e) {
+          return new ErrorTag("IOException while reading TAG_List:\n" + e.getMessage());
+        }
+      default:
+        return SpecificTag.readLeaf(type, in, budget);
+    }
+  }
+
+  /**
+   * Reads a tag payload of the given type from the buffer.
+   *
+   * @return the parsed tag, or an error tag if the data is malformed or
+   * nested deeper than the maximum depth
+   */
+  static SpecificTag read(byte type, ByteBuffer in, int maxDepth) {
+    try {
+      Budget budget = new Budget(ReadLimits.DEFAULT.withMaxDepth(maxDepth));
+      budget.start(in);
+      return read(type, in, budget);
+    } catch (NbtLimitException e) {
+      return new ErrorTag(e.getMessage());
+    }
+  }
+
+  /**
+   * Reads a tag payload of the given type from the buffer. Bytes are counted
+   * from the position given to {@link Budget#start}.
+   *
+   * @return the parsed tag, or an error tag if the data is malformed
+   * @throws NbtLimitException if the data exceeds the read limits
+   */
+  static SpecificTag read(byte type, ByteBuffer in, Budget budget) throws NbtLimitException {
+    Stack stack = new Stack(budget.limits.maxDepth());
+    SpecificTag value = start(type, in, stack, budget);
+    while (true) {
+      budget.check();
+      Frame top = stack.top();
+      if (value != null) {
+        budget.addNodes(1);
+        if (top == null) {
+          return value;
+        }
+        top.add(value);
+        value = null;
+      }
+      if (top.compound != null) {
+        byte itemType = in.hasRemaining() ? in.get() : Tag.TAG_END;
+        if (itemType == Tag.TAG_END) {
+          value = top.compound;
+          stack.pop();
+        } else {
+          top.name = NamedTag.readName(in);
+          value = start(itemType, in, stack, budget);
+        }
+      } else if (top.remaining == 0) {
+        value = top.list;
+        stack.pop();
+      } else {
+        value = start(top.itemType, in, stack, budget);
+      }
+    }
+  }
+
+  private static SpecificTag start(byte type, ByteBuffer in, Stack stack, Budget budget)
+      throws NbtLimitException {
+    switch (type) {
+      case Tag.TAG_COMPOUND:
+        stack.checkDepth(budget);
+        stack.push(new Frame(new CompoundTag()));
+        return null;
+      case Tag.TAG_LIST:
+        stack.checkDepth(budget);
+        try {
+          byte itemType = in.get();
+          int numItems = in.getInt();
+          if (itemType == Tag.TAG_END && numItems > 0) {
+            return new ErrorTag("Cannot create list of TAG_End");
+          }
+          if (numItems > in.remaining()) {
+            // Each item takes at least one byte.
+            return new ErrorTag("Unexpected end of data while reading TAG_List");
+          }
+          PrimitiveList values = PrimitiveList.create(itemType);
+          if (values != null) {
+            if (numItems > 0) {
+              budget.checkList(numItems, SpecificTag.fixedSize(itemType));
+              budget.addNodes(numItems);
+              values.read(in, numItems);
+            }
+            return new ListTag(values);
+          }
+          ListTag list = new ListTag(itemType, Collections.<SpecificTag>emptyList());
+          if (numItems <= 0) {
+            return list;
+          }
+          budget.checkList(numItems, 1);
+          stack.push(new Frame(list, itemType, numItems));
+          return null;
+        } catch (BufferUnderflowException e) {
+          return new ErrorTag("Unexpected end of data while reading TAG_List");
+        }
+      default:
+        return SpecificTag.readLeaf(type, in, budget);
+    }
+  }
+
+  /**
+   * Skips a tag payload of the given type in the stream.
+   *
+   * @throws NbtLimitException if the data is nested deeper than the maximum
+   * depth
+   * @throws IOException if the tag type is unknown, or the input can not be
+   * read
+   */
+  static void skip(byte type, DataInputStream in, int maxDepth) throws IOException {
+    // The open compound and list tags. Compounds have the item type TAG_End.
+    byte[] itemTypes = new byte[8];
+    int[] remaining = new int[8];
+    int depth = 0;
+    while (true) {
+      if (type == Tag.TAG_COMPOUND || type == Tag.TAG_LIST) {
+        if (depth >= maxDepth) {
+          throw new NbtLimitException(depthError(maxDepth));
+        }
+        byte itemType = Tag.TAG_END;
+        int numItems = 0;
+        if (type == Tag.TAG_LIST) {
+          itemType = in.readByte();
+          numItems = in.readInt();
+          int itemSize = SpecificTag.fixedSize(itemType);
+          if (itemSize > 0 && numItems > 0) {
+            SpecificTag.skipFully(in, (long) numItems * itemSize);
+            numItems = 0;
+          }
+        }
+        if (type == Tag.TAG_COMPOUND || (itemType != Tag.TAG_END && numItems > 0)) {
+          if (depth == itemTypes.length) {
+            itemTypes = Arrays.copyOf(itemTypes, depth * 2);
+            remaining = Arrays.copyOf(remaining, depth * 2);
+          }
+          itemTypes[depth] = itemType;
+          remaining[depth] = numItems;
+          depth += 1;
+        }
+      } else {
+        SpecificTag.skipLeaf(type, in);
+      }
+      // Find the next tag to skip.
+      while (true) {
+        if (depth == 0) {
+          return;
+        }
+        if (itemTypes[depth - 1] == Tag.TAG_END) {
+          type = in.readByte();
+          if (type != Tag.TAG_END) {
+            StringTag.skip(in);
+            break;
+          }
+          depth -= 1;
+        } else if (remaining[depth - 1] > 0) {
+          remaining[depth - 1] -= 1;
+          type = itemTypes[depth - 1];
+          break;
+        } else {
+          depth -= 1;
+        }
+      }
+    }
+  }
+
+  /**
+   * Skips a tag payload of the given type in the buffer.
+   *
+   * @throws BufferUnderflowException if the tag extends past the end of the
+   * buffer
+   * @throws NbtLimitException if the data is nested deeper than the maximum
+   * depth
+   * @throws IOException if the tag type is unknown
+   */
+  static void skip(byte type, ByteBuffer in, int maxDepth) throws IOException {
+    byte[] itemTypes = new byte[8];
+    int[] remaining = new int[8];
+    int depth = 0;
+    while (true) {
+      if (type == Tag.TAG_COMPOUND || type == Tag.TAG_LIST) {
+        if (depth >= maxDepth) {
+          throw new NbtLimitException(depthError(maxDepth));
+        }
+        byte itemType = Tag.TAG_END;
+        int numItems = 0;
+        if (type == Tag.TAG_LIST) {
+          itemType = in.get();
+          numItems = in.getInt();
+          int itemSize = SpecificTag.fixedSize(itemType);
+          if (itemSize > 0 && numItems > 0) {
+            SpecificTag.skipBytes(in, (long) numItems * itemSize);
+            numItems = 0;
+          }
+        }
+        if (type == Tag.TAG_COMPOUND || (itemType != Tag.TAG_END && numItems > 0)) {
+          if (depth == itemTypes.length) {
+            itemTypes = Arrays.copyOf(itemTypes, depth * 2);
+            remaining = Arrays.copyOf(remaining, depth * 2);
+          }
+          itemTypes[depth] = itemType;
+          remaining[depth] = numItems;
+          depth += 1;
+        }
+      } else {
+        SpecificTag.skipLeaf(type, in);
+      }
+      while (true) {
+        if (depth == 0) {
+          return;
+        }
+        if (itemTypes[depth - 1] == Tag.TAG_END) {
+          type = in.get();
+          if (type != Tag.TAG_END) {
+            StringTag.skip(in);
+            break;
+          }
+          depth -= 1;
+        } else if (remaining[depth - 1] > 0) {
+          remaining[depth - 1] -= 1;
+          type = itemTypes[depth - 1];
+          break;
+        } else {
+          depth -= 1;
+        }
+      }
+    }
+  }
+}
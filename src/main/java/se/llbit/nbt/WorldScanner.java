@@ -0,0 +1,285 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+
+/**
+ * Decodes all chunks in a directory of region files in parallel.
+ *
+ * <p>Each chunk is decompressed and parsed in a task on an executor, and
+ * the result is passed to a callback in the same task. The callback
+ * is therefore called concurrently from multiple threads.
+ *
+ * <p>The number of chunks that have been submitted but not yet handled is
+ * bounded, so that the memory used by a scan does not depend on the size of
+ * the world. The scanning thread blocks while the limit is reached.
+ *
+ * <p>A scan returns, or fails, only after all submitted tasks have finished,
+ * so the callback is never called after the scan has ended.
+ */
+public class WorldScanner {
+  /**
+   * Receives decoded chunks.
+   *
+   * @param <T> the type of the decoded chunk
+   */
+  public interface ChunkCallback<T> {
+    /**
+     * Called for each chunk in the world.
+     *
+     * @param chunkX the world X coordinate of the chunk
+     * @param chunkZ the world Z coordinate of the chunk
+     * @param chunk the decoded chunk
+     * @throws IOException to stop the scan with an error
+     */
+    void chunk(int chunkX, int chunkZ, T chunk) throws IOException;
+  }
+
+  private interface Decoder<T> {
+    T decode(ByteBuffer data) throws IOException;
+  }
+
+  private final ExecutorService executor;
+  private final int maxInFlight;
+
+  /**
+   * Creates a scanner that uses a new thread pool with one thread per
+   * available processor for each scan.
+   */
+  public WorldScanner() {
+    this(null, 4 * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Creates a scanner that runs tasks on the given executor. The executor
+   * is not shut down by the scanner.
+   *
+   * @param executor the executor to run decoding tasks on, for example a
+   * {@link java.util.concurrent.ForkJoinPool}
+   * @param maxInFlight the maximum number of chunks being decoded or waiting
+   * to be decoded at the same time
+   */
+  public WorldScanner(ExecutorService executor, int maxInFlight) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("At least one chunk must be allowed in flight");
+    }
+    this.executor = executor;
+    this.maxInFlight = maxInFlight;
+  }
+
+  /**
+   * Parses all chunks in the region files of a directory.
+   *
+   * @param regionDirectory a directory containing .mca region files
+   * @param callback receives the root tag of each chunk. Parse errors are
+   * passed to the callback as error tags.
+   * @throws IOException if a region file or chunk could not be read, or if
+   * the callback failed. The scan stops at the first error.
+   * @throws InterruptedException if the scanning thread was interrupted
+   */
+  public void scan(File regionDirectory, ChunkCallback<Tag> callback)
+      throws IOException, InterruptedException {
+    scan(regionDirectory, new Decoder<Tag>() {
+      @Override public Tag decode(ByteBuffer data) {
+        return NamedTag.read(data);
+      }
+    }, callback);
+  }
+
+  /**
+   * Runs a query on all chunks in the region files of a directory.
+   *
+   * @param regionDirectory a directory containing .mca region files
+   * @param query the query to run on each chunk
+   * @param callback receives the query result for each chunk
+   * @throws IOException if a region file or chunk could not be read, or if
+   * the callback failed. The scan stops at the first error.
+   * @throws InterruptedException if the scanning thread was interrupted
+   */
+  public void scan(File regionDirectory, final NbtQuery query,
+      ChunkCallback<Map<String, Tag>> callback) throws IOException, InterruptedException {
+    scan(regionDirectory, new Decoder<Map<String, Tag>>() {
+      @Override public Map<String, Tag> decode(ByteBuffer data) throws IOException {
+        ByteArrayInputStream in;
+        if (data.hasArray()) {
+          in = new ByteArrayInputStream(data.array(), data.arrayOffset() + data.position(),
+              data.remaining());
+        } else {
+          byte[] bytes = new byte[data.remaining()];
+          data.get(bytes);
+          in = new ByteArrayInputStream(bytes);
+        }
+        return query.parse(new DataInputStream(in));
+      }
+    }, callback);
+  }
+
+  /**
+   * Lists the region files in a directory, sorted by name.
+   */
+  static List<File> regionFiles(File directory) throws IOException {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      throw new IOException("Can not list region directory " + directory);
+    }
+    List<File> regions = new ArrayList<>();
+    for (File file : files) {
+      if (file.getName().endsWith(".mca")
+          && RegionFile.REGION_NAME.matcher(file.getName()).matches()) {
+        regions.add(file);
+      }
+    }
+    Collections.sort(regions);
+    return regions;
+  }
+
+  private <T> void scan(File regionDirectory, final Decoder<T> decoder,
+      final ChunkCallback<T> callback) throws IOException, InterruptedException {
+    List<File> regions = regionFiles(regionDirectory);
+    ExecutorService executor = this.executor;
+    if (executor == null) {
+      executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+    final Semaphore inFlight = new Semaphore(maxInFlight);
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    try {
+      for (File file : regions) {
+        Matcher matcher = RegionFile.REGION_NAME.matcher(file.getName());
+        matcher.matches();
+        int regionX = Integer.parseInt(matcher.group(1));
+        int regionZ = Integer.parseInt(matcher.group(2));
+        final RegionFile region = new RegionFile(file);
+        // One extra reference held while submitting, so that the region is
+        // not closed before all of its chunks have been submitted.
+        final AtomicInteger references = new AtomicInteger(1);
+        try {
+          for (int z = 0; z < 32 && failure.get() == null; ++z) {
+            for (int x = 0; x < 32 && failure.get() == null; ++x) {
+              if (!region.hasChunk(x, z)) {
+                continue;
+              }
+              final int localX = x;
+              final int localZ = z;
+              final int chunkX = regionX * 32 + x;
+              final int chunkZ = regionZ * 32 + z;
+              inFlight.acquire();
+              references.incrementAndGet();
+              Runnable task = new Runnable() {
+                @Override public void run() {
+                  try {
+                    if (failure.get() == null) {
+                      ByteBuffer data = region.readChunkData(localX, localZ);
+                      callback.chunk(chunkX, chunkZ, decoder.decode(data));
+                    }
+                  } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                  } finally {
+                    release(region, references, failure);
+                    inFlight.release();
+                  }
+                }
+              };
+              try {
+                executor.execute(task);
+              } catch (RejectedExecutionException e) {
+                references.decrementAndGet();
+                inFlight.release();
+                throw new IOException("Chunk decoding task was rejected", e);
+              }
+            }
+          }
+        } finally {
+          release(region, references, failure);
+        }
+        if (failure.get() != null) {
+          break;
+        }
+      }
+    } catch (Throwable e) {
+      // Submitted tasks see the failure and skip the callback.
+      failure.compareAndSet(null, e);
+    } finally {
+      if (executor != this.executor && failure.get() != null) {
+        // Tasks that never started are run here, to release their permits.
+        for (Runnable task : executor.shutdownNow()) {
+          task.run();
+        }
+      }
+      // Wait for the remaining tasks, so that the callback is not called
+      // after the scan has ended. The interrupt flag is kept if the thread is
+      // interrupted while waiting.
+      inFlight.acquireUninterruptibly(maxInFlight);
+      inFlight.release(maxInFlight);
+      if (executor != this.executor) {
+        executor.shutdown();
+      }
+    }
+    Throwable error = failure.get();
+    if (error instanceof InterruptedException) {
+      throw (InterruptedException) error;
+    } else if (error instanceof IOException) {
+      throw (IOException) error;
+    } else if (error instanceof RuntimeException) {
+      throw (RuntimeException) error;
+    } else if (error instanceof Error) {
+      throw (Error) error;
+    } else if (error != null) {
+      throw new IOException(error);
+    }
+  }
+
+  /** Closes the region file when the last reference is released. */
+  private static void release(RegionFile region, AtomicInteger references,
+      AtomicReference<Throwable> failure) {
+    if (references.decrementAndGet() == 0) {
+      try {
+        region.close();
+      } catch (IOException e) {
+        failure.compareAndSet(null, e);
+      }
+    }
+  }
+}
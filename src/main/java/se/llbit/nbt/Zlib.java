@@ -0,0 +1,303 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Zlib and gzip compression with pooled inflaters and deflaters.
+ *
+ * <p>Inflaters and deflaters hold native zlib state that is only released
+ * by {@code end()} or finalization. Reusing them avoids the native
+ * allocation per chunk, and the finalization backlog this causes when
+ * decoding many small chunks.
+ */
+final class Zlib {
+  private static final int POOL_SIZE = 2 * Runtime.getRuntime().availableProcessors();
+
+  /** Limit for trusting the uncompressed size stored in gzip trailers. */
+  private static final int MAX_SIZE_HINT = 1 << 26;
+
+  /** The largest array size that can be allocated on common JVMs. */
+  static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+  private static final int GZIP_MAGIC = 0x8B1F;
+  private static final int FHCRC = 2;
+  private static final int FEXTRA = 4;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+
+  /** Pooled inflaters for zlib data (index 0) and raw deflate data (index 1). */
+  private static final BlockingQueue<Inflater>[] INFLATERS = pools(2);
+
+  private static final BlockingQueue<Deflater>[] DEFLATERS = pools(2);
+
+  private Zlib() { }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static <T> BlockingQueue<T>[] pools(int count) {
+    BlockingQueue<T>[] pools = new BlockingQueue[count];
+    for (int i = 0; i < count; ++i) {
+      pools[i] = new ArrayBlockingQueue<T>(POOL_SIZE);
+    }
+    return pools;
+  }
+
+  private static Inflater inflater(boolean nowrap) {
+    Inflater inflater = INFLATERS[nowrap ? 1 : 0].poll();
+    return inflater != null ? inflater : new Inflater(nowrap);
+  }
+
+  private static void release(Inflater inflater, boolean nowrap) {
+    inflater.reset();
+    if (!INFLATERS[nowrap ? 1 : 0].offer(inflater)) {
+      inflater.end();
+    }
+  }
+
+  private static Deflater deflater(boolean nowrap) {
+    Deflater deflater = DEFLATERS[nowrap ? 1 : 0].poll();
+    return deflater != null ? deflater : new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap);
+  }
+
+  private static void release(Deflater deflater, boolean nowrap) {
+    deflater.reset();
+    if (!DEFLATERS[nowrap ? 1 : 0].offer(deflater)) {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Decompresses zlib data.
+   *
+   * @return a buffer holding the decompressed data
+   * @throws NbtLimitException if the decompressed data is larger than
+   * {@code maxSize}
+   */
+  static ByteBuffer inflate(byte[] data, int offset, int length, int maxSize)
+      throws IOException {
+    Inflater inflater = inflater(false);
+    try {
+      return inflate(inflater, data, offset, length, initialSize(length), maxSize);
+    } finally {
+      release(inflater, false);
+    }
+  }
+
+  /**
+   * Decompresses the first member of gzip data. The CRC and size stored in
+   * the gzip trailer are checked.
+   *
+   * @return a buffer holding the decompressed data
+   * @throws NbtLimitException if the decompressed data is larger than
+   * {@code maxSize}
+   */
+  static ByteBuffer gunzip(byte[] data, int offset, int length, int maxSize)
+      throws IOException {
+    int end = offset + length;
+    if (length < 18 || readShortLE(data, offset) != GZIP_MAGIC || data[offset + 2] != 8) {
+      throw new IOException("Not in gzip format");
+    }
+    int flags = data[offset + 3] & 0xFF;
+    int pos = offset + 10;
+    if ((flags & FEXTRA) != 0) {
+      pos += 2 + readShortLE(data, pos);
+    }
+    if ((flags & FNAME) != 0) {
+      pos = skipString(data, pos, end);
+    }
+    if ((flags & FCOMMENT) != 0) {
+      pos = skipString(data, pos, end);
+    }
+    if ((flags & FHCRC) != 0) {
+      pos += 2;
+    }
+    if (pos + 8 > end) {
+      throw new IOException("Unexpected end of gzip data");
+    }
+    // The trailer of the last member gives a size hint.
+    int sizeHint = readIntLE(data, end - 4);
+    if (sizeHint <= 0 || sizeHint > MAX_SIZE_HINT) {
+      sizeHint = initialSize(length);
+    }
+    Inflater inflater = inflater(true);
+    ByteBuffer result;
+    int trailer;
+    try {
+      result = inflate(inflater, data, pos, end - pos, sizeHint, maxSize);
+      trailer = end - inflater.getRemaining();
+    } finally {
+      release(inflater, true);
+    }
+    if (trailer + 8 > end) {
+      throw new IOException("Unexpected end of gzip data");
+    }
+    CRC32 crc = new CRC32();
+    crc.update(result.array(), 0, result.limit());
+    if (readIntLE(data, trailer) != (int) crc.getValue()
+        || readIntLE(data, trailer + 4) != result.limit()) {
+      throw new IOException("Corrupt gzip data: checksum or size mismatch");
+    }
+    return result;
+  }
+
+  private static void checkInput(Inflater inflater) throws IOException {
+    if (!inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+      throw new IOException("Unexpected end of compressed data");
+    }
+  }
+
+  /** The initial output buffer size for compressed data of the given length. */
+  private static int initialSize(int length) {
+    return (int) Math.min(Math.max(length * 4L, 64), MAX_SIZE_HINT);
+  }
+
+  /**
+   * Decompresses data with the inflater. The output buffer starts at the
+   * size hint and doubles when it is full, but never grows past
+   * {@code maxSize}, so highly compressed data can not exhaust the heap.
+   */
+  private static ByteBuffer inflate(Inflater inflater, byte[] data, int offset, int length,
+      int sizeHint, int maxSize) throws IOException {
+    maxSize = Math.min(maxSize, MAX_ARRAY_SIZE);
+    try {
+      inflater.setInput(data, offset, length);
+      byte[] buffer = new byte[Math.min(sizeHint, maxSize)];
+      int count = 0;
+      while (!inflater.finished()) {
+        if (count == buffer.length) {
+          if (count == maxSize) {
+            // Data of exactly the maximum size is accepted.
+            if (inflater.inflate(new byte[1]) > 0) {
+              throw new NbtLimitException("Decompressed data exceeds " + maxSize + " bytes");
+            }
+            checkInput(inflater);
+            continue;
+          }
+          buffer = Arrays.copyOf(buffer, (int) Math.min(Math.max(count * 2L, 64), maxSize));
+        }
+        int n = inflater.inflate(buffer, count, buffer.length - count);
+        if (n == 0) {
+          checkInput(inflater);
+        }
+        count += n;
+      }
+      return ByteBuffer.wrap(buffer, 0, count);
+    } catch (DataFormatException e) {
+      throw new IOException("Corrupt compressed data: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Compresses data in zlib format.
+   *
+   * @return a buffer holding the compressed data
+   */
+  static ByteBuffer deflate(byte[] data, int offset, int length) {
+    Deflater deflater = deflater(false);
+    try {
+      return deflate(deflater, data, offset, length, new byte[length / 2 + 64], 0);
+    } finally {
+      release(deflater, false);
+    }
+  }
+
+  /**
+   * Compresses data in gzip format.
+   *
+   * @return a buffer holding the compressed data
+   */
+  static ByteBuffer gzip(byte[] data, int offset, int length) {
+    byte[] buffer = new byte[length / 2 + 64];
+    buffer[0] = (byte) 0x1F;
+    buffer[1] = (byte) 0x8B;
+    buffer[2] = 8; // Deflate compression.
+    // Flags, modification time, extra flags and OS are left as zero.
+    Deflater deflater = deflater(true);
+    ByteBuffer result;
+    try {
+      result = deflate(deflater, data, offset, length, buffer, 10);
+    } finally {
+      release(deflater, true);
+    }
+    CRC32 crc = new CRC32();
+    crc.update(data, offset, length);
+    int count = result.limit();
+    buffer = Arrays.copyOf(result.array(), count + 8);
+    writeIntLE(buffer, count, (int) crc.getValue());
+    writeIntLE(buffer, count + 4, length);
+    return ByteBuffer.wrap(buffer);
+  }
+
+  private static ByteBuffer deflate(Deflater deflater, byte[] data, int offset, int length,
+      byte[] buffer, int start) {
+    deflater.setInput(data, offset, length);
+    deflater.finish();
+    int count = start;
+    while (!deflater.finished()) {
+      if (count == buffer.length) {
+        buffer = Arrays.copyOf(buffer, (int) Math.min(buffer.length * 2L, MAX_ARRAY_SIZE));
+      }
+      count += deflater.deflate(buffer, count, buffer.length - count);
+    }
+    return ByteBuffer.wrap(buffer, 0, count);
+  }
+
+  private static int skipString(byte[] data, int pos, int end) {
+    while (pos < end && data[pos] != 0) {
+      pos += 1;
+    }
+    return pos + 1;
+  }
+
+  private static int readShortLE(byte[] data, int pos) {
+    return (data[pos] & 0xFF) | (data[pos + 1] & 0xFF) << 8;
+  }
+
+  private static void writeIntLE(byte[] data, int pos, int value) {
+    data[pos] = (byte) value;
+    data[pos + 1] = (byte) (value >> 8);
+    data[pos + 2] = (byte) (value >> 16);
+    data[pos + 3] = (byte) (value >> 24);
+  }
+
+  static int readIntLE(byte[] data, int pos) {
+    return (data[pos] & 0xFF) | (data[pos + 1] & 0xFF) << 8
+        | (data[pos + 2] & 0xFF) << 16 | (data[pos + 3] & 0xFF) << 24;
+  }
+}
@@ -30,7 +30,9 @@
 package se.llbit.nbt;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -65,4 +67,37 @@ final class FileUtils {
   public static DataInputStream openGzipInputStream(String filename) throws IOException {
     return new DataInputStream(new GZIPInputStream(openInputStream(filename)));
   }
+
+  /** Serializes a tag using {@link Tag#write(java.io.DataOutputStream)}. */
+  public static byte[] serialize(Tag tag) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      tag.write(out);
+    }
+    return bytes.toByteArray();
+  }
+
+  /** Reads the uncompressed contents of a gzipped file. */
+  public static byte[] readGzippedBytes(String filename) throws IOException {
+    try (InputStream in = openGzipInputStream(filename)) {
+      return readBytes(in);
+    }
+  }
+
+  /** Reads the contents of a file. */
+  public static byte[] readBytes(String filename) throws IOException {
+    try (InputStream in = openInputStream(filename)) {
+      return readBytes(in);
+    }
+  }
+
+  private static byte[] readBytes(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int len;
+    while ((len = in.read(buffer)) != -1) {
+      out.write(buffer, 0, len);
+    }
+    return out.toByteArray();
+  }
 }
@@ -0,0 +1,142 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestBufferParsing {
+  private static Tag readStream(byte[] data) {
+    return NamedTag.read(new DataInputStream(new ByteArrayInputStream(data)));
+  }
+
+  /** Parsing from a buffer gives the same result as parsing from a stream. */
+  @Test public void testLevelDat() throws IOException {
+    byte[] data = FileUtils.readGzippedBytes("testfiles/level.dat");
+    Tag expected = readStream(data);
+    Tag root = NamedTag.read(ByteBuffer.wrap(data));
+    assertEquals(expected, root);
+    assertEquals(expected.dumpTree(), root.dumpTree());
+  }
+
+  @Test public void testChunkDat() throws IOException {
+    byte[] data = FileUtils.readGzippedBytes("testfiles/chunk.dat");
+    assertEquals(readStream(data), NamedTag.read(ByteBuffer.wrap(data)));
+  }
+
+  @Test public void testDirectBuffer() throws IOException {
+    byte[] data = FileUtils.readGzippedBytes("testfiles/chunk.dat");
+    ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+    buffer.put(data);
+    buffer.flip();
+    assertEquals(readStream(data), NamedTag.read(buffer));
+    assertEquals(data.length, buffer.position());
+  }
+
+  /** The buffer byte order is ignored. */
+  @Test public void testLittleEndianBuffer() throws IOException {
+    Tag tag = new NamedTag("", new CompoundTag(Arrays.asList(
+        new NamedTag("i", new IntTag(0x01020304)),
+        new NamedTag("l", new LongArrayTag(new long[] { 1, -2, Long.MAX_VALUE })),
+        new NamedTag("d", new DoubleTag(1.5)))));
+    ByteBuffer buffer = ByteBuffer.wrap(FileUtils.serialize(tag)).order(ByteOrder.LITTLE_ENDIAN);
+    assertEquals(tag, NamedTag.read(buffer));
+    assertEquals(buffer.limit(), buffer.position());
+    assertEquals(ByteOrder.LITTLE_ENDIAN, buffer.order());
+  }
+
+  /** Parse data stored at an offset in an array. */
+  @Test public void testArrayOffset() throws IOException {
+    Tag tag = new NamedTag("x", new IntArrayTag(new int[] { 1, 2, 3, -4 }));
+    byte[] data = FileUtils.serialize(tag);
+    byte[] padded = new byte[data.length + 10];
+    System.arraycopy(data, 0, padded, 7, data.length);
+    assertEquals(tag, NamedTag.read(padded, 7, data.length));
+  }
+
+  @Test public void testStrings() throws IOException {
+    String[] strings = {
+        "", "minecraft:stone", "\u0000", "åäö", "€ ÿ ߿ ࠀ ￿",
+        "😀",
+    };
+    for (String string : strings) {
+      Tag tag = new NamedTag(string, new StringTag(string));
+      Tag result = NamedTag.read(ByteBuffer.wrap(FileUtils.serialize(tag)));
+      assertEquals(tag, result);
+      assertEquals(string, result.unpack().stringValue());
+    }
+  }
+
+  @Test public void testEmpty() throws IOException {
+    Tag root = NamedTag.read(ByteBuffer.wrap(FileUtils.readBytes("testfiles/empty.nbt")));
+    assertTrue(root.isError());
+  }
+
+  @Test public void testError1() throws IOException {
+    Tag root = NamedTag.read(ByteBuffer.wrap(FileUtils.readBytes("testfiles/error1.nbt")));
+    assertFalse(root.isError());
+    assertEquals("Unknown tag type: 104", root.unpack().error());
+  }
+
+  /** Malformed list tag that has TAG_End as element type. */
+  @Test public void testError2() throws IOException {
+    Tag root = NamedTag.read(ByteBuffer.wrap(FileUtils.readBytes("testfiles/badlist1.nbt")));
+    assertEquals("Cannot create list of TAG_End", root.unpack().get("BadList").error());
+  }
+
+  /** Malformed compound tag: end of data before item type. */
+  @Test public void testError3() throws IOException {
+    Tag root = NamedTag.read(ByteBuffer.wrap(FileUtils.readBytes("testfiles/badcompound1.nbt")));
+    assertFalse(root.isError());
+    assertEquals(0, root.asCompound().get("BadCompound").asCompound().size());
+  }
+
+  @Test public void testError4() throws IOException {
+    Tag root = NamedTag.read(ByteBuffer.wrap(FileUtils.readBytes("testfiles/badarray2.nbt")));
+    assertTrue(root.asCompound().get("BadIntArray").isError());
+  }
+
+  /** Array length larger than the remaining data. */
+  @Test public void testTruncatedArray() throws IOException {
+    byte[] data = FileUtils.serialize(new NamedTag("", new LongArrayTag(new long[100])));
+    Tag root = NamedTag.read(data, 0, data.length - 1);
+    assertEquals("Unexpected end of data while reading TAG_Long_Array", root.unpack().error());
+  }
+}
@@ -0,0 +1,224 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestChunkCache {
+  private static File region(File dir) throws IOException {
+    File file = new File(dir, "r.0.0.mca");
+    TestRegionFile.writeRegion(file, new int[][] {
+        { 0, 0, RegionFile.COMPRESSION_ZLIB },
+        { 1, 0, RegionFile.COMPRESSION_ZLIB },
+        { 2, 0, RegionFile.COMPRESSION_ZLIB },
+    });
+    return file;
+  }
+
+  @Test public void testHits() throws IOException {
+    File dir = TestRegionFile.tempDir();
+    try {
+      ChunkCache cache = new ChunkCache(1 << 20);
+      try (RegionFile region = new RegionFile(region(dir))) {
+        Tag chunk = cache.getChunk(region, 0, 0);
+        assertEquals(region.readChunk(0, 0), chunk);
+        assertTrue(chunk.unpack().asCompound().isFrozen());
+        assertSame(chunk, cache.getChunk(region, 0, 0));
+        assertSame(chunk, cache.getChunk(region, 32, -32));
+        assertNull(cache.getChunk(region, 5, 5));
+        assertEquals(2, cache.hitCount());
+        assertEquals(2, cache.missCount());
+        assertEquals(1, cache.size());
+        assertEquals(chunk.estimatedHeapBytes(), cache.weight());
+
+        cache.invalidate(region.getFile(), 0, 0);
+        assertNotSame(chunk, cache.getChunk(region, 0, 0));
+        cache.invalidate(region.getFile());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+      }
+    } finally {
+      TestRegionFile.delete(dir);
+    }
+  }
+
+  /** The least recently used chunks are evicted. */
+  @Test public void testEviction() throws IOException {
+    File dir = TestRegionFile.tempDir();
+    try {
+      try (RegionFile region = new RegionFile(region(dir))) {
+        long chunkWeight = region.readChunk(0, 0).freeze().estimatedHeapBytes();
+        ChunkCache cache = new ChunkCache(2 * chunkWeight);
+        Tag chunk0 = cache.getChunk(region, 0, 0);
+        cache.getChunk(region, 1, 0);
+        cache.getChunk(region, 0, 0);
+        cache.getChunk(region, 2, 0); // Evicts chunk 1.
+        assertEquals(1, cache.evictionCount());
+        assertEquals(2, cache.size());
+        assertTrue(cache.weight() <= cache.maxWeight());
+        assertSame(chunk0, cache.getChunk(region, 0, 0));
+        long misses = cache.missCount();
+        cache.getChunk(region, 1, 0);
+        assertEquals(misses + 1, cache.missCount());
+
+        // Chunks larger than the cache are not cached.
+        ChunkCache small = new ChunkCache(chunkWeight - 1);
+        small.getChunk(region, 0, 0);
+        assertEquals(0, small.size());
+      }
+    } finally {
+      TestRegionFile.delete(dir);
+    }
+  }
+
+  /** A cached chunk is parsed again when its timestamp changes. */
+  @Test public void testTimestampChange() throws IOException {
+    File dir = TestRegionFile.tempDir();
+    try {
+      File file = region(dir);
+      ChunkCache cache = new ChunkCache(1 << 20);
+      try (RegionFile region = new RegionFile(file)) {
+        cache.getChunk(region, 1, 0);
+      }
+      CompoundTag changed = new CompoundTag();
+      changed.add("changed", new IntTag(1));
+      try (RegionFileWriter writer = new RegionFileWriter(file)) {
+        writer.writeChunk(1, 0, new NamedTag("", changed));
+      }
+      try (RegionFile region = new RegionFile(file)) {
+        assertEquals(1, cache.getChunk(region, 1, 0).unpack().get("changed").intValue());
+        assertEquals(2, cache.missCount());
+        assertEquals(1, cache.size());
+      }
+    } finally {
+      TestRegionFile.delete(dir);
+    }
+  }
+
+  private static void writeChunk(File file, int value, int timestamp) throws IOException {
+    CompoundTag chunk = new CompoundTag();
+    chunk.add("value", new IntTag(value));
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      new NamedTag("", chunk).write(out);
+    }
+    byte[] data = bytes.toByteArray();
+    try (RegionFileWriter writer = new RegionFileWriter(file)) {
+      writer.writeChunkData(0, 0, Compression.ZLIB.compress(data, 0, data.length),
+          Compression.ZLIB, timestamp);
+    }
+  }
+
+  /** Rewrites within the same second are detected by the chunk checksum. */
+  @Test public void testSameTimestamp() throws IOException {
+    File dir = TestRegionFile.tempDir();
+    try {
+      File file = new File(dir, "r.0.0.mca");
+      ChunkCache cache = new ChunkCache(1 << 20);
+      writeChunk(file, 1, 1000);
+      try (RegionFile region = new RegionFile(file)) {
+        assertEquals(1, cache.getChunk(region, 0, 0).unpack().get("value").intValue());
+      }
+      writeChunk(file, 2, 1000);
+      try (RegionFile region = new RegionFile(file)) {
+        assertEquals(2, cache.getChunk(region, 0, 0).unpack().get("value").intValue());
+        assertEquals(2, cache.getChunk(region, 0, 0).unpack().get("value").intValue());
+      }
+    } finally {
+      TestRegionFile.delete(dir);
+    }
+  }
+
+  /**
+   * A chunk rewritten twice within the same second can be stored in the
+   * same sectors as the cached version.
+   */
+  @Test public void testSameSectors() throws IOException {
+    File dir = TestRegionFile.tempDir();
+    try {
+      File file = new File(dir, "r.0.0.mca");
+      ChunkCache cache = new ChunkCache(1 << 20);
+      writeChunk(file, 1, 1000);
+      long checksum;
+      try (RegionFile region = new RegionFile(file)) {
+        assertEquals(1, cache.getChunk(region, 0, 0).unpack().get("value").intValue());
+        checksum = region.getChecksum(0, 0);
+      }
+      writeChunk(file, 2, 1000);
+      writeChunk(file, 3, 1000);
+      try (RegionFile region = new RegionFile(file)) {
+        assertNotEquals(checksum, region.getChecksum(0, 0));
+        assertEquals(3, cache.getChunk(region, 0, 0).unpack().get("value").intValue());
+      }
+      writeChunk(file, 1, 1000);
+      try (RegionFile region = new RegionFile(file)) {
+        assertEquals(checksum, region.getChecksum(0, 0));
+        assertEquals(1, cache.getChunk(region, 0, 0).unpack().get("value").intValue());
+      }
+    } finally {
+      TestRegionFile.delete(dir);
+    }
+  }
+
+  /** A chunk read from an older region file does not replace a newer cached chunk. */
+  @Test public void testOlderChunk() throws IOException {
+    File dir = TestRegionFile.tempDir();
+    try {
+      File file = new File(dir, "r.0.0.mca");
+      ChunkCache cache = new ChunkCache(1 << 20);
+      writeChunk(file, 1, 1000);
+      try (RegionFile old = new RegionFile(file)) {
+        writeChunk(file, 2, 2000);
+        try (RegionFile region = new RegionFile(file)) {
+          Tag chunk = cache.getChunk(region, 0, 0);
+          assertEquals(2, chunk.unpack().get("value").intValue());
+          // The old region file still sees the old chunk.
+          assertEquals(1, cache.getChunk(old, 0, 0).unpack().get("value").intValue());
+          assertSame(chunk, cache.getChunk(region, 0, 0));
+          assertEquals(1, cache.hitCount());
+        }
+      }
+    } finally {
+      TestRegionFile.delete(dir);
+    }
+  }
+}
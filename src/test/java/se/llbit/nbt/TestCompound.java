@@ -31,7 +31,18 @@ package se.llbit.nbt;
 
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class TestCompound {
   @Test(expected = Error.class)
@@ -49,4 +60,82 @@ public class TestCompound {
     assertEquals(123, tag.get("bar").unpack().intValue());
     assertEquals(1, tag.size()); // Still only one element in the compound tag.
   }
+
+  /** Items keep their insertion order, also when replaced. */
+  @Test public void testOrder() {
+    for (int size : new int[] { 3, CompoundTag.ItemMap.INDEX_THRESHOLD + 1, 100 }) {
+      CompoundTag tag = new CompoundTag();
+      Map<String, NamedTag> expected = new LinkedHashMap<>();
+      for (int i = 0; i < size; ++i) {
+        NamedTag item = new NamedTag("item" + (i * 7 % size), new IntTag(i));
+        tag.add(item);
+        expected.put(item.name, item);
+      }
+      tag.add("item0", new StringTag("replaced"));
+      expected.put("item0", new NamedTag("item0", new StringTag("replaced")));
+
+      assertEquals(expected.size(), tag.size());
+      List<NamedTag> items = new ArrayList<>();
+      for (NamedTag item : tag) {
+        items.add(item);
+      }
+      assertEquals(new ArrayList<>(expected.values()), items);
+      for (String name : expected.keySet()) {
+        assertEquals(expected.get(name).tag, tag.get(name));
+      }
+      assertTrue(tag.get("missing").isError());
+      assertEquals(expected, tag.items());
+      assertEquals(expected.hashCode(), tag.hashCode());
+    }
+  }
+
+  /** Lookups still work after items are removed. */
+  @Test public void testRemove() {
+    CompoundTag tag = new CompoundTag();
+    for (int i = 0; i < 20; ++i) {
+      tag.add("item" + i, new IntTag(i));
+    }
+    Iterator<NamedTag> iterator = tag.iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().tag.intValue() % 2 == 0) {
+        iterator.remove();
+      }
+    }
+    assertEquals(10, tag.size());
+    for (int i = 0; i < 20; ++i) {
+      assertEquals(i % 2 == 0, tag.get("item" + i).isError());
+    }
+    tag.items().remove("item1");
+    tag.items().remove("item3");
+    assertEquals(8, tag.size());
+    assertFalse(tag.items().containsKey("item3"));
+    assertEquals(19, tag.get("item19").intValue());
+  }
+
+  /** Cached sizes are updated when items are removed. */
+  @Test public void testRemoveUpdatesSize() throws IOException {
+    CompoundTag tag = new CompoundTag();
+    tag.add("a", new IntTag(1));
+    tag.add("b", new StringTag("hello"));
+    long size = tag.serializedSize();
+    long heap = tag.estimatedHeapBytes();
+    NamedTag removed = null;
+    Iterator<NamedTag> iterator = tag.iterator();
+    while (iterator.hasNext()) {
+      NamedTag item = iterator.next();
+      if (item.isNamed("b")) {
+        removed = item;
+        iterator.remove();
+      }
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    tag.write(new DataOutputStream(bytes));
+    assertEquals(bytes.size(), tag.serializedSize());
+    assertEquals(size - removed.serializedSize(), tag.serializedSize());
+    assertEquals(heap - HeapSize.object(2 * HeapSize.REFERENCE) - HeapSize.string("b")
+        - removed.tag.estimatedHeapBytes(), tag.estimatedHeapBytes());
+
+    tag.items().clear();
+    assertEquals(1, tag.serializedSize());
+  }
 }
@@ -0,0 +1,210 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TestCompression {
+  private static byte[] bytes(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int n;
+    while ((n = in.read(buffer)) != -1) {
+      out.write(buffer, 0, n);
+    }
+    return out.toByteArray();
+  }
+
+  @Test public void testGzip() throws IOException {
+    byte[] compressed = FileUtils.readBytes("testfiles/level.dat");
+    byte[] data = FileUtils.readGzippedBytes("testfiles/level.dat");
+    assertEquals(Compression.GZIP, Compression.detect(compressed, 0, compressed.length));
+    assertArrayEquals(data, bytes(Compression.GZIP.decompress(compressed, 0, compressed.length)));
+
+    byte[] gzipped = bytes(Compression.GZIP.compress(data, 0, data.length));
+    assertArrayEquals(data, readAll(new GZIPInputStream(new ByteArrayInputStream(gzipped))));
+    assertArrayEquals(data, bytes(Compression.decompressAny(gzipped, 0, gzipped.length)));
+  }
+
+  @Test public void testZlib() throws IOException {
+    byte[] data = FileUtils.readGzippedBytes("testfiles/chunk.dat");
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DeflaterOutputStream out = new DeflaterOutputStream(bytes)) {
+      out.write(data);
+    }
+    byte[] compressed = bytes.toByteArray();
+    assertEquals(Compression.ZLIB, Compression.detect(compressed, 0, compressed.length));
+    assertArrayEquals(data, bytes(Compression.ZLIB.decompress(compressed, 0, compressed.length)));
+
+    compressed = bytes(Compression.ZLIB.compress(data, 0, data.length));
+    assertArrayEquals(data, readAll(new InflaterInputStream(new ByteArrayInputStream(compressed))));
+    for (int i = 0; i < 10; ++i) {
+      // Reuses pooled inflaters.
+      assertArrayEquals(data, bytes(Compression.decompressAny(compressed, 0, compressed.length)));
+    }
+  }
+
+  @Test public void testNone() throws IOException {
+    byte[] data = FileUtils.readGzippedBytes("testfiles/chunk.dat");
+    assertEquals(Compression.NONE, Compression.detect(data, 0, data.length));
+    assertArrayEquals(data, bytes(Compression.decompressAny(data, 0, data.length)));
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncatedGzip() throws IOException {
+    byte[] compressed = FileUtils.readBytes("testfiles/level.dat");
+    Compression.GZIP.decompress(compressed, 0, compressed.length - 20);
+  }
+
+  @Test(expected = IOException.class)
+  public void testGzipChecksum() throws IOException {
+    byte[] compressed = FileUtils.readBytes("testfiles/level.dat");
+    compressed[compressed.length - 6] ^= 1;
+    Compression.GZIP.decompress(compressed, 0, compressed.length);
+  }
+
+  /** Data of exactly the maximum size is accepted. */
+  @Test public void testMaxSize() throws IOException {
+    byte[] data = new byte[1 << 20];
+    for (Compression compression : new Compression[] { Compression.GZIP, Compression.ZLIB }) {
+      byte[] compressed = bytes(compression.compress(data, 0, data.length));
+      assertArrayEquals(data,
+          bytes(compression.decompress(compressed, 0, compressed.length, data.length)));
+    }
+    byte[] lz4 = lz4Block(0x10, data, data);
+    assertArrayEquals(data, bytes(Compression.LZ4.decompress(lz4, 0, lz4.length, data.length)));
+  }
+
+  /** Highly compressed data is not decompressed past the maximum size. */
+  @Test(expected = NbtLimitException.class)
+  public void testZlibBomb() throws IOException {
+    byte[] data = new byte[1 << 24];
+    byte[] compressed = bytes(Compression.ZLIB.compress(data, 0, data.length));
+    Compression.ZLIB.decompress(compressed, 0, compressed.length, 1 << 20);
+  }
+
+  @Test(expected = NbtLimitException.class)
+  public void testGzipBomb() throws IOException {
+    byte[] data = new byte[1 << 24];
+    byte[] compressed = bytes(Compression.GZIP.compress(data, 0, data.length));
+    Compression.GZIP.decompress(compressed, 0, compressed.length, data.length - 1);
+  }
+
+  @Test(expected = NbtLimitException.class)
+  public void testLz4MaxSize() throws IOException {
+    byte[] expected = "abcdabcdabcdXY".getBytes(StandardCharsets.US_ASCII);
+    byte[] data = lz4Block(0x10, expected, expected);
+    Compression.LZ4.decompress(data, 0, data.length, expected.length - 1);
+  }
+
+  @Test public void testHash32() {
+    byte[] empty = new byte[0];
+    byte[] abc = "abc".getBytes(StandardCharsets.US_ASCII);
+    byte[] text = "Nobody inspects the spammish repetition".getBytes(StandardCharsets.US_ASCII);
+    assertEquals(0x02CC5D05, Lz4Block.hash32(empty, 0, 0, 0));
+    assertEquals(0x32D153FF, Lz4Block.hash32(abc, 0, abc.length, 0));
+    assertEquals(0xE2293B2F, Lz4Block.hash32(text, 0, text.length, 0));
+  }
+
+  private static byte[] lz4Block(int method, byte[] block, byte[] decompressed) {
+    ByteBuffer buffer = ByteBuffer.allocate(2 * 21 + block.length)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    buffer.put(Lz4Block.MAGIC);
+    buffer.put((byte) method);
+    buffer.putInt(block.length);
+    buffer.putInt(decompressed.length);
+    buffer.putInt(Lz4Block.hash32(decompressed, 0, decompressed.length, 0x9747B28C) & 0xFFFFFFF);
+    buffer.put(block);
+    buffer.put(Lz4Block.MAGIC);
+    buffer.put((byte) 0x10);
+    return buffer.array();
+  }
+
+  @Test public void testLz4() throws IOException {
+    byte[] expected = "abcdabcdabcdXY".getBytes(StandardCharsets.US_ASCII);
+    byte[] block = { 0x44, 'a', 'b', 'c', 'd', 4, 0, 0x20, 'X', 'Y' };
+    byte[] data = lz4Block(0x20, block, expected);
+    assertEquals(Compression.LZ4, Compression.detect(data, 0, data.length));
+    assertArrayEquals(expected, bytes(Compression.LZ4.decompress(data, 0, data.length)));
+
+    data = lz4Block(0x10, expected, expected);
+    assertArrayEquals(expected, bytes(Compression.decompressAny(data, 0, data.length)));
+  }
+
+  @Test(expected = IOException.class)
+  public void testLz4Checksum() throws IOException {
+    byte[] expected = "abcdabcdabcdXY".getBytes(StandardCharsets.US_ASCII);
+    byte[] data = lz4Block(0x10, expected, expected);
+    data[21] = 'x';
+    Compression.LZ4.decompress(data, 0, data.length);
+  }
+
+  @Test(expected = IOException.class)
+  public void testLz4BadOffset() throws IOException {
+    byte[] expected = "abcdabcdabcdXY".getBytes(StandardCharsets.US_ASCII);
+    byte[] block = { 0x44, 'a', 'b', 'c', 'd', 9, 0, 0x20, 'X', 'Y' };
+    byte[] data = lz4Block(0x20, block, expected);
+    Compression.LZ4.decompress(data, 0, data.length);
+  }
+
+  /** A huge decompressed length in the header is rejected before allocating. */
+  @Test(expected = IOException.class)
+  public void testLz4HugeLength() throws IOException {
+    byte[] block = { 0x10, 'a' };
+    ByteBuffer data = ByteBuffer.allocate(21 + block.length).order(ByteOrder.LITTLE_ENDIAN);
+    data.put(Lz4Block.MAGIC);
+    data.put((byte) 0x20);
+    data.putInt(block.length);
+    data.putInt(1 << 30);
+    data.putInt(0);
+    data.put(block);
+    Compression.LZ4.decompress(data.array(), 0, data.capacity());
+  }
+}
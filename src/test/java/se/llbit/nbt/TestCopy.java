@@ -0,0 +1,254 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+public class TestCopy {
+  private static CompoundTag tree() {
+    CompoundTag a = new CompoundTag();
+    a.add("x", new IntTag(1));
+    CompoundTag b = new CompoundTag();
+    b.add("y", new IntTag(2));
+    b.add("a", a);
+    CompoundTag root = new CompoundTag();
+    root.add("b", b);
+    root.add("list", new ListTag(Tag.TAG_COMPOUND, Arrays.asList(new CompoundTag())));
+    root.add("ints", new ListTag(new int[] { 1, 2, 3 }));
+    root.add("name", new StringTag("root"));
+    return root;
+  }
+
+  @Test public void testLeafCopy() {
+    SpecificTag tag = new IntTag(3);
+    assertSame(tag, tag.copy());
+    NamedTag named = new NamedTag("x", tag);
+    assertSame(named, named.copy());
+  }
+
+  /** Modifying the copy does not change the original. */
+  @Test public void testModifyCopy() {
+    CompoundTag original = tree();
+    CompoundTag expected = tree();
+    CompoundTag copy = original.copy();
+    assertEquals(original, copy);
+
+    copy.get("b").get("a").asCompound().add("z", new IntTag(3));
+    copy.get("list").get(0).asCompound().add("z", new IntTag(3));
+    copy.get("ints").asList().set(0, new IntTag(7));
+    copy.add("name", new StringTag("copy"));
+    assertEquals(expected, original);
+    assertNotEquals(original, copy);
+    assertEquals(3, copy.get("b").get("a").get("z").intValue());
+    assertEquals(3, copy.get("list").get(0).get("z").intValue());
+    assertEquals(7, copy.get("ints").asList().intAt(0));
+    assertEquals("copy", copy.get("name").stringValue());
+    assertEquals(2, copy.get("b").get("y").intValue());
+  }
+
+  /** Modifying the items of the original does not change the copy. */
+  @Test public void testModifyOriginal() {
+    CompoundTag original = tree();
+    CompoundTag copy = original.copy();
+    original.add("name", new StringTag("changed"));
+    original.add("extra", new IntTag(3));
+    original.items().remove("b");
+    assertEquals(tree(), copy);
+
+    // A copy of a copy.
+    CompoundTag copy2 = copy.copy();
+    copy.get("b").asCompound().add("y", new IntTag(5));
+    assertEquals(tree(), copy2);
+    assertEquals(5, copy.get("b").get("y").intValue());
+  }
+
+  /** Reading the original does not modify it. */
+  @Test public void testReadOriginal() {
+    CompoundTag original = tree();
+    Tag b = original.get("b");
+    CompoundTag copy = original.copy();
+    for (NamedTag item : original) {
+      item.unpack();
+    }
+    assertSame(b, original.get("b"));
+    copy.get("b").asCompound().add("z", new IntTag(3));
+    assertSame(b, original.get("b"));
+    assertEquals(tree(), original);
+  }
+
+  /** The original can be read by other threads while the copy is modified. */
+  @Test public void testConcurrentReads() throws Exception {
+    final CompoundTag original = tree();
+    for (int i = 0; i < 100; ++i) {
+      CompoundTag item = new CompoundTag();
+      item.add("i", new IntTag(i));
+      item.add("list", new ListTag(Tag.TAG_COMPOUND, Arrays.asList(new CompoundTag())));
+      original.add("item" + i, item);
+    }
+    final byte[] expected = FileUtils.serialize(original);
+    final Tag[] children = new Tag[100];
+    for (int i = 0; i < children.length; ++i) {
+      children[i] = original.get("item" + i);
+    }
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    final AtomicBoolean done = new AtomicBoolean();
+    Thread[] readers = new Thread[4];
+    for (int i = 0; i < readers.length; ++i) {
+      readers[i] = new Thread() {
+        @Override public void run() {
+          try {
+            while (!done.get()) {
+              for (int j = 0; j < 100; ++j) {
+                assertSame(children[j], original.get("item" + j));
+                assertEquals(j, original.get("item" + j).get("i").intValue());
+                assertEquals(1, original.get("item" + j).get("list").asList().size());
+              }
+              for (NamedTag item : original) {
+                item.unpack().isCompoundTag();
+              }
+              assertArrayEquals(expected, FileUtils.serialize(original));
+            }
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+      };
+      readers[i].start();
+    }
+    try {
+      for (int i = 0; i < 200; ++i) {
+        CompoundTag copy = original.copy();
+        for (int j = 0; j < 100; j += 3) {
+          CompoundTag item = copy.get("item" + j).asCompound();
+          item.add("i", new IntTag(-1));
+          item.get("list").get(0).asCompound().add("x", new IntTag(j));
+          item.get("list").asList().add(new CompoundTag());
+          copy.items().remove("item" + (j + 1));
+        }
+        for (NamedTag item : copy) {
+          item.unpack().isCompoundTag();
+        }
+      }
+    } finally {
+      done.set(true);
+      for (Thread reader : readers) {
+        reader.join();
+      }
+    }
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+    assertArrayEquals(expected, FileUtils.serialize(original));
+  }
+
+  /** List copies share their items until one of the lists is modified. */
+  @Test public void testListCopy() {
+    CompoundTag item = new CompoundTag();
+    item.add("x", new IntTag(1));
+    ListTag original = new ListTag(Tag.TAG_COMPOUND, Arrays.asList(item, new CompoundTag()));
+    ListTag copy = original.copy();
+    assertEquals(original, copy);
+    assertSame(item, original.get(0));
+
+    copy.get(0).asCompound().add("x", new IntTag(2));
+    copy.add(new CompoundTag());
+    assertSame(item, original.get(0));
+    assertEquals(2, original.size());
+    assertEquals(1, original.get(0).get("x").intValue());
+    assertEquals(2, copy.get(0).get("x").intValue());
+    assertEquals(3, copy.size());
+
+    original.set(1, item);
+    assertEquals(new CompoundTag(), copy.get(1));
+
+    ListTag ints = new ListTag(new int[] { 1, 2, 3 });
+    ListTag intsCopy = ints.copy();
+    intsCopy.set(0, new IntTag(7));
+    ints.add(new IntTag(4));
+    assertEquals(1, ints.intAt(0));
+    assertEquals(4, ints.size());
+    assertEquals(7, intsCopy.intAt(0));
+    assertEquals(3, intsCopy.size());
+  }
+
+  @Test public void testIteration() {
+    CompoundTag original = tree();
+    CompoundTag copy = original.copy();
+    for (NamedTag item : copy) {
+      if (item.tag.isCompoundTag()) {
+        item.tag.asCompound().add("new", new IntTag(1));
+      }
+    }
+    assertEquals(tree(), original);
+    assertEquals(1, copy.get("b").get("new").intValue());
+  }
+
+  @Test public void testFrozenCopy() {
+    CompoundTag frozen = tree().freeze();
+    CompoundTag copy = frozen.copy();
+    assertFalse(copy.isFrozen());
+    assertFalse(copy.get("b").asCompound().isFrozen());
+    assertFalse(copy.get("list").asList().isFrozen());
+    copy.get("b").get("a").asCompound().add("z", new IntTag(3));
+    copy.get("ints").asList().add(new IntTag(4));
+    assertEquals(tree(), frozen);
+    assertEquals(4, copy.get("ints").asList().size());
+  }
+
+  @Test public void testFiles() throws IOException {
+    String[][] files = { { "testfiles/level.dat", "Data" }, { "testfiles/chunk.dat", "Level" } };
+    for (String[] file : files) {
+      byte[] data = FileUtils.readGzippedBytes(file[0]);
+      Tag tree = NamedTag.read(ByteBuffer.wrap(data));
+      Tag copy = tree.copy();
+      assertEquals(tree, copy);
+      assertArrayEquals(data, FileUtils.serialize(copy));
+      assertEquals(data.length, copy.serializedSize());
+      copy.unpack().get(file[1]).asCompound().add("extra", new IntTag(1));
+      assertArrayEquals(data, FileUtils.serialize(tree));
+      assertEquals(data.length + 12, copy.serializedSize());
+
+      Tag lazy = NamedTag.readLazy(ByteBuffer.wrap(data));
+      assertArrayEquals(data, FileUtils.serialize(lazy.copy()));
+    }
+  }
+}
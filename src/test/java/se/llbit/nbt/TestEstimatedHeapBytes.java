@@ -0,0 +1,110 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestEstimatedHeapBytes {
+  @Test public void testLeafTags() {
+    assertEquals(16, new ByteTag(1).estimatedHeapBytes());
+    assertEquals(16, new IntTag(1).estimatedHeapBytes());
+    assertEquals(24, new LongTag(1).estimatedHeapBytes());
+    assertEquals(24, new DoubleTag(1).estimatedHeapBytes());
+    assertEquals(16 + 24 + 24, new StringTag("abc").estimatedHeapBytes());
+    assertEquals(16 + 24 + 24, new StringTag("\u00e5bc").estimatedHeapBytes());
+    assertEquals(16 + 24 + 24, new StringTag("\u263abc").estimatedHeapBytes());
+    assertEquals(16 + 24 + 32, new StringTag("\u263abcdefg").estimatedHeapBytes());
+    assertEquals(16 + 56, new IntArrayTag(new int[10]).estimatedHeapBytes());
+    assertEquals(16 + 96, new LongArrayTag(new long[10]).estimatedHeapBytes());
+    assertEquals(16 + 32, new ByteArrayTag(new byte[10]).estimatedHeapBytes());
+  }
+
+  /** Null strings are not counted. */
+  @Test public void testNullString() {
+    assertEquals(16, new StringTag(null).estimatedHeapBytes());
+    assertEquals(16, new ErrorTag(null).estimatedHeapBytes());
+    CompoundTag root = new CompoundTag();
+    root.add("s", new StringTag(null));
+    CompoundTag other = new CompoundTag();
+    other.add("s", new IntTag(0));
+    assertEquals(other.estimatedHeapBytes(), root.estimatedHeapBytes());
+  }
+
+  /** Cached estimates are updated when the tree changes. */
+  @Test public void testModification() {
+    CompoundTag root = new CompoundTag();
+    CompoundTag nested = new CompoundTag();
+    ListTag strings = new ListTag(Tag.TAG_STRING, Collections.<SpecificTag>emptyList());
+    root.add("nested", nested);
+    root.add("strings", strings);
+    long size = root.estimatedHeapBytes();
+
+    // The named tag, its name, the array tag, and a larger item array.
+    nested.add("x", new IntArrayTag(new int[100]));
+    assertEquals(size + 24 + 48 + 432 + 16, root.estimatedHeapBytes());
+
+    size = root.estimatedHeapBytes();
+    strings.items.add(new StringTag("abc"));
+    assertTrue(root.estimatedHeapBytes() > size + 64);
+    size = root.estimatedHeapBytes();
+    strings.items.set(0, new StringTag("abcdefghijklmnop"));
+    assertEquals(size + 8, root.estimatedHeapBytes());
+  }
+
+  @Test public void testNumericList() {
+    ListTag list = new ListTag(new double[100]);
+    assertEquals(48 + 32 + 816, list.estimatedHeapBytes());
+    assertEquals(list.estimatedHeapBytes(), list.freeze().estimatedHeapBytes());
+  }
+
+  @Test public void testFiles() throws IOException {
+    for (String file : Arrays.asList("testfiles/level.dat", "testfiles/chunk.dat")) {
+      byte[] data = FileUtils.readGzippedBytes(file);
+      Tag tree = NamedTag.read(ByteBuffer.wrap(data));
+      long size = tree.estimatedHeapBytes();
+      assertTrue(size > data.length);
+      assertTrue(tree.freeze().estimatedHeapBytes() > data.length);
+
+      // The estimate for a lazy tree does not parse it.
+      Tag lazy = NamedTag.readLazy(ByteBuffer.wrap(data));
+      assertTrue(lazy.estimatedHeapBytes() > 0);
+      assertFalse(((LazyCompoundTag) lazy.unpack()).isParsed());
+    }
+  }
+}
@@ -0,0 +1,240 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestFreeze {
+  private static CompoundTag compound(int size) {
+    CompoundTag tag = new CompoundTag();
+    for (int i = 0; i < size; ++i) {
+      tag.add("item" + i, new IntTag(i));
+    }
+    return tag;
+  }
+
+  @Test public void testFiles() throws IOException {
+    for (String file : Arrays.asList("testfiles/level.dat", "testfiles/chunk.dat")) {
+      byte[] data = FileUtils.readGzippedBytes(file);
+      Tag tree = NamedTag.read(ByteBuffer.wrap(data));
+      Tag frozen = tree.freeze();
+      assertEquals(tree, frozen);
+      assertEquals(tree.hashCode(), frozen.hashCode());
+      assertEquals(tree.dumpTree(), frozen.dumpTree());
+      assertArrayEquals(data, FileUtils.serialize(frozen));
+      assertEquals(data.length, frozen.serializedSize());
+      NbtWriter writer = new NbtWriter();
+      writer.write(frozen);
+      assertArrayEquals(data, writer.toByteArray());
+      assertSame(frozen, frozen.freeze());
+
+      Tag lazy = NamedTag.readLazy(ByteBuffer.wrap(data)).freeze();
+      assertEquals(tree, lazy);
+      assertArrayEquals(data, FileUtils.serialize(lazy));
+    }
+  }
+
+  @Test public void testLookup() {
+    for (int size : new int[] { 0, 1, 8, 9, 100 }) {
+      CompoundTag tag = compound(size);
+      CompoundTag frozen = tag.freeze();
+      assertTrue(frozen.isFrozen());
+      assertFalse(tag.isFrozen());
+      assertEquals(size, frozen.size());
+      assertEquals(size == 0, frozen.isEmpty());
+      for (int i = 0; i < size; ++i) {
+        assertEquals(i, frozen.get("item" + i).intValue());
+        assertEquals(tag.items().get("item" + i), frozen.items().get("item" + i));
+      }
+      assertTrue(frozen.get("item" + size).isError());
+      assertFalse(frozen.items().containsKey("item" + size));
+      assertEquals(tag.items(), frozen.items());
+      List<String> names = new ArrayList<>();
+      for (NamedTag item : frozen) {
+        names.add(item.name);
+      }
+      assertEquals(new ArrayList<>(tag.items().keySet()), names);
+    }
+  }
+
+  @Test public void testCopy() {
+    CompoundTag nested = compound(3);
+    ListTag list = new ListTag(Tag.TAG_COMPOUND, Arrays.asList(compound(2)));
+    CompoundTag root = new CompoundTag();
+    root.add("nested", nested);
+    root.add("list", list);
+    root.add("ints", new ListTag(new int[] { 1, 2, 3 }));
+    CompoundTag frozen = root.freeze();
+
+    // Changing the original tree does not change the frozen copy.
+    root.add("x", new IntTag(1));
+    nested.add("x", new IntTag(1));
+    list.add(new CompoundTag());
+    root.get("ints").asList().set(0, new IntTag(7));
+    assertEquals(3, frozen.size());
+    assertEquals(3, frozen.get("nested").asCompound().size());
+    assertEquals(1, frozen.get("list").asList().size());
+    assertEquals(1, frozen.get("ints").asList().intAt(0));
+
+    assertTrue(frozen.get("nested").asCompound().isFrozen());
+    assertTrue(frozen.get("list").asList().isFrozen());
+    assertTrue(frozen.get("list").get(0).asCompound().isFrozen());
+    assertFalse(list.isFrozen());
+  }
+
+  @Test public void testModification() {
+    CompoundTag root = new CompoundTag();
+    root.add("nested", compound(10));
+    root.add("list", new ListTag(Tag.TAG_STRING, Arrays.asList(new StringTag("a"))));
+    root.add("ints", new ListTag(new int[] { 1, 2, 3 }));
+    final CompoundTag frozen = root.freeze();
+    final SpecificTag one = new IntTag(1);
+    List<Runnable> mutations = Arrays.asList(
+        new Runnable() {
+          @Override public void run() {
+            frozen.add("x", one);
+          }
+        },
+        new Runnable() {
+          @Override public void run() {
+            frozen.add(new NamedTag("x", one));
+          }
+        },
+        new Runnable() {
+          @Override public void run() {
+            frozen.items().remove("list");
+          }
+        },
+        new Runnable() {
+          @Override public void run() {
+            Iterator<NamedTag> iterator = frozen.iterator();
+            iterator.next();
+            iterator.remove();
+          }
+        },
+        new Runnable() {
+          @Override public void run() {
+            frozen.get("nested").asCompound().add("x", one);
+          }
+        },
+        new Runnable() {
+          @Override public void run() {
+            frozen.get("list").asList().add(new StringTag("b"));
+          }
+        },
+        new Runnable() {
+          @Override public void run() {
+            frozen.get("list").asList().set(0, new StringTag("b"));
+          }
+        },
+        new Runnable() {
+          @Override public void run() {
+            frozen.get("list").asList().items.clear();
+          }
+        },
+        new Runnable() {
+          @Override public void run() {
+            frozen.get("ints").asList().set(0, one);
+          }
+        },
+        new Runnable() {
+          @Override public void run() {
+            frozen.get("ints").asList().items.remove(0);
+          }
+        });
+    for (Runnable mutation : mutations) {
+      try {
+        mutation.run();
+        fail("Frozen tree was modified");
+      } catch (UnsupportedOperationException e) {
+        // Expected.
+      }
+    }
+    assertEquals(root, frozen);
+  }
+
+  /** The empty defaults are not shared, so modifying them has no effect on later calls. */
+  @Test public void testEmptyDefaults() {
+    CompoundTag compound = Tag.END.asCompound();
+    assertFalse(compound.isFrozen());
+    compound.add("a", new IntTag(1));
+    assertTrue(Tag.END.asCompound().isEmpty());
+    ListTag list = Tag.END.asList();
+    assertFalse(list.isFrozen());
+    assertTrue(Tag.END.asList().isEmpty());
+    assertNotSame(list, Tag.END.asList());
+  }
+
+  /** Frozen trees can be read by multiple threads. */
+  @Test public void testConcurrentReads() throws Exception {
+    byte[] data = FileUtils.readGzippedBytes("testfiles/chunk.dat");
+    final Tag frozen = NamedTag.read(ByteBuffer.wrap(data)).freeze();
+    final byte[] expected = FileUtils.serialize(frozen);
+    final AtomicInteger failures = new AtomicInteger();
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; ++i) {
+      threads[i] = new Thread() {
+        @Override public void run() {
+          try {
+            for (int j = 0; j < 20; ++j) {
+              if (!Arrays.equals(expected, FileUtils.serialize(frozen))
+                  || frozen.serializedSize() != expected.length) {
+                failures.incrementAndGet();
+              }
+            }
+          } catch (IOException e) {
+            failures.incrementAndGet();
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(0, failures.get());
+  }
+}
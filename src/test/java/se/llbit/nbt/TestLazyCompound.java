@@ -0,0 +1,146 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestLazyCompound {
+  /** A lazily parsed tree is equal to the fully parsed tree. */
+  @Test public void testLevelDat() throws IOException {
+    byte[] data = FileUtils.readGzippedBytes("testfiles/level.dat");
+    Tag expected = NamedTag.read(new DataInputStream(new ByteArrayInputStream(data)));
+    ByteBuffer buffer = ByteBuffer.wrap(data);
+    Tag root = NamedTag.readLazy(buffer);
+    assertEquals(data.length, buffer.position());
+    assertEquals(expected.dumpTree(), root.dumpTree());
+    assertEquals(expected, root);
+  }
+
+  /** Only the accessed items are parsed. */
+  @Test public void testGet() throws IOException {
+    byte[] data = FileUtils.readGzippedBytes("testfiles/level.dat");
+    Tag root = NamedTag.readLazy(ByteBuffer.wrap(data));
+    LazyCompoundTag rootTag = (LazyCompoundTag) root.unpack();
+    Tag dataTag = root.unpack().get("Data");
+    assertTrue(dataTag instanceof LazyCompoundTag);
+    assertEquals("17w13b", dataTag.get("Version").get("Name").stringValue());
+    assertEquals("generic.armor",
+        dataTag.get("Player").get("Attributes").get(3).get("Name").stringValue());
+    assertTrue(dataTag.get("NotAnItem").isError());
+    assertFalse(rootTag.isParsed());
+    assertFalse(((LazyCompoundTag) dataTag).isParsed());
+  }
+
+  @Test public void testChunkDat() throws IOException {
+    byte[] data = FileUtils.readGzippedBytes("testfiles/chunk.dat");
+    Tag root = NamedTag.readLazy(ByteBuffer.wrap(data));
+    Tag level = root.unpack().get("Level");
+    assertEquals(4, level.get("zPos").intValue());
+    assertEquals(16 * 16 * 16, level.get("Sections").get(0).get("Blocks").byteArray().length);
+  }
+
+  /** An unmodified lazy tree is written back byte for byte. */
+  @Test public void testWriteUnparsed() throws IOException {
+    byte[] data = FileUtils.readGzippedBytes("testfiles/chunk.dat");
+    Tag root = NamedTag.readLazy(ByteBuffer.wrap(data));
+    root.unpack().get("Level").get("xPos");
+    assertArrayEquals(data, FileUtils.serialize(root));
+  }
+
+  /** Modified items are written, the rest is copied. */
+  @Test public void testWriteModified() throws IOException {
+    byte[] data = FileUtils.readGzippedBytes("testfiles/level.dat");
+    Tag root = NamedTag.readLazy(ByteBuffer.wrap(data));
+    CompoundTag version = root.unpack().get("Data").get("Version").asCompound();
+    version.add("Name", new StringTag("1.13"));
+    byte[] modified = FileUtils.serialize(root);
+
+    Tag expected = NamedTag.read(new DataInputStream(new ByteArrayInputStream(data)));
+    expected.unpack().get("Data").get("Version").asCompound().add("Name", new StringTag("1.13"));
+    assertEquals(expected,
+        NamedTag.read(new DataInputStream(new ByteArrayInputStream(modified))));
+  }
+
+  /** Adding an item parses the remaining items. */
+  @Test public void testAdd() throws IOException {
+    CompoundTag tag = new CompoundTag();
+    tag.add("a", new IntTag(1));
+    tag.add("b", new StringTag("foo"));
+    ByteBuffer data = ByteBuffer.wrap(FileUtils.serialize(new NamedTag("", tag)));
+    LazyCompoundTag lazy = (LazyCompoundTag) NamedTag.readLazy(data).unpack();
+    lazy.add("c", new IntTag(3));
+    assertTrue(lazy.isParsed());
+    assertEquals(3, lazy.size());
+    assertEquals("foo", lazy.get("b").stringValue());
+  }
+
+  /** Large compound tags use an index for lookups. */
+  @Test public void testWideCompound() throws IOException {
+    CompoundTag tag = new CompoundTag();
+    for (int i = 0; i < 100; ++i) {
+      tag.add("item" + i, new IntTag(i));
+    }
+    Tag lazy = NamedTag.readLazy(ByteBuffer.wrap(FileUtils.serialize(new NamedTag("", tag))));
+    for (int i = 99; i >= 0; --i) {
+      assertEquals(i, lazy.unpack().get("item" + i).intValue());
+    }
+    assertTrue(lazy.unpack().get("item100").isError());
+    assertEquals(tag, lazy.unpack());
+  }
+
+  /** Malformed compound tag: end of data before item type. */
+  @Test public void testError1() throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(FileUtils.readBytes("testfiles/badcompound1.nbt"));
+    Tag root = NamedTag.readLazy(buffer);
+    assertEquals(0, root.unpack().get("BadCompound").asCompound().size());
+  }
+
+  @Test public void testError2() throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(FileUtils.readBytes("testfiles/error1.nbt"));
+    Tag root = NamedTag.readLazy(buffer);
+    assertEquals("Unknown tag type: 104", root.unpack().error());
+  }
+
+  @Test public void testError3() throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(FileUtils.readBytes("testfiles/badarray2.nbt"));
+    Tag root = NamedTag.readLazy(buffer);
+    assertTrue(root.unpack().get("BadIntArray").isError());
+  }
+}
@@ -31,12 +31,21 @@ package se.llbit.nbt;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class TestList {
   @Test public void testSet() {
@@ -65,4 +74,109 @@ public class TestList {
     assertEquals(10, tag.get(0).intValue());
     tag.get(2); // Out of bounds.
   }
+
+  @Test public void testPrimitiveList() {
+    ListTag list = new ListTag(new double[] { 1.5, -2, 3 });
+    assertEquals(Tag.TAG_DOUBLE, list.getType());
+    assertEquals(3, list.size());
+    assertEquals(new DoubleTag(1.5), list.get(0));
+    assertEquals(-2, list.doubleAt(1), 0);
+    list.add(new DoubleTag(4));
+    list.set(0, new DoubleTag(0.25));
+    assertEquals(4, list.size());
+    assertEquals(0.25, list.doubleAt(0), 0);
+    assertEquals(4, list.doubleAt(3), 0);
+
+    List<SpecificTag> boxed = new ArrayList<>();
+    for (SpecificTag item : list) {
+      boxed.add(item);
+    }
+    assertEquals(new ListTag(Tag.TAG_DOUBLE, boxed), list);
+    assertEquals(list, new ListTag(Tag.TAG_DOUBLE, boxed));
+    assertEquals(new ListTag(Tag.TAG_DOUBLE, boxed).hashCode(), list.hashCode());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPrimitiveListWrongType() {
+    ListTag list = new ListTag(new float[] { 1, 2 });
+    list.add(new DoubleTag(3));
+  }
+
+  @Test public void testWrongType() {
+    ListTag list = new ListTag(Tag.TAG_INT, Collections.<SpecificTag>emptyList());
+    list.add(new IntTag(1));
+    try {
+      list.add(new StringTag("1"));
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Cannot store TAG_String in list of TAG_Int", e.getMessage());
+    }
+    try {
+      list.set(0, new LongTag(1));
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Cannot store TAG_Long in list of TAG_Int", e.getMessage());
+    }
+    assertEquals(new ListTag(new int[] { 1 }), list);
+  }
+
+  /** Empty lists read from NBT data have type TAG_End and accept no items. */
+  @Test(expected = IllegalArgumentException.class)
+  public void testEndListWrongType() {
+    ListTag list = new ListTag(Tag.TAG_END, Collections.<SpecificTag>emptyList());
+    list.add(new CompoundTag());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testPrimitiveListOutOfBounds() {
+    ListTag list = new ListTag(new int[] { 1, 2 });
+    list.intAt(2);
+  }
+
+  /** Typed accessors also work for lists that store tag objects. */
+  @Test public void testTypedAccessors() {
+    ListTag list = new ListTag(Tag.TAG_FLOAT, Collections.<SpecificTag>emptyList());
+    list.add(new FloatTag(1.25f));
+    assertEquals(1.25f, list.floatAt(0), 0);
+    list = new ListTag(Tag.TAG_SHORT, Collections.singletonList(new ShortTag((short) 7)));
+    assertEquals(7, list.shortAt(0));
+  }
+
+  /** Numeric lists are parsed into primitive storage and written back unchanged. */
+  @Test public void testPrimitiveRoundTrip() throws IOException {
+    long[] longs = new long[3000];
+    for (int i = 0; i < longs.length; ++i) {
+      longs[i] = i * 0x1234567890L;
+    }
+    ListTag[] lists = {
+        new ListTag(new byte[] { 1, -2, 3 }),
+        new ListTag(new short[] { 300, -1 }),
+        new ListTag(new int[] { 0x12345678, -7 }),
+        new ListTag(longs),
+        new ListTag(new float[] { 0.5f, -1 }),
+        new ListTag(new double[0]),
+    };
+    for (ListTag list : lists) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      list.write(new DataOutputStream(bytes));
+      byte[] data = bytes.toByteArray();
+
+      SpecificTag streamed = ListTag.read(new DataInputStream(new ByteArrayInputStream(data)));
+      SpecificTag buffered = ListTag.read(ByteBuffer.wrap(data));
+      assertEquals(list, streamed);
+      assertEquals(list, buffered);
+      assertTrue(((ListTag) streamed).items instanceof PrimitiveList);
+
+      bytes.reset();
+      streamed.write(new DataOutputStream(bytes));
+      assertArrayEquals(data, bytes.toByteArray());
+    }
+    assertEquals(longs[2999], lists[3].longAt(2999));
+  }
+
+  @Test public void testTruncatedPrimitiveList() {
+    byte[] data = { Tag.TAG_DOUBLE, 0x7F, 0, 0, 0, 1, 2, 3 };
+    assertTrue(ListTag.read(new DataInputStream(new ByteArrayInputStream(data))).isError());
+    assertTrue(ListTag.read(ByteBuffer.wrap(data)).isError());
+  }
 }
@@ -0,0 +1,77 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class TestNameTable {
+  @Test public void testCache() throws IOException {
+    NameTable table = NameTable.cache(16);
+    byte[] bytes = "xxPalettexx".getBytes(StandardCharsets.UTF_8);
+    String name = table.name(bytes, 2, 7);
+    assertEquals("Palette", name);
+    assertSame(name, table.name("Palette".getBytes(StandardCharsets.UTF_8), 0, 7));
+    assertEquals("Palett", table.name(bytes, 2, 6));
+    assertEquals("", table.name(bytes, 0, 0));
+  }
+
+  @Test public void testUncached() throws IOException {
+    NameTable table = NameTable.uncached();
+    byte[] bytes = "Name".getBytes(StandardCharsets.UTF_8);
+    String name = table.name(bytes, 0, 4);
+    assertEquals("Name", name);
+    assertNotSame(name, table.name(bytes, 0, 4));
+  }
+
+  @Test(expected = UTFDataFormatException.class)
+  public void testMalformed() throws IOException {
+    NameTable.cache(16).name(new byte[] { 'a', (byte) 0xC3 }, 0, 2);
+  }
+
+  /** Parsed compound tags share name strings through the default name table. */
+  @Test public void testParsedNames() throws IOException {
+    byte[] data = FileUtils.readGzippedBytes("testfiles/level.dat");
+    Tag first = NamedTag.read(ByteBuffer.wrap(data));
+    Tag second = NamedTag.read(FileUtils.openGzipInputStream("testfiles/level.dat"));
+    assertEquals(first, second);
+    NamedTag item1 = first.unpack().asCompound().iterator().next();
+    NamedTag item2 = second.unpack().asCompound().iterator().next();
+    assertSame(item1.name, item2.name);
+  }
+}
@@ -0,0 +1,133 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestNbtQuery {
+  @Test public void testExactPaths() throws IOException {
+    NbtQuery query = NbtQuery.compile(
+        ".Data.Version.Name",
+        ".Data.DimensionData.1.DragonFight.Gateways", // Compound item named "1".
+        ".Data.Player.Attributes.3.Name"); // List index.
+    try (DataInputStream in = FileUtils.openGzipInputStream("testfiles/level.dat")) {
+      Map<String, Tag> result = query.parse(in);
+      assertEquals(3, result.size());
+      assertEquals("17w13b", result.get(".Data.Version.Name").stringValue());
+      assertTrue(result.get(".Data.DimensionData.1.DragonFight.Gateways").isList());
+      assertEquals("generic.armor", result.get(".Data.Player.Attributes.3.Name").stringValue());
+    }
+  }
+
+  /** A compiled query can be used multiple times. */
+  @Test public void testReuse() throws IOException {
+    NbtQuery query = NbtQuery.compile(".Level.zPos", ".Level.Sections.4.Y");
+    for (int i = 0; i < 3; ++i) {
+      try (DataInputStream in = FileUtils.openGzipInputStream("testfiles/chunk.dat")) {
+        Map<String, Tag> result = query.parse(in);
+        assertEquals(4, result.get(".Level.zPos").intValue());
+        assertEquals(4, result.get(".Level.Sections.4.Y").byteValue());
+      }
+    }
+  }
+
+  @Test public void testListWildcard() throws IOException {
+    NbtQuery query = NbtQuery.compile(".Level.Sections.*.Y");
+    try (DataInputStream in = FileUtils.openGzipInputStream("testfiles/chunk.dat")) {
+      Map<String, Tag> result = query.parse(in);
+      assertEquals(5, result.size());
+      for (int i = 0; i < 5; ++i) {
+        assertEquals(i, result.get(".Level.Sections." + i + ".Y").byteValue());
+      }
+    }
+  }
+
+  @Test public void testCompoundWildcard() throws IOException {
+    NbtQuery query = NbtQuery.compile(".Data.Version.*");
+    try (DataInputStream in = FileUtils.openGzipInputStream("testfiles/level.dat")) {
+      Map<String, Tag> result = query.parse(in);
+      assertEquals("17w13b", result.get(".Data.Version.Name").stringValue());
+      assertEquals(3, result.size());
+    }
+  }
+
+  /** A requested tag that contains other requested tags. */
+  @Test public void testPrefix() throws IOException {
+    NbtQuery query = NbtQuery.compile(".Level.Sections.*.Y", ".Level.Sections.2");
+    try (DataInputStream in = FileUtils.openGzipInputStream("testfiles/chunk.dat")) {
+      Map<String, Tag> result = query.parse(in);
+      assertEquals(6, result.size());
+      assertEquals(2, result.get(".Level.Sections.2").get("Y").byteValue());
+      assertEquals(2, result.get(".Level.Sections.2.Y").byteValue());
+      assertEquals(3, result.get(".Level.Sections.3.Y").byteValue());
+    }
+  }
+
+  /** Parsing stops when all requested tags have been found. */
+  @Test public void testStopEarly() throws IOException {
+    byte[] data = FileUtils.readGzippedBytes("testfiles/chunk.dat");
+    ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+    Map<String, Tag> result = NbtQuery.compile(".Level.LightPopulated")
+        .parse(new DataInputStream(bytes));
+    assertEquals(1, result.get(".Level.LightPopulated").byteValue());
+    assertTrue(bytes.available() > data.length / 2);
+  }
+
+  @Test public void testNotFound() throws IOException {
+    NbtQuery query = NbtQuery.compile(".Level.Foo", ".Level.Sections.10.Y", ".Level.zPos.x");
+    try (DataInputStream in = FileUtils.openGzipInputStream("testfiles/chunk.dat")) {
+      assertTrue(query.parse(in).isEmpty());
+    }
+  }
+
+  /** The tags found before an error are kept in the result map. */
+  @Test public void testTruncated() throws IOException {
+    byte[] data = FileUtils.readGzippedBytes("testfiles/chunk.dat");
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 0, 200));
+    Map<String, Tag> result = new HashMap<>();
+    try {
+      NbtQuery.compile(".Level.zPos", ".Level.Sections.*.Y").parse(in, result);
+      fail("Expected EOFException");
+    } catch (EOFException e) {
+      assertEquals(4, result.get(".Level.zPos").intValue());
+    }
+  }
+}
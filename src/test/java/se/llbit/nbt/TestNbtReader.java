@@ -0,0 +1,254 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestNbtReader {
+  /** Records all events as text. */
+  static class EventLog extends NbtVisitor {
+    final StringBuilder log = new StringBuilder();
+    String error = "";
+
+    @Override public boolean visitName(String name) {
+      log.append(name).append(':');
+      return true;
+    }
+
+    @Override public boolean visitCompoundStart() {
+      log.append('{');
+      return true;
+    }
+
+    @Override public void visitCompoundEnd() {
+      log.append('}');
+    }
+
+    @Override public boolean visitListStart(int itemType, int size) {
+      log.append('[').append(itemType).append('/').append(size).append(' ');
+      return true;
+    }
+
+    @Override public void visitListEnd() {
+      log.append(']');
+    }
+
+    @Override public void visitByte(int value) {
+      log.append(value).append("b ");
+    }
+
+    @Override public void visitInt(int value) {
+      log.append(value).append(' ');
+    }
+
+    @Override public void visitString(String value) {
+      log.append('"').append(value).append("\" ");
+    }
+
+    @Override public void visitLongArray(long[] value) {
+      log.append(Arrays.toString(value)).append(' ');
+    }
+
+    @Override public void visitError(String message) {
+      error = message;
+    }
+  }
+
+  private static DataInputStream inputStream(Tag tag) throws IOException {
+    return new DataInputStream(new ByteArrayInputStream(FileUtils.serialize(tag)));
+  }
+
+  private static Tag testTree() {
+    return new NamedTag("root", new CompoundTag(Arrays.asList(
+        new NamedTag("a", new IntTag(3)),
+        new NamedTag("b", new ListTag(Tag.TAG_STRING,
+            Arrays.asList(new StringTag("x"), new StringTag("y")))),
+        new NamedTag("c", new CompoundTag(Arrays.asList(
+            new NamedTag("d", new ByteTag(1)),
+            new NamedTag("e", new LongArrayTag(new long[] { 1, -2 }))))))));
+  }
+
+  @Test public void testEvents() throws IOException {
+    EventLog visitor = new EventLog();
+    assertTrue(NbtReader.accept(inputStream(testTree()), visitor));
+    assertEquals("root:{a:3 b:[8/2 \"x\" \"y\" ]c:{d:1b e:[1, -2] }}", visitor.log.toString());
+  }
+
+  /** Skipped tags do not generate events, and parsing continues after them. */
+  @Test public void testSkipNamed() throws IOException {
+    EventLog visitor = new EventLog() {
+      @Override public boolean visitName(String name) {
+        super.visitName(name);
+        return !name.equals("b");
+      }
+    };
+    assertTrue(NbtReader.accept(inputStream(testTree()), visitor));
+    assertEquals("root:{a:3 b:c:{d:1b e:[1, -2] }}", visitor.log.toString());
+  }
+
+  @Test public void testSkipCompound() throws IOException {
+    EventLog visitor = new EventLog() {
+      int depth = 0;
+
+      @Override public boolean visitCompoundStart() {
+        super.visitCompoundStart();
+        return depth++ == 0;
+      }
+    };
+    assertTrue(NbtReader.accept(inputStream(testTree()), visitor));
+    assertEquals("root:{a:3 b:[8/2 \"x\" \"y\" ]c:{}", visitor.log.toString());
+  }
+
+  @Test public void testSkipList() throws IOException {
+    EventLog visitor = new EventLog() {
+      @Override public boolean visitListStart(int itemType, int size) {
+        super.visitListStart(itemType, size);
+        return false;
+      }
+    };
+    assertTrue(NbtReader.accept(inputStream(testTree()), visitor));
+    assertEquals("root:{a:3 b:[8/2 c:{d:1b e:[1, -2] }}", visitor.log.toString());
+  }
+
+  /** The number of visited tags matches the number of tags in the parsed tree. */
+  @Test public void testCountLevelDat() throws IOException {
+    final int[] count = { 0 };
+    NbtVisitor visitor = new NbtVisitor() {
+      @Override public boolean visitName(String name) {
+        count[0] += 1;
+        return true;
+      }
+    };
+    try (DataInputStream in = FileUtils.openGzipInputStream("testfiles/level.dat")) {
+      assertTrue(NbtReader.accept(in, visitor));
+    }
+    Tag root = FileUtils.readGzipped("testfiles/level.dat");
+    assertEquals(countNamed(root), count[0]);
+  }
+
+  private static int countNamed(Tag tag) {
+    int count = 0;
+    if (tag instanceof NamedTag) {
+      count += 1;
+      tag = tag.unpack();
+    }
+    if (tag.isCompoundTag()) {
+      for (NamedTag item : tag.asCompound()) {
+        count += countNamed(item);
+      }
+    } else if (tag.isList()) {
+      for (SpecificTag item : tag.asList()) {
+        count += countNamed(item);
+      }
+    }
+    return count;
+  }
+
+  /** A huge array length is rejected before the array is allocated. */
+  @Test public void testArrayLimit() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(Tag.TAG_LONG_ARRAY);
+      out.writeUTF("x");
+      out.writeInt(Integer.MAX_VALUE);
+    }
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    try {
+      NbtReader.accept(in, new EventLog(), ReadLimits.DEFAULT.withMaxArrayLength(1000));
+      fail("Expected NbtLimitException");
+    } catch (NbtLimitException e) {
+      assertEquals("TAG_Long_Array length 2147483647 exceeds the limit of 1000", e.getMessage());
+    }
+  }
+
+  @Test public void testLimits() throws IOException {
+    // 2 compounds, 1 list with 2 items, and 3 other tags.
+    assertTrue(NbtReader.accept(inputStream(testTree()), new EventLog(),
+        ReadLimits.DEFAULT.withMaxNodes(8)));
+    try {
+      NbtReader.accept(inputStream(testTree()), new EventLog(),
+          ReadLimits.DEFAULT.withMaxNodes(7));
+      fail("Expected NbtLimitException");
+    } catch (NbtLimitException e) {
+      assertEquals("Tag count exceeds the limit of 7", e.getMessage());
+    }
+
+    try {
+      NbtReader.accept(inputStream(testTree()), new EventLog(),
+          ReadLimits.DEFAULT.withMaxListSize(1));
+      fail("Expected NbtLimitException");
+    } catch (NbtLimitException e) {
+      assertEquals("TAG_List size 2 exceeds the limit of 1", e.getMessage());
+    }
+    try {
+      NbtReader.accept(inputStream(testTree()), new EventLog(),
+          ReadLimits.DEFAULT.withMaxBytes(20));
+      fail("Expected NbtLimitException");
+    } catch (NbtLimitException e) {
+      assertEquals("Tag exceeds the limit of 20 bytes", e.getMessage());
+    }
+    try (DataInputStream in = FileUtils.openGzipInputStream("testfiles/level.dat")) {
+      assertTrue(NbtReader.accept(in, new EventLog(), ReadLimits.DEFAULT.withMaxBytes(1 << 20)
+          .withMaxArrayLength(65536).withMaxListSize(65536).withMaxNodes(1000000)));
+    }
+  }
+
+  /** Malformed list tag that has TAG_End as element type. */
+  @Test public void testError1() throws IOException {
+    EventLog visitor = new EventLog();
+    try (DataInputStream in =
+        new DataInputStream(FileUtils.openInputStream("testfiles/badlist1.nbt"))) {
+      assertFalse(NbtReader.accept(in, visitor));
+    }
+    assertEquals("Cannot create list of TAG_End", visitor.error);
+  }
+
+  /** Unexpected end of input. */
+  @Test public void testError2() throws IOException {
+    EventLog visitor = new EventLog();
+    try (DataInputStream in =
+        new DataInputStream(FileUtils.openInputStream("testfiles/badcompound1.nbt"))) {
+      assertFalse(NbtReader.accept(in, visitor));
+    }
+    assertTrue(visitor.error.startsWith("IOException"));
+  }
+}
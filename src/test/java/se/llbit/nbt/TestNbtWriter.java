@@ -0,0 +1,112 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TestNbtWriter {
+  private static byte[] writerBytes(Tag tag) throws IOException {
+    NbtWriter writer = new NbtWriter(16);
+    writer.write(tag);
+    return writer.toByteArray();
+  }
+
+  @Test public void testFiles() throws IOException {
+    for (String file : Arrays.asList("testfiles/level.dat", "testfiles/chunk.dat")) {
+      byte[] data = FileUtils.readGzippedBytes(file);
+      assertArrayEquals(data, writerBytes(NamedTag.read(ByteBuffer.wrap(data))));
+      assertArrayEquals(data, writerBytes(NamedTag.readLazy(ByteBuffer.wrap(data))));
+    }
+  }
+
+  @Test public void testAllTagTypes() throws IOException {
+    CompoundTag root = new CompoundTag();
+    root.add("byte", new ByteTag(-3));
+    root.add("short", new ShortTag((short) 1234));
+    root.add("int", new IntTag(-123456789));
+    root.add("long", new LongTag(0x123456789ABCDEFL));
+    root.add("float", new FloatTag(1.5f));
+    root.add("double", new DoubleTag(-2.25));
+    root.add("bytes", new ByteArrayTag(new byte[] { 1, 2, 3 }));
+    root.add("str\u00e5ng", new StringTag("a\u0000b \u263a x\ud83d\ude00y"));
+    root.add("ints", new IntArrayTag(new int[] { 1, -1, 1 << 30 }));
+    root.add("longs", new LongArrayTag(new long[] { 1, -1, 1L << 60 }));
+    root.add("doubles", new ListTag(new double[] { 0.5, 1, -3 }));
+    root.add("empty", new ListTag(Tag.TAG_END, Collections.<SpecificTag>emptyList()));
+    root.add("strings", new ListTag(Tag.TAG_STRING,
+        Arrays.asList(new StringTag("x"), new StringTag("y"))));
+    CompoundTag nested = new CompoundTag();
+    nested.add("value", new IntTag(1));
+    root.add("nested", nested);
+    NamedTag named = new NamedTag("root", root);
+    assertArrayEquals(FileUtils.serialize(named), writerBytes(named));
+    assertArrayEquals(FileUtils.serialize(root), writerBytes(root));
+  }
+
+  @Test public void testReuse() throws IOException {
+    NbtWriter writer = new NbtWriter();
+    writer.write(new NamedTag("a", new StringTag("first")));
+    writer.reset();
+    NamedTag tag = new NamedTag("b", new IntArrayTag(new int[5000]));
+    writer.write(tag);
+    assertEquals(FileUtils.serialize(tag).length, writer.size());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writer.writeTo(out);
+    assertArrayEquals(FileUtils.serialize(tag), out.toByteArray());
+
+    out.reset();
+    writer.writeTo(Channels.newChannel(out));
+    assertArrayEquals(FileUtils.serialize(tag), out.toByteArray());
+  }
+
+  @Test(expected = UTFDataFormatException.class)
+  public void testStringTooLong() throws IOException {
+    char[] chars = new char[30000];
+    Arrays.fill(chars, '\u263a');
+    new NbtWriter().write(new StringTag(new String(chars)));
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testErrorTag() throws IOException {
+    new NbtWriter().write(new NamedTag("error", new ErrorTag("failed")));
+  }
+}
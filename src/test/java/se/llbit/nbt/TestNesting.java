@@ -0,0 +1,187 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests parsing and skipping deeply nested compound and list tags.
+ */
+public class TestNesting {
+  /** Named list tag containing {@code depth} nested lists. */
+  private static byte[] nestedLists(int depth) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(Tag.TAG_LIST);
+      out.writeUTF("");
+      for (int i = 1; i < depth; ++i) {
+        out.writeByte(Tag.TAG_LIST);
+        out.writeInt(1);
+      }
+      out.writeByte(Tag.TAG_END);
+      out.writeInt(0);
+    }
+    return bytes.toByteArray();
+  }
+
+  /** Named compound tag containing {@code depth} nested compounds. */
+  private static byte[] nestedCompounds(int depth) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(Tag.TAG_COMPOUND);
+      out.writeUTF("");
+      for (int i = 1; i < depth; ++i) {
+        out.writeByte(Tag.TAG_COMPOUND);
+        out.writeUTF("a");
+      }
+      out.writeByte(Tag.TAG_BYTE);
+      out.writeUTF("b");
+      out.writeByte(7);
+      for (int i = 0; i < depth; ++i) {
+        out.writeByte(Tag.TAG_END);
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+  private static DataInputStream stream(byte[] data) {
+    return new DataInputStream(new ByteArrayInputStream(data));
+  }
+
+  @Test public void testDeepListStream() throws IOException {
+    Tag tag = NamedTag.read(stream(nestedLists(100000)));
+    assertEquals("Maximum nesting depth of 512 exceeded", tag.unpack().error());
+  }
+
+  @Test public void testDeepListBuffer() throws IOException {
+    Tag tag = NamedTag.read(ByteBuffer.wrap(nestedLists(100000)));
+    assertEquals("Maximum nesting depth of 512 exceeded", tag.unpack().error());
+  }
+
+  @Test public void testDeepCompound() throws IOException {
+    byte[] data = nestedCompounds(100000);
+    Tag tag = NamedTag.read(stream(data));
+    assertTrue(tag.unpack().isError());
+    tag = NamedTag.read(stream(data), 100000);
+    int depth = 0;
+    Tag item = tag.unpack();
+    while (!item.get("a").isError()) {
+      item = item.get("a");
+      depth += 1;
+    }
+    assertEquals(99999, depth);
+    assertEquals(7, item.get("b").byteValue());
+  }
+
+  @Test public void testMaxDepth() throws IOException {
+    assertFalse(NamedTag.read(stream(nestedLists(512))).unpack().isError());
+    assertTrue(NamedTag.read(stream(nestedLists(513))).unpack().isError());
+    assertFalse(NamedTag.read(stream(nestedCompounds(10)), 10).unpack().isError());
+    assertEquals("Maximum nesting depth of 9 exceeded",
+        NamedTag.read(stream(nestedCompounds(10)), 9).unpack().error());
+    assertFalse(NamedTag.read(ByteBuffer.wrap(nestedLists(10)), 10).unpack().isError());
+    assertTrue(NamedTag.read(ByteBuffer.wrap(nestedLists(10)), 9).unpack().isError());
+  }
+
+  @Test public void testSkip() throws IOException {
+    byte[] data = nestedCompounds(100000);
+    DataInputStream in = stream(data);
+    byte type = in.readByte();
+    StringTag.skip(in);
+    try {
+      SpecificTag.skip(type, in);
+      fail("Expected the skip to fail");
+    } catch (IOException e) {
+      assertEquals("Maximum nesting depth of 512 exceeded", e.getMessage());
+    }
+
+    in = stream(data);
+    type = in.readByte();
+    StringTag.skip(in);
+    SpecificTag.skip(type, in, 100000);
+    assertEquals(-1, in.read());
+
+    ByteBuffer buffer = ByteBuffer.wrap(nestedLists(100000));
+    type = buffer.get();
+    StringTag.skip(buffer);
+    TagParser.skip(type, buffer, 100000);
+    assertFalse(buffer.hasRemaining());
+  }
+
+  /** Both skippers report the nesting depth in the same way. */
+  @Test public void testSkipDepthError() throws IOException {
+    byte[] data = nestedLists(10);
+    DataInputStream in = stream(data);
+    byte type = in.readByte();
+    StringTag.skip(in);
+    try {
+      TagParser.skip(type, in, 9);
+      fail("Expected the skip to fail");
+    } catch (NbtLimitException e) {
+      assertEquals("Maximum nesting depth of 9 exceeded", e.getMessage());
+    }
+
+    ByteBuffer buffer = ByteBuffer.wrap(data);
+    type = buffer.get();
+    StringTag.skip(buffer);
+    try {
+      TagParser.skip(type, buffer, 9);
+      fail("Expected the skip to fail");
+    } catch (NbtLimitException e) {
+      assertEquals("Maximum nesting depth of 9 exceeded", e.getMessage());
+    }
+  }
+
+  @Test public void testNbtReader() throws IOException {
+    final StringBuilder errors = new StringBuilder();
+    NbtVisitor visitor = new NbtVisitor() {
+      @Override public void visitError(String message) {
+        errors.append(message);
+      }
+    };
+    assertFalse(NbtReader.accept(stream(nestedLists(100000)), visitor));
+    assertEquals("Maximum nesting depth of 512 exceeded", errors.toString());
+    assertTrue(NbtReader.accept(stream(nestedLists(10)), visitor, 10));
+    assertTrue(NbtReader.accept(stream(nestedLists(100000)), new NbtVisitor() { }, 100000));
+    assertTrue(NbtReader.accept(stream(nestedCompounds(100000)), new NbtVisitor() { }, 100000));
+  }
+}
@@ -0,0 +1,110 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TestPackedIndexView {
+  /** Reference implementation that reads one bit at a time. */
+  private static int referenceGet(long[] data, int bits, int i, boolean spanning) {
+    long bitIndex;
+    if (spanning) {
+      bitIndex = (long) i * bits;
+    } else {
+      int perLong = 64 / bits;
+      bitIndex = (long) (i / perLong) * 64 + (i % perLong) * bits;
+    }
+    int value = 0;
+    for (int b = 0; b < bits; ++b) {
+      long index = bitIndex + b;
+      if ((data[(int) (index / 64)] >>> (index % 64) & 1) != 0) {
+        value |= 1 << b;
+      }
+    }
+    return value;
+  }
+
+  @Test public void testLayouts() {
+    Random random = new Random(17);
+    int[] values = new int[PackedIndexView.SECTION_SIZE];
+    int[] out = new int[PackedIndexView.SECTION_SIZE];
+    for (boolean spanning : new boolean[] { true, false }) {
+      for (int bits = 1; bits <= 32; ++bits) {
+        long mask = (1L << bits) - 1;
+        for (int i = 0; i < values.length; ++i) {
+          values[i] = (int) (random.nextInt() & mask);
+        }
+        long[] data = new long[PackedIndexView.requiredLength(bits, values.length, spanning)];
+        PackedIndexView view = new PackedIndexView(data, bits, values.length, spanning);
+        view.pack(values);
+        for (int i = 0; i < values.length; i += 7) {
+          assertEquals(values[i], referenceGet(data, bits, i, spanning));
+          assertEquals(values[i], view.get(i));
+        }
+        assertArrayEquals(values, view.unpack(out));
+
+        long[] data2 = new long[data.length];
+        PackedIndexView view2 = new PackedIndexView(data2, bits, values.length, spanning);
+        for (int i = 0; i < values.length; ++i) {
+          view2.set(i, values[i]);
+        }
+        assertArrayEquals(data, data2);
+        view2.set(5, -1);
+        assertEquals(mask, view2.get(5) & 0xFFFFFFFFL);
+        assertEquals(values[4], view2.get(4));
+        assertEquals(values[6], view2.get(6));
+      }
+    }
+  }
+
+  @Test public void testSectionLength() {
+    assertEquals(256, PackedIndexView.requiredLength(4, 4096, true));
+    assertEquals(320, PackedIndexView.requiredLength(5, 4096, true));
+    assertEquals(342, PackedIndexView.requiredLength(5, 4096, false));
+    assertEquals(256, PackedIndexView.requiredLength(4, 4096, false));
+    PackedIndexView view = PackedIndexView.aligned(new LongArrayTag(new long[342]), 5);
+    assertEquals(4096, view.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testShortData() {
+    PackedIndexView.spanning(new LongArrayTag(new long[319]), 5);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testOutOfBounds() {
+    PackedIndexView.spanning(new LongArrayTag(new long[256]), 4).get(4096);
+  }
+}
@@ -31,16 +31,20 @@ package se.llbit.nbt;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.zip.GZIPOutputStream;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -205,4 +209,58 @@ public class TestParsing {
     Tag root2 = FileUtils.readGzipped("testfiles/roundtrip3.dat.out");
     assertEquals(root.dumpTree(), root2.dumpTree());
   }
+
+  /** Arrays larger than the block size used for bulk reads and writes. */
+  @Test public void testRoundTripLargeArrays() throws IOException {
+    int[] ints = new int[5000];
+    long[] longs = new long[3001];
+    for (int i = 0; i < ints.length; ++i) {
+      ints[i] = i * 0x01020304;
+    }
+    for (int i = 0; i < longs.length; ++i) {
+      longs[i] = i * 0x0102030405060708L;
+    }
+    Tag root = new NamedTag("", new CompoundTag(Arrays.asList(
+        new NamedTag("ints", new IntArrayTag(ints)),
+        new NamedTag("empty", new IntArrayTag(new int[0])),
+        new NamedTag("longs", new LongArrayTag(longs)))));
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      root.write(out);
+    }
+    assertEquals(39 + 4 * ints.length + 8 * longs.length, bytes.size());
+    Tag root2 = NamedTag.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    assertEquals(root, root2);
+    assertArrayEquals(ints, root2.unpack().get("ints").intArray());
+    assertArrayEquals(longs, root2.unpack().get("longs").longArray());
+  }
+
+  /** Strings are decoded the same way as DataInputStream.readUTF(). */
+  @Test public void testStringDecoding() throws IOException {
+    StringBuilder longString = new StringBuilder();
+    for (int i = 0; i < 3000; ++i) {
+      longString.append((char) ('a' + i % 26));
+    }
+    longString.append('\u00e5');
+    String[] strings = {
+        "", "minecraft:stone", "\u00e5\u00e4\u00f6", "a\u0000b", "\u263a smile", "x\ud83d\ude00y",
+        longString.toString(), longString.reverse().toString(),
+    };
+    for (String string : strings) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      new DataOutputStream(bytes).writeUTF(string);
+      byte[] data = bytes.toByteArray();
+      assertEquals(string, new DataInputStream(new ByteArrayInputStream(data)).readUTF());
+      assertEquals(string, StringTag.read(new DataInputStream(new ByteArrayInputStream(data)))
+          .stringValue());
+      assertEquals(string, StringTag.read(ByteBuffer.wrap(data)).stringValue());
+    }
+  }
+
+  @Test public void testMalformedString() throws IOException {
+    byte[] data = { 0, 3, 'a', (byte) 0xE2, (byte) 0x98 };
+    assertTrue(StringTag.read(new DataInputStream(new ByteArrayInputStream(data))).isError());
+    data = new byte[] { 0, 2, 'a', (byte) 0xFF };
+    assertTrue(StringTag.read(new DataInputStream(new ByteArrayInputStream(data))).isError());
+  }
 }
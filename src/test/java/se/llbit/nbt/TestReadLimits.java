@@ -0,0 +1,188 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestReadLimits {
+  /** A named tag with only the header of a huge array or list. */
+  private static byte[] header(int type, int itemType, int length) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(type);
+      out.writeUTF("x");
+      if (type == Tag.TAG_LIST) {
+        out.writeByte(itemType);
+      }
+      out.writeInt(length);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static DataInputStream stream(byte[] data) {
+    return new DataInputStream(new ByteArrayInputStream(data));
+  }
+
+  /** Parse the data from a stream and a buffer, and check the error message. */
+  private static void assertLimit(byte[] data, ReadLimits limits, String message)
+      throws IOException {
+    try {
+      NamedTag.read(stream(data), limits);
+      fail("Expected NbtLimitException");
+    } catch (NbtLimitException e) {
+      assertEquals(message, e.getMessage());
+    }
+    try {
+      NamedTag.read(ByteBuffer.wrap(data), limits);
+      fail("Expected NbtLimitException");
+    } catch (NbtLimitException e) {
+      assertEquals(message, e.getMessage());
+    }
+  }
+
+  private static NamedTag item(String name, SpecificTag tag) {
+    return new NamedTag(name, tag);
+  }
+
+  @Test public void testArrayLength() throws IOException {
+    ReadLimits limits = ReadLimits.DEFAULT.withMaxArrayLength(1000);
+    try {
+      NamedTag.read(stream(header(Tag.TAG_INT_ARRAY, 0, Integer.MAX_VALUE)), limits);
+      fail("Expected NbtLimitException");
+    } catch (NbtLimitException e) {
+      assertEquals("TAG_Int_Array length 2147483647 exceeds the limit of 1000", e.getMessage());
+    }
+    byte[] data = FileUtils.serialize(item("x", new LongArrayTag(new long[1001])));
+    assertLimit(data, limits, "TAG_Long_Array length 1001 exceeds the limit of 1000");
+    data = FileUtils.serialize(item("x", new ByteArrayTag(new byte[1000])));
+    assertEquals(1000, NamedTag.read(stream(data), limits).unpack().byteArray().length);
+  }
+
+  @Test public void testArrayBytes() throws IOException {
+    ReadLimits limits = ReadLimits.DEFAULT.withMaxBytes(1024);
+    try {
+      NamedTag.read(stream(header(Tag.TAG_LONG_ARRAY, 0, 1 << 28)), limits);
+      fail("Expected NbtLimitException");
+    } catch (NbtLimitException e) {
+      assertEquals("TAG_Long_Array of length 268435456 exceeds the limit of 1024 bytes",
+          e.getMessage());
+    }
+  }
+
+  @Test public void testNegativeArrayLength() throws IOException {
+    Tag tag = NamedTag.read(stream(header(Tag.TAG_BYTE_ARRAY, 0, -1)));
+    assertTrue(tag.unpack().isError());
+  }
+
+  @Test public void testListSize() throws IOException {
+    ReadLimits limits = ReadLimits.DEFAULT.withMaxListSize(100);
+    try {
+      NamedTag.read(stream(header(Tag.TAG_LIST, Tag.TAG_INT, 1000000000)), limits);
+      fail("Expected NbtLimitException");
+    } catch (NbtLimitException e) {
+      assertEquals("TAG_List size 1000000000 exceeds the limit of 100", e.getMessage());
+    }
+    try {
+      NamedTag.read(stream(header(Tag.TAG_LIST, Tag.TAG_COMPOUND, 1000000000)), limits);
+      fail("Expected NbtLimitException");
+    } catch (NbtLimitException e) {
+      assertEquals("TAG_List size 1000000000 exceeds the limit of 100", e.getMessage());
+    }
+    ListTag list = new ListTag(Tag.TAG_STRING, Collections.<SpecificTag>emptyList());
+    for (int i = 0; i < 101; ++i) {
+      list.add(new StringTag("a"));
+    }
+    assertLimit(FileUtils.serialize(item("x", list)), limits,
+        "TAG_List size 101 exceeds the limit of 100");
+  }
+
+  @Test public void testMaxBytes() throws IOException {
+    CompoundTag compound = new CompoundTag();
+    compound.add("a", new StringTag("hello"));
+    compound.add("b", new IntArrayTag(new int[10]));
+    compound.add("c", new ListTag(new long[] { 1, 2, 3 }));
+    NamedTag root = item("root", compound);
+    byte[] data = FileUtils.serialize(root);
+    ReadLimits limits = ReadLimits.DEFAULT.withMaxBytes(data.length);
+    assertEquals(root, NamedTag.read(stream(data), limits));
+    assertEquals(root, NamedTag.read(ByteBuffer.wrap(data), limits));
+    limits = ReadLimits.DEFAULT.withMaxBytes(data.length - 1);
+    assertLimit(data, limits, "Tag exceeds the limit of " + (data.length - 1) + " bytes");
+    // The list size is checked before the list is parsed.
+    assertLimit(FileUtils.serialize(item("x", new ListTag(new int[10]))),
+        ReadLimits.DEFAULT.withMaxBytes(20), "TAG_List of size 10 exceeds the limit of 20 bytes");
+  }
+
+  @Test public void testMaxNodes() throws IOException {
+    CompoundTag compound = new CompoundTag();
+    for (int i = 0; i < 5; ++i) {
+      compound.add("item" + i, new ByteTag(i));
+    }
+    compound.add("list", new ListTag(new int[] { 1, 2, 3 }));
+    // 1 compound, 5 bytes, 1 list and 3 list items.
+    byte[] data = FileUtils.serialize(item("x", compound));
+    assertEquals(compound, NamedTag.read(stream(data), ReadLimits.DEFAULT.withMaxNodes(10))
+        .unpack());
+    assertLimit(data, ReadLimits.DEFAULT.withMaxNodes(9), "Tag count exceeds the limit of 9");
+  }
+
+  @Test public void testMaxDepth() throws IOException {
+    CompoundTag inner = new CompoundTag();
+    inner.add("list", new ListTag(Tag.TAG_COMPOUND,
+        Collections.<SpecificTag>singletonList(new CompoundTag())));
+    CompoundTag root = new CompoundTag();
+    root.add("inner", inner);
+    byte[] data = FileUtils.serialize(item("x", root));
+    assertEquals(root, NamedTag.read(stream(data), ReadLimits.DEFAULT.withMaxDepth(4))
+        .unpack());
+    assertLimit(data, ReadLimits.DEFAULT.withMaxDepth(3), "Maximum nesting depth of 3 exceeded");
+  }
+
+  @Test public void testFiles() throws IOException {
+    ReadLimits limits = ReadLimits.DEFAULT.withMaxBytes(1 << 20).withMaxArrayLength(65536)
+        .withMaxListSize(65536).withMaxNodes(1000000);
+    for (String file : new String[] { "testfiles/chunk.dat", "testfiles/level.dat" }) {
+      byte[] data = FileUtils.readGzippedBytes(file);
+      assertEquals(NamedTag.read(stream(data)), NamedTag.read(stream(data), limits));
+    }
+  }
+}
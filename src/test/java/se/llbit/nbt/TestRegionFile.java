@@ -0,0 +1,184 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestRegionFile {
+  private static Tag chunk(int x, int z) {
+    CompoundTag level = new CompoundTag();
+    level.add("xPos", new IntTag(x));
+    level.add("zPos", new IntTag(z));
+    level.add("Heights", new IntArrayTag(new int[256]));
+    CompoundTag root = new CompoundTag();
+    root.add("Level", level);
+    return new NamedTag("", root);
+  }
+
+  static byte[] compress(Tag tag, int compression) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    OutputStream out;
+    if (compression == RegionFile.COMPRESSION_GZIP) {
+      out = new GZIPOutputStream(bytes);
+    } else if (compression == RegionFile.COMPRESSION_ZLIB) {
+      out = new DeflaterOutputStream(bytes);
+    } else {
+      out = bytes;
+    }
+    DataOutputStream data = new DataOutputStream(out);
+    tag.write(data);
+    data.close();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Writes a region file with chunks at the given local coordinates. The
+   * compression type flags external chunks with 0x80.
+   */
+  static void writeRegion(File file, int[][] chunks) throws IOException {
+    ByteArrayOutputStream sectors = new ByteArrayOutputStream();
+    ByteBuffer header = ByteBuffer.allocate(2 * RegionFile.SECTOR_SIZE);
+    for (int[] chunk : chunks) {
+      int x = chunk[0];
+      int z = chunk[1];
+      int compression = chunk[2];
+      byte[] data = compress(chunk(x, z), compression & 0x7F);
+      if ((compression & 0x80) != 0) {
+        File external = new File(file.getParentFile(), "c." + x + "." + z + ".mcc");
+        Files.write(external.toPath(), data);
+        data = new byte[0];
+      }
+      int sector = 2 + sectors.size() / RegionFile.SECTOR_SIZE;
+      ByteBuffer payload = ByteBuffer.allocate(
+          (data.length + 5 + RegionFile.SECTOR_SIZE - 1) / RegionFile.SECTOR_SIZE
+              * RegionFile.SECTOR_SIZE);
+      payload.putInt(data.length + 1);
+      payload.put((byte) compression);
+      payload.put(data);
+      sectors.write(payload.array());
+      int index = x + z * 32;
+      header.putInt(4 * index, (sector << 8) | (payload.capacity() / RegionFile.SECTOR_SIZE));
+      header.putInt(RegionFile.SECTOR_SIZE + 4 * index, 1000 + index);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(header.array());
+    sectors.writeTo(out);
+    Files.write(file.toPath(), out.toByteArray());
+  }
+
+  static File tempDir() throws IOException {
+    return Files.createTempDirectory("region").toFile();
+  }
+
+  static void delete(File dir) {
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    dir.delete();
+  }
+
+  @Test public void testReadChunks() throws IOException {
+    File dir = tempDir();
+    try {
+      File file = new File(dir, "r.0.0.mca");
+      writeRegion(file, new int[][] {
+          { 0, 0, RegionFile.COMPRESSION_ZLIB },
+          { 31, 0, RegionFile.COMPRESSION_GZIP },
+          { 5, 7, RegionFile.COMPRESSION_NONE },
+          { 3, 31, RegionFile.COMPRESSION_ZLIB | 0x80 },
+      });
+      try (RegionFile region = new RegionFile(file)) {
+        assertTrue(region.hasChunk(0, 0));
+        assertFalse(region.hasChunk(1, 0));
+        assertNull(region.readChunk(1, 0));
+        assertNull(region.readChunkData(1, 0));
+        assertEquals(1000, region.getTimestamp(0, 0));
+        assertEquals(0, region.getTimestamp(1, 0));
+        assertEquals(chunk(0, 0), region.readChunk(0, 0));
+        assertEquals(chunk(31, 0), region.readChunk(31, 0));
+        assertEquals(chunk(5, 7), region.readChunk(5, 7));
+        assertEquals(chunk(5, 7), region.readChunk(32 + 5, -32 + 7)); // World coordinates.
+        assertEquals(chunk(3, 31), region.readChunk(3, 31));
+        ByteBuffer data = region.readChunkData(5, 7);
+        assertEquals(chunk(5, 7).serializedSize(), data.remaining());
+      }
+    } finally {
+      delete(dir);
+    }
+  }
+
+  @Test public void testEmptyRegion() throws IOException {
+    File dir = tempDir();
+    try {
+      File file = new File(dir, "r.0.0.mca");
+      Files.write(file.toPath(), new byte[0]);
+      try (RegionFile region = new RegionFile(file)) {
+        assertFalse(region.hasChunk(0, 0));
+        assertNull(region.readChunk(0, 0));
+      }
+    } finally {
+      delete(dir);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testBadLocation() throws IOException {
+    File dir = tempDir();
+    try {
+      File file = new File(dir, "r.0.0.mca");
+      ByteBuffer header = ByteBuffer.allocate(2 * RegionFile.SECTOR_SIZE);
+      header.putInt(0, (5 << 8) | 1);
+      Files.write(file.toPath(), header.array());
+      try (RegionFile region = new RegionFile(file)) {
+        region.readChunkData(0, 0);
+      }
+    } finally {
+      delete(dir);
+    }
+  }
+}
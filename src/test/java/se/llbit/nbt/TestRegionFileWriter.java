@@ -0,0 +1,269 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestRegionFileWriter {
+  private static Tag chunk(int x, int z, int size) {
+    CompoundTag level = new CompoundTag();
+    level.add("xPos", new IntTag(x));
+    level.add("zPos", new IntTag(z));
+    int[] data = new int[size];
+    for (int i = 0; i < size; ++i) {
+      // Not very compressible.
+      data[i] = i * 0x9E3779B9 ^ x * 31 + z;
+    }
+    level.add("Data", new IntArrayTag(data));
+    CompoundTag root = new CompoundTag();
+    root.add("Level", level);
+    return new NamedTag("", root);
+  }
+
+  @Test public void testWriteChunks() throws IOException {
+    File dir = TestRegionFile.tempDir();
+    try {
+      File file = new File(dir, "r.0.0.mca");
+      try (RegionFileWriter writer = new RegionFileWriter(file)) {
+        assertEquals(2, writer.sectorCount());
+        writer.writeChunk(0, 0, chunk(0, 0, 10));
+        writer.writeChunk(31, 2, chunk(31, 2, 2000), Compression.GZIP);
+        writer.writeChunk(-1, -1, chunk(31, 31, 10), Compression.NONE);
+        writer.writeChunkData(4, 4, Compression.ZLIB.compress(new byte[] { 0 }, 0, 1),
+            Compression.ZLIB, 1234);
+        assertTrue(writer.hasChunk(31, 31));
+        assertEquals(1234, writer.getTimestamp(4, 4));
+        assertEquals(0, writer.freeSectorCount());
+      }
+      assertEquals(0, file.length() % RegionFile.SECTOR_SIZE);
+      try (RegionFile region = new RegionFile(file)) {
+        assertEquals(chunk(0, 0, 10), region.readChunk(0, 0));
+        assertEquals(chunk(31, 2, 2000), region.readChunk(31, 2));
+        assertEquals(chunk(31, 31, 10), region.readChunk(31, 31));
+        assertEquals(Tag.END, region.readChunk(4, 4));
+        assertFalse(region.hasChunk(1, 0));
+        assertEquals(1234, region.getTimestamp(4, 4));
+        long now = System.currentTimeMillis() / 1000;
+        assertTrue(Math.abs(now - region.getTimestamp(0, 0)) < 60);
+      }
+    } finally {
+      TestRegionFile.delete(dir);
+    }
+  }
+
+  /** LZ4 is rejected before anything is written. */
+  @Test(expected = IllegalArgumentException.class)
+  public void testWriteLz4() throws IOException {
+    File dir = TestRegionFile.tempDir();
+    try (RegionFileWriter writer = new RegionFileWriter(new File(dir, "r.0.0.mca"))) {
+      writer.writeChunk(0, 0, chunk(0, 0, 10), Compression.LZ4);
+    } finally {
+      TestRegionFile.delete(dir);
+    }
+  }
+
+  /** Updating one chunk does not change the other chunks. */
+  @Test public void testUpdate() throws IOException {
+    File dir = TestRegionFile.tempDir();
+    try {
+      File file = new File(dir, "r.0.0.mca");
+      TestRegionFile.writeRegion(file, new int[][] {
+          { 0, 0, RegionFile.COMPRESSION_ZLIB },
+          { 1, 0, RegionFile.COMPRESSION_GZIP },
+          { 2, 0, RegionFile.COMPRESSION_NONE },
+      });
+      Tag first;
+      Tag last;
+      try (RegionFile region = new RegionFile(file)) {
+        first = region.readChunk(0, 0);
+        last = region.readChunk(2, 0);
+      }
+      try (RegionFileWriter writer = new RegionFileWriter(file)) {
+        assertEquals(1000, writer.getTimestamp(0, 0));
+        int sectors = writer.sectorCount();
+        // The larger chunk does not fit in the old sectors.
+        writer.writeChunk(1, 0, chunk(1, 0, 5000), Compression.NONE);
+        assertTrue(writer.sectorCount() > sectors);
+        assertTrue(writer.freeSectorCount() > 0);
+        // The freed sectors are reused.
+        int free = writer.freeSectorCount();
+        writer.writeChunk(3, 0, chunk(3, 0, 10));
+        assertEquals(free - 1, writer.freeSectorCount());
+      }
+      try (RegionFile region = new RegionFile(file)) {
+        assertEquals(first, region.readChunk(0, 0));
+        assertEquals(chunk(1, 0, 5000), region.readChunk(1, 0));
+        assertEquals(last, region.readChunk(2, 0));
+        assertEquals(chunk(3, 0, 10), region.readChunk(3, 0));
+        assertEquals(1000, region.getTimestamp(0, 0));
+      }
+    } finally {
+      TestRegionFile.delete(dir);
+    }
+  }
+
+  /** Reads the location table entry of a chunk. */
+  private static int location(File file, int x, int z) throws IOException {
+    try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+      in.seek(4 * ((x & 31) + (z & 31) * 32));
+      return in.readInt();
+    }
+  }
+
+  /** A rewritten chunk is never written over its old sectors. */
+  @Test public void testRewriteUsesNewSectors() throws IOException {
+    File dir = TestRegionFile.tempDir();
+    try {
+      File file = new File(dir, "r.0.0.mca");
+      try (RegionFileWriter writer = new RegionFileWriter(file)) {
+        writer.writeChunk(0, 0, chunk(0, 0, 10));
+        writer.writeChunk(1, 0, chunk(1, 0, 10));
+        for (int i = 0; i < 4; ++i) {
+          writer.flush();
+          int before = location(file, 0, 0);
+          writer.writeChunk(0, 0, chunk(0, i, 10));
+          writer.flush();
+          int after = location(file, 0, 0);
+          int start = before >>> 8;
+          int end = start + (before & 0xFF);
+          int newStart = after >>> 8;
+          int newEnd = newStart + (after & 0xFF);
+          assertTrue(newEnd <= start || newStart >= end);
+        }
+        // The old sectors are freed and reused.
+        assertEquals(1, writer.freeSectorCount());
+      }
+      try (RegionFile region = new RegionFile(file)) {
+        assertEquals(chunk(0, 3, 10), region.readChunk(0, 0));
+        assertEquals(chunk(1, 0, 10), region.readChunk(1, 0));
+      }
+    } finally {
+      TestRegionFile.delete(dir);
+    }
+  }
+
+  @Test public void testDeleteAndCompact() throws IOException {
+    File dir = TestRegionFile.tempDir();
+    try {
+      File file = new File(dir, "r.0.0.mca");
+      try (RegionFileWriter writer = new RegionFileWriter(file)) {
+        for (int i = 0; i < 8; ++i) {
+          writer.writeChunk(i, 0, chunk(i, 0, 3000), Compression.NONE);
+        }
+        int sectors = writer.sectorCount();
+        for (int i = 0; i < 8; i += 2) {
+          writer.deleteChunk(i, 0);
+        }
+        assertFalse(writer.hasChunk(0, 0));
+        assertEquals(sectors, writer.sectorCount());
+        assertTrue(writer.freeSectorCount() > 0);
+        writer.compact();
+        assertEquals(0, writer.freeSectorCount());
+        assertEquals(2 + (sectors - 2) / 2, writer.sectorCount());
+      }
+      assertEquals(RegionFile.SECTOR_SIZE * (2 + 4 * 3), file.length());
+      try (RegionFile region = new RegionFile(file)) {
+        for (int i = 0; i < 8; ++i) {
+          if (i % 2 == 0) {
+            assertNull(region.readChunk(i, 0));
+          } else {
+            assertEquals(chunk(i, 0, 3000), region.readChunk(i, 0));
+          }
+        }
+      }
+    } finally {
+      TestRegionFile.delete(dir);
+    }
+  }
+
+  /** A chunk can be moved to sectors that overlap its current sectors. */
+  @Test public void testCompactOverlapping() throws IOException {
+    File dir = TestRegionFile.tempDir();
+    try {
+      File file = new File(dir, "r.0.0.mca");
+      try (RegionFileWriter writer = new RegionFileWriter(file)) {
+        writer.writeChunk(0, 0, chunk(0, 0, 10), Compression.NONE);
+        writer.writeChunk(1, 0, chunk(1, 0, 3000), Compression.NONE);
+        writer.writeChunk(2, 0, chunk(2, 0, 3000), Compression.NONE);
+        assertEquals(2 + 1 + 3 + 3, writer.sectorCount());
+        writer.deleteChunk(0, 0);
+        writer.compact();
+        assertEquals(2 + 3 + 3, writer.sectorCount());
+        assertEquals(0, writer.freeSectorCount());
+      }
+      assertEquals(RegionFile.SECTOR_SIZE * (2 + 3 + 3), file.length());
+      try (RegionFile region = new RegionFile(file)) {
+        assertNull(region.readChunk(0, 0));
+        assertEquals(chunk(1, 0, 3000), region.readChunk(1, 0));
+        assertEquals(chunk(2, 0, 3000), region.readChunk(2, 0));
+      }
+    } finally {
+      TestRegionFile.delete(dir);
+    }
+  }
+
+  /** Chunks larger than 255 sectors are stored in a separate file. */
+  @Test public void testExternalChunk() throws IOException {
+    File dir = TestRegionFile.tempDir();
+    try {
+      File file = new File(dir, "r.-1.2.mca");
+      File external = new File(dir, "c.-31.64.mcc");
+      Tag large = chunk(1, 0, 300000);
+      try (RegionFileWriter writer = new RegionFileWriter(file)) {
+        writer.writeChunk(1, 0, large, Compression.NONE);
+        assertEquals(3, writer.sectorCount());
+      }
+      assertTrue(external.isFile());
+      try (RegionFile region = new RegionFile(file)) {
+        assertEquals(large, region.readChunk(1, 0));
+      }
+      try (RegionFileWriter writer = new RegionFileWriter(file)) {
+        writer.writeChunk(1, 0, chunk(1, 0, 10));
+      }
+      assertFalse(external.isFile());
+      try (RegionFile region = new RegionFile(file)) {
+        ByteBuffer data = region.readChunkData(1, 0);
+        assertEquals(chunk(1, 0, 10), NamedTag.read(data));
+      }
+    } finally {
+      TestRegionFile.delete(dir);
+    }
+  }
+}
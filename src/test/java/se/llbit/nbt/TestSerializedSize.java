@@ -0,0 +1,113 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestSerializedSize {
+  private static void assertSize(Tag tag) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    tag.write(new DataOutputStream(bytes));
+    assertEquals(bytes.size(), tag.serializedSize());
+  }
+
+  @Test public void testFiles() throws IOException {
+    for (String file : Arrays.asList("testfiles/level.dat", "testfiles/chunk.dat")) {
+      byte[] data = FileUtils.readGzippedBytes(file);
+      assertEquals(data.length, NamedTag.read(ByteBuffer.wrap(data)).serializedSize());
+      Tag lazy = NamedTag.readLazy(ByteBuffer.wrap(data));
+      assertEquals(data.length, lazy.serializedSize());
+      lazy.unpack().get("Data");
+      assertEquals(data.length, lazy.serializedSize());
+    }
+  }
+
+  @Test public void testLeafTags() throws IOException {
+    assertSize(new ByteTag(1));
+    assertSize(new ShortTag((short) 1));
+    assertSize(new IntTag(1));
+    assertSize(new LongTag(1));
+    assertSize(new FloatTag(1));
+    assertSize(new DoubleTag(1));
+    assertSize(new ByteArrayTag(new byte[7]));
+    assertSize(new IntArrayTag(new int[7]));
+    assertSize(new LongArrayTag(new long[7]));
+    assertSize(new StringTag("a\u0000b \u00e5 \u263a x\ud83d\ude00y"));
+    assertSize(new NamedTag("n\u00e5me", new StringTag("")));
+    assertSize(Tag.END);
+  }
+
+  /** Cached sizes are updated when the tree changes. */
+  @Test public void testModification() throws IOException {
+    CompoundTag root = new CompoundTag();
+    CompoundTag nested = new CompoundTag();
+    ListTag strings = new ListTag(Tag.TAG_STRING, Collections.<SpecificTag>emptyList());
+    ListTag doubles = new ListTag(new double[] { 1, 2 });
+    ListTag compounds = new ListTag(Tag.TAG_COMPOUND, Collections.<SpecificTag>emptyList());
+    root.add("nested", nested);
+    root.add("strings", strings);
+    root.add("doubles", doubles);
+    root.add("compounds", compounds);
+    root.add("name", new StringTag("x"));
+    assertSize(root);
+
+    root.add("name", new StringTag("longer"));
+    assertSize(root);
+    nested.add("value", new IntTag(3));
+    assertSize(root);
+    strings.add(new StringTag("abc"));
+    assertSize(root);
+    strings.set(0, new StringTag("abcdef"));
+    assertSize(root);
+    strings.items.add(new StringTag("direct"));
+    assertSize(root);
+    strings.items.set(1, new StringTag("d"));
+    assertSize(root);
+    doubles.add(new DoubleTag(3));
+    assertSize(root);
+    compounds.add(nested);
+    nested.add("more", new LongTag(4));
+    assertSize(root);
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testErrorTag() {
+    new ErrorTag("error").serializedSize();
+  }
+}
@@ -0,0 +1,176 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TestSkip {
+  /** An input stream that never skips any bytes. */
+  static class NoSkipInputStream extends FilterInputStream {
+    NoSkipInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override public long skip(long n) {
+      return 0;
+    }
+  }
+
+  /** An input stream that skips at most one byte at a time. */
+  static class SlowSkipInputStream extends FilterInputStream {
+    SlowSkipInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override public long skip(long n) throws IOException {
+      return super.skip(Math.min(n, 1));
+    }
+  }
+
+  /** Skip the root tag and check that the whole input was consumed. */
+  private static void skipAll(InputStream input, int length) throws IOException {
+    CountingInputStream counter = new CountingInputStream(input);
+    DataInputStream in = new DataInputStream(counter);
+    byte type = in.readByte();
+    StringTag.skip(in);
+    SpecificTag.skip(type, in);
+    assertEquals(length, counter.count);
+  }
+
+  static class CountingInputStream extends FilterInputStream {
+    long count = 0;
+
+    CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override public int read() throws IOException {
+      int b = super.read();
+      if (b != -1) {
+        count += 1;
+      }
+      return b;
+    }
+
+    @Override public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        count += n;
+      }
+      return n;
+    }
+
+    @Override public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      count += skipped;
+      return skipped;
+    }
+  }
+
+  @Test public void testSkipLevelDat() throws IOException {
+    byte[] data = FileUtils.readGzippedBytes("testfiles/level.dat");
+    skipAll(new ByteArrayInputStream(data), data.length);
+    skipAll(new NoSkipInputStream(new ByteArrayInputStream(data)), data.length);
+    skipAll(new SlowSkipInputStream(new ByteArrayInputStream(data)), data.length);
+  }
+
+  @Test public void testSkipChunkDat() throws IOException {
+    byte[] data = FileUtils.readGzippedBytes("testfiles/chunk.dat");
+    skipAll(new NoSkipInputStream(new ByteArrayInputStream(data)), data.length);
+  }
+
+  /** String lengths are unsigned. */
+  @Test public void testSkipLongString() throws IOException {
+    char[] chars = new char[40000];
+    Arrays.fill(chars, 'x');
+    byte[] data = FileUtils.serialize(new NamedTag("", new CompoundTag(Arrays.asList(
+        new NamedTag("long", new StringTag(new String(chars))),
+        new NamedTag("after", new IntTag(1))))));
+    skipAll(new ByteArrayInputStream(data), data.length);
+  }
+
+  @Test public void testSkipLists() throws IOException {
+    byte[] data = FileUtils.serialize(new NamedTag("", new CompoundTag(Arrays.asList(
+        new NamedTag("doubles", new ListTag(Tag.TAG_DOUBLE,
+            Arrays.asList(new DoubleTag(1), new DoubleTag(2), new DoubleTag(3)))),
+        new NamedTag("strings", new ListTag(Tag.TAG_STRING,
+            Arrays.asList(new StringTag("a"), new StringTag("bcd")))),
+        new NamedTag("arrays", new ListTag(Tag.TAG_LONG_ARRAY,
+            Arrays.asList(new LongArrayTag(new long[3]), new LongArrayTag(new long[0]))))))));
+    skipAll(new SlowSkipInputStream(new ByteArrayInputStream(data)), data.length);
+  }
+
+  @Test(expected = EOFException.class)
+  public void testTruncated() throws IOException {
+    byte[] data = FileUtils.serialize(new NamedTag("", new IntArrayTag(new int[100])));
+    skipAll(new ByteArrayInputStream(data, 0, data.length - 1), data.length);
+  }
+
+  @Test(expected = EOFException.class)
+  public void testTruncatedNoSkip() throws IOException {
+    byte[] data = FileUtils.serialize(new NamedTag("", new ByteArrayTag(new byte[10000])));
+    skipAll(new NoSkipInputStream(new ByteArrayInputStream(data, 0, 5000)), data.length);
+  }
+
+  @Test(expected = IOException.class)
+  public void testUnknownType() throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(new byte[] { 1, 2, 3 }));
+    SpecificTag.skip((byte) 100, in);
+  }
+
+  /** An unknown item type in a list fails in both the stream and buffer skip. */
+  @Test public void testUnknownListItemType() throws IOException {
+    byte[] data = { 13, 0, 0, 0, 1, 1, 2, 3, 4 };
+    try {
+      SpecificTag.skip((byte) Tag.TAG_LIST, new DataInputStream(new ByteArrayInputStream(data)));
+      fail("Expected IOException");
+    } catch (IOException e) {
+      assertEquals("Unknown tag type: 13", e.getMessage());
+    }
+    try {
+      SpecificTag.skip((byte) Tag.TAG_LIST, ByteBuffer.wrap(data));
+      fail("Expected IOException");
+    } catch (IOException e) {
+      assertEquals("Unknown tag type: 13", e.getMessage());
+    }
+  }
+}
@@ -31,6 +31,7 @@ package se.llbit.nbt;
 
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -900,4 +901,26 @@ public class TestTagProperties {
     ErrorTag tag = new ErrorTag("failed horribly");
     tag.tagType();
   }
+
+  @Test public void testValueOf() {
+    assertSame(ByteTag.valueOf(1), ByteTag.valueOf(1));
+    assertSame(ByteTag.valueOf(-128), ByteTag.valueOf(-128));
+    assertEquals(new ByteTag(127), ByteTag.valueOf(127));
+    assertEquals(new ByteTag(300), ByteTag.valueOf(300));
+    assertSame(ShortTag.valueOf((short) 300), ShortTag.valueOf((short) 300));
+    assertEquals(new ShortTag((short) -4000), ShortTag.valueOf((short) -4000));
+    assertSame(IntTag.valueOf(-1), IntTag.valueOf(-1));
+    assertSame(IntTag.valueOf(1023), IntTag.valueOf(1023));
+    assertEquals(new IntTag(1 << 20), IntTag.valueOf(1 << 20));
+  }
+
+  /** Parsed small values use the shared tag instances. */
+  @Test public void testReadCachedValues() {
+    assertSame(ByteTag.valueOf(1), ByteTag.read(ByteBuffer.wrap(new byte[] { 1 })));
+    assertSame(ShortTag.valueOf((short) 300),
+        ShortTag.read(ByteBuffer.wrap(new byte[] { 1, 44 })));
+    assertSame(IntTag.valueOf(2), IntTag.read(ByteBuffer.wrap(new byte[] { 0, 0, 0, 2 })));
+    ListTag list = new ListTag(new int[] { 7, 7 });
+    assertSame(list.get(0), list.get(1));
+  }
 }
@@ -0,0 +1,160 @@
+/* Copyright (c) 2026, Jesper Öqvist
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package se.llbit.nbt;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestWorldScanner {
+  private static File writeWorld() throws IOException {
+    File dir = TestRegionFile.tempDir();
+    TestRegionFile.writeRegion(new File(dir, "r.0.0.mca"), new int[][] {
+        { 0, 0, RegionFile.COMPRESSION_ZLIB },
+        { 1, 0, RegionFile.COMPRESSION_GZIP },
+        { 4, 9, RegionFile.COMPRESSION_ZLIB },
+    });
+    TestRegionFile.writeRegion(new File(dir, "r.-1.2.mca"), new int[][] {
+        { 31, 0, RegionFile.COMPRESSION_ZLIB },
+        { 2, 3, RegionFile.COMPRESSION_NONE },
+    });
+    TestRegionFile.writeRegion(new File(dir, "r.5.5.mcr"), new int[][] {
+        { 0, 0, RegionFile.COMPRESSION_ZLIB },
+    });
+    return dir;
+  }
+
+  @Test public void testScan() throws Exception {
+    File dir = writeWorld();
+    try {
+      final Map<String, Tag> chunks = new ConcurrentHashMap<>();
+      new WorldScanner().scan(dir, new WorldScanner.ChunkCallback<Tag>() {
+        @Override public void chunk(int chunkX, int chunkZ, Tag chunk) {
+          chunks.put(chunkX + "," + chunkZ, chunk);
+        }
+      });
+      assertEquals(5, chunks.size());
+      assertEquals(4, chunks.get("4,9").unpack().get("Level").get("xPos").intValue());
+      assertEquals(31, chunks.get("-1,64").unpack().get("Level").get("xPos").intValue());
+      assertTrue(chunks.containsKey("-30,67"));
+    } finally {
+      TestRegionFile.delete(dir);
+    }
+  }
+
+  @Test public void testQuery() throws Exception {
+    File dir = writeWorld();
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      final Map<String, Integer> zPos = new ConcurrentHashMap<>();
+      NbtQuery query = NbtQuery.compile(".Level.zPos");
+      new WorldScanner(executor, 1).scan(dir, query,
+          new WorldScanner.ChunkCallback<Map<String, Tag>>() {
+            @Override public void chunk(int chunkX, int chunkZ, Map<String, Tag> result) {
+              zPos.put(chunkX + "," + chunkZ, result.get(".Level.zPos").intValue());
+            }
+          });
+      assertEquals(5, zPos.size());
+      assertEquals(9, (int) zPos.get("4,9"));
+      assertEquals(3, (int) zPos.get("-30,67"));
+    } finally {
+      executor.shutdown();
+      TestRegionFile.delete(dir);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testCallbackError() throws Exception {
+    File dir = writeWorld();
+    try {
+      new WorldScanner().scan(dir, new WorldScanner.ChunkCallback<Tag>() {
+        @Override public void chunk(int chunkX, int chunkZ, Tag chunk) throws IOException {
+          throw new IOException("stop");
+        }
+      });
+    } finally {
+      TestRegionFile.delete(dir);
+    }
+  }
+
+  /**
+   * When a region file can not be opened, the scan waits for the submitted
+   * chunks before it fails, so the callback is not called after the scan.
+   */
+  @Test public void testRegionError() throws Exception {
+    File dir = writeWorld();
+    // A directory can not be opened as a region file.
+    assertTrue(new File(dir, "r.1.0.mca").mkdir());
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      final AtomicBoolean ended = new AtomicBoolean(false);
+      final AtomicBoolean lateCallback = new AtomicBoolean(false);
+      WorldScanner.ChunkCallback<Tag> callback = new WorldScanner.ChunkCallback<Tag>() {
+        @Override public void chunk(int chunkX, int chunkZ, Tag chunk) {
+          try {
+            Thread.sleep(20);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          if (ended.get()) {
+            lateCallback.set(true);
+          }
+        }
+      };
+      for (WorldScanner scanner : new WorldScanner[] {
+          new WorldScanner(), new WorldScanner(executor, 4) }) {
+        try {
+          scanner.scan(dir, callback);
+          fail("Expected IOException");
+        } catch (IOException e) {
+          // Expected.
+        }
+        ended.set(true);
+        Thread.sleep(100);
+        assertFalse(lateCallback.get());
+        ended.set(false);
+      }
+    } finally {
+      executor.shutdown();
+      TestRegionFile.delete(dir);
+    }
+  }
+}